@@ -0,0 +1,21 @@
+package com.globallogic.test.tree.benchmark;
+
+import com.globallogic.test.tree.GeneralTree;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmarks of GeneralTree operations on complete trees
+ */
+public class BalancedTreeBenchmark extends GeneralTreeBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"2", "16", "1000"})
+    int fanOut;
+
+    @Override
+    GeneralTree<Integer> build() {
+        return TreeShape.BALANCED.build(size, fanOut);
+    }
+}
@@ -0,0 +1,23 @@
+package com.globallogic.test.tree.benchmark;
+
+import com.globallogic.test.tree.GeneralTree;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmarks of GeneralTree operations on caterpillars, fan-out 1 gives a plain chain.
+ * Sizes are capped at 1e5: modifications update subtree sizes of all ancestors,
+ * so an operation on a chain of 1e7 nodes takes about a tenth of a second
+ */
+public class DeepTreeBenchmark extends GeneralTreeBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    @Param({"1", "2", "16"})
+    int fanOut;
+
+    @Override
+    GeneralTree<Integer> build() {
+        return TreeShape.DEEP.build(size, fanOut);
+    }
+}
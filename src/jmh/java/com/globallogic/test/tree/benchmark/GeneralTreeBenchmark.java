@@ -0,0 +1,179 @@
+package com.globallogic.test.tree.benchmark;
+
+import com.globallogic.test.tree.GeneralTree;
+import com.globallogic.test.tree.Tree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of GeneralTree operations, subclasses build trees of a particular shape and parametrize their sizes.
+ * Run with <tt>gradlew jmh</tt>, a subset is selected with e.g.
+ * <tt>gradlew jmh -PjmhArgs="BalancedTreeBenchmark.contains -p size=1000000"</tt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public abstract class GeneralTreeBenchmark {
+
+    /**
+     * number of precomputed random lookups, power of two
+     */
+    private static final int LOOKUPS = 1024;
+
+    /**
+     * tree under test
+     */
+    GeneralTree<Integer> tree;
+
+    /**
+     * tree equal to the tree under test
+     */
+    GeneralTree<Integer> copy;
+
+    /**
+     * nodes of the tree under test indexed by their values
+     */
+    List<Tree.Item<Integer>> items;
+
+    /**
+     * random node numbers used by lookups
+     */
+    int[] lookups;
+
+    /**
+     * position in lookups
+     */
+    int cursor;
+
+    /**
+     * parents of nodes added during the current iteration
+     */
+    final List<Tree.Item<Integer>> addedTo = new ArrayList<>();
+
+    /**
+     * Builds a tree of numbered nodes, see {@link TreeShape}
+     * @return new tree
+     */
+    abstract GeneralTree<Integer> build();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = build();
+        items = TreeShape.items(tree);
+        copy = build();
+
+        Random random = new Random(42);
+        lookups = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = random.nextInt(items.size());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeAdded() {
+        for (Tree.Item<Integer> parent : addedTo) {
+            tree.remove(-1, parent);
+        }
+        addedTo.clear();
+    }
+
+    /**
+     * Returns next random node number
+     * @return node number
+     */
+    private int next() {
+        cursor = (cursor + 1) & (LOOKUPS - 1);
+        return lookups[cursor];
+    }
+
+    @Benchmark
+    public Tree.Item<Integer> add() {
+        Tree.Item<Integer> parent = items.get(next());
+        addedTo.add(parent);
+        return tree.add(-1, parent);
+    }
+
+    /**
+     * Adds a leaf and removes it, the cost of remove is the difference with {@link #add()}
+     * @return removed node
+     */
+    @Benchmark
+    public Tree.Item<Integer> addAndRemove() {
+        Tree.Item<Integer> parent = items.get(next());
+        tree.add(-1, parent);
+        return tree.remove(-1, parent);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return tree.contains(next(), tree.getRoot());
+    }
+
+    @Benchmark
+    public boolean containsMissing() {
+        return tree.contains(-2, tree.getRoot());
+    }
+
+    @Benchmark
+    public Tree.Item<Integer> findChild() {
+        return tree.findChild(next(), tree.getRoot());
+    }
+
+    @Benchmark
+    public Collection<Integer> filter() {
+        return tree.filter(value -> (value & 127) == 0);
+    }
+
+    @Benchmark
+    public Tree<Integer> subTree() {
+        return tree.subTree(tree.getRoot());
+    }
+
+    @Benchmark
+    public Integer[] toArray() {
+        return tree.toArray(new Integer[0], tree.getRoot(), Tree.IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    @Benchmark
+    public boolean equalsCopy() {
+        return tree.equals(copy);
+    }
+
+    @Benchmark
+    public int hashCodeTree() {
+        return tree.hashCode();
+    }
+
+    @Benchmark
+    public void iteratePreOrder(Blackhole blackhole) {
+        iterate(Tree.IterationStrategy.DEPTH_FIRST_PRE, blackhole);
+    }
+
+    @Benchmark
+    public void iteratePostOrder(Blackhole blackhole) {
+        iterate(Tree.IterationStrategy.DEPTH_FIRST_POST, blackhole);
+    }
+
+    @Benchmark
+    public void iterateBreathFirst(Blackhole blackhole) {
+        iterate(Tree.IterationStrategy.BREATH_FIRST, blackhole);
+    }
+
+    /**
+     * Traverses the whole tree according to supplied strategy
+     * @param strategy iteration strategy
+     * @param blackhole consumer of values
+     */
+    private void iterate(Tree.IterationStrategy strategy, Blackhole blackhole) {
+        Iterator<Integer> it = tree.iterator(strategy);
+        while (it.hasNext()) {
+            blackhole.consume(it.next());
+        }
+    }
+}
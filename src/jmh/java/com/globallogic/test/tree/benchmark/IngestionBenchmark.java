@@ -0,0 +1,71 @@
+package com.globallogic.test.tree.benchmark;
+
+import com.globallogic.test.tree.AppendOnlyTree;
+import com.globallogic.test.tree.ConcurrentGeneralTree;
+import com.globallogic.test.tree.GeneralTree;
+import com.globallogic.test.tree.Tree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of adding nodes from several threads. GeneralTree is guarded by a global lock,
+ * concurrent trees are used as is. Parents are chosen at random among a fixed set of nodes,
+ * a single parent makes all threads append to the same children list
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@Threads(8)
+@State(Scope.Benchmark)
+public class IngestionBenchmark {
+
+    @Param({"GeneralTree", "ConcurrentGeneralTree", "AppendOnlyTree"})
+    String implementation;
+
+    @Param({"1", "1024"})
+    int parents;
+
+    /**
+     * tree under test
+     */
+    Tree<Integer> tree;
+
+    /**
+     * nodes to which new nodes are added
+     */
+    List<Tree.Item<Integer>> items;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if ("GeneralTree".equals(implementation)) {
+            tree = new GeneralTree<>(0);
+        } else if ("ConcurrentGeneralTree".equals(implementation)) {
+            tree = new ConcurrentGeneralTree<>(0);
+        } else {
+            tree = new AppendOnlyTree<>(0);
+        }
+
+        items = new ArrayList<>(parents);
+        items.add(tree.getRoot());
+        for (int i = 1; i < parents; i++) {
+            items.add(tree.add(i, tree.getRoot()));
+        }
+    }
+
+    @Benchmark
+    public Tree.Item<Integer> add() {
+        Tree.Item<Integer> parent = items.get(ThreadLocalRandom.current().nextInt(parents));
+        if (tree instanceof GeneralTree) {
+            synchronized (tree) {
+                return tree.add(-1, parent);
+            }
+        }
+        return tree.add(-1, parent);
+    }
+}
@@ -0,0 +1,93 @@
+package com.globallogic.test.tree.benchmark;
+
+import com.globallogic.test.tree.GeneralTree;
+import com.globallogic.test.tree.Tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Shapes of trees used in benchmarks.
+ * Nodes are numbered from 0 (root) to size - 1, the value of each node is its number
+ */
+public enum TreeShape {
+
+    /**
+     * Caterpillar: every node of the spine has fanOut children, the last of them continues the spine.
+     * Fan-out 1 gives a plain chain
+     */
+    DEEP {
+        @Override
+        int parentOf(int index, int fanOut) {
+            return (index - 1) / fanOut * fanOut;
+        }
+    },
+
+    /**
+     * Star: all nodes are children of the root, fan-out is ignored
+     */
+    WIDE {
+        @Override
+        int parentOf(int index, int fanOut) {
+            return 0;
+        }
+    },
+
+    /**
+     * Complete tree where every inner node has fanOut children
+     */
+    BALANCED {
+        @Override
+        int parentOf(int index, int fanOut) {
+            return (index - 1) / fanOut;
+        }
+    };
+
+    /**
+     * Returns number of parent node of the node with supplied number
+     * @param index number of node, greater than 0
+     * @param fanOut number of children of inner nodes
+     * @return number of parent node
+     */
+    abstract int parentOf(int index, int fanOut);
+
+    /**
+     * Builds a tree of this shape from a parent array, in time linear in its size
+     * @param size number of nodes in resulting tree
+     * @param fanOut number of children of inner nodes
+     * @return new tree
+     */
+    public GeneralTree<Integer> build(int size, int fanOut) {
+        Integer[] values = new Integer[size];
+        int[] parentIdx = new int[size];
+        parentIdx[0] = -1;
+        values[0] = 0;
+        for (int i = 1; i < size; i++) {
+            values[i] = i;
+            parentIdx[i] = parentOf(i, fanOut);
+        }
+        return GeneralTree.fromParentArray(values, parentIdx);
+    }
+
+    /**
+     * Returns nodes of supplied tree built by {@link #build(int, int)}, without recursion
+     * @param tree tree of numbered nodes
+     * @return nodes of the tree indexed by their numbers
+     */
+    public static List<Tree.Item<Integer>> items(Tree<Integer> tree) {
+        List<Tree.Item<Integer>> items = new ArrayList<>(Collections.nCopies(tree.size(), null));
+        Deque<Tree.Item<Integer>> stack = new ArrayDeque<>();
+        stack.push(tree.getRoot());
+        while (!stack.isEmpty()) {
+            Tree.Item<Integer> item = stack.pop();
+            items.set(tree.get(item), item);
+            for (Tree.Item<Integer> child : tree.getChildren(item)) {
+                stack.push(child);
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,18 @@
+package com.globallogic.test.tree.benchmark;
+
+import com.globallogic.test.tree.GeneralTree;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmarks of GeneralTree operations on stars, where all nodes are children of the root
+ */
+public class WideTreeBenchmark extends GeneralTreeBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Override
+    GeneralTree<Integer> build() {
+        return TreeShape.WIDE.build(size, 0);
+    }
+}
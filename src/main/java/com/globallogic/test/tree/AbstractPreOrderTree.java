@@ -0,0 +1,1085 @@
+package com.globallogic.test.tree;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Skeletal implementation of Tree that keeps nodes in columns indexed by position instead of objects.
+ * Nodes are laid out in deep first pre order, so the subtree of a node occupies a contiguous range
+ * of positions starting from the node, and pre order traversals and subtree scans read columns sequentially.
+ * Only the parent and the subtree size of every node are stored, the first child and the next sibling
+ * follow from the layout. Items are lightweight handles of positions created on demand, equal handles
+ * refer to the same node. The structure of the tree is fixed when it is built, values can be replaced.
+ * Implementations define where columns are kept
+ * @param <T> the type of elements in this tree
+ */
+public abstract class AbstractPreOrderTree<T> extends AbstractTree<T> {
+
+    /**
+     * position of the parent of the root
+     */
+    static final int NO_NODE = -1;
+
+    /**
+     * Handle of a node of compact tree
+     */
+    class Handle extends Item<T> {
+
+        /**
+         * position of the node
+         */
+        final int index;
+
+        /**
+         * constructor with position of the node
+         * @param index position of the node
+         */
+        Handle(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @see Item#size()
+         * @return
+         */
+        @Override
+        int size() {
+            return sizeAt(index);
+        }
+
+        /**
+         * @see Item#contains(Object)
+         * @param value element whose presence is to be tested
+         * @return
+         */
+        @Override
+        boolean contains(T value) {
+            return AbstractPreOrderTree.this.contains(value, this);
+        }
+
+        /**
+         * @see Item#toArray(Object[], IterationStrategy)
+         * @param typeRef the array into which the elements are stored, if it is big enough
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        T[] toArray(T[] typeRef, IterationStrategy strategy) {
+            return AbstractPreOrderTree.this.toArray(typeRef, this, strategy);
+        }
+
+        /**
+         * @see Item#toArray(IntFunction, IterationStrategy)
+         * @param generator function allocating an array of requested length
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        T[] toArray(IntFunction<T[]> generator, IterationStrategy strategy) {
+            return AbstractPreOrderTree.this.toArray(generator, this, strategy);
+        }
+
+        /**
+         * @see Item#toArray(IterationStrategy)
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        Object[] toArray(IterationStrategy strategy) {
+            return AbstractPreOrderTree.this.toArray(this, strategy);
+        }
+
+        /**
+         * @see Item#clear()
+         */
+        @Override
+        void clear() {
+            throw fixedStructure();
+        }
+
+        /**
+         * @see Item#getValue()
+         * @return
+         */
+        @Override
+        T getValue() {
+            return valueAt(index);
+        }
+
+        /**
+         * @see Item#setValue(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> setValue(T value) {
+            setValueAt(index, value);
+            return this;
+        }
+
+        /**
+         * @see Item#hasChildren()
+         * @return
+         */
+        @Override
+        boolean hasChildren() {
+            return sizeAt(index) > 1;
+        }
+
+        /**
+         * @see Item#isRoot()
+         * @return
+         */
+        @Override
+        boolean isRoot() {
+            return parentAt(index) == NO_NODE;
+        }
+
+        /**
+         * @see Item#getParent()
+         * @return
+         */
+        @Override
+        Item<T> getParent() {
+            return handle(parentAt(index));
+        }
+
+        /**
+         * @see Item#setParent(Item)
+         * @param parent node that suppose to be parent node of this node
+         * @return
+         */
+        @Override
+        Item<T> setParent(Item<T> parent) {
+            throw fixedStructure();
+        }
+
+        /**
+         * @see Item#getChildren()
+         * @return
+         */
+        @Override
+        Collection<Item<T>> getChildren() {
+            List<Item<T>> result = new ArrayList<>();
+            for (int child = firstChild(index); child != NO_NODE; child = nextSibling(child)) {
+                result.add(new Handle(child));
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        /**
+         * @see Item#findChild(Object)
+         * @param value value that suppose to be find
+         * @return
+         */
+        @Override
+        Item<T> findChild(T value) {
+            return AbstractPreOrderTree.this.findChild(value, this);
+        }
+
+        /**
+         * @see Item#addChild(Item)
+         * @param item
+         * @return
+         */
+        @Override
+        Item<T> addChild(Item<T> item) {
+            throw fixedStructure();
+        }
+
+        /**
+         * @see Item#removeChild(Item)
+         * @param item
+         * @return
+         */
+        @Override
+        Item<T> removeChild(Item<T> item) {
+            throw fixedStructure();
+        }
+
+        /**
+         * @see Item#addChild(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> addChild(T value) {
+            throw fixedStructure();
+        }
+
+        /**
+         * @see Item#removeChild(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> removeChild(T value) {
+            throw fixedStructure();
+        }
+
+        /**
+         * @see Item#isParentOf(Item)
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        boolean isParentOf(Item<T> item) {
+            return item != null && parentAt(index(item)) == index;
+        }
+
+        /**
+         * @see Item#isChildOf(Item)
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        boolean isChildOf(Item<T> item) {
+            return item != null && parentAt(index) == index(item);
+        }
+
+        /**
+         * Returns a compact tree with a copy of the subtree starting from this node
+         * @see Item#deepCopy()
+         * @return root of the copy
+         */
+        @Override
+        Item<T> deepCopy() {
+            return subTree(this).getRoot();
+        }
+
+        /**
+         * @see Object#equals(Object)
+         * @param o
+         * @return
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            AbstractPreOrderTree<?>.Handle handle = (AbstractPreOrderTree<?>.Handle) o;
+            return index == handle.index && tree() == handle.tree();
+        }
+
+        /**
+         * @see Object#hashCode()
+         * @return
+         */
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        /**
+         * @see Item#toString()
+         * @return
+         */
+        @Override
+        public String toString() {
+            return String.valueOf(getValue());
+        }
+
+        /**
+         * Returns the tree of this handle
+         * @return the tree of this handle
+         */
+        private AbstractPreOrderTree<T> tree() {
+            return AbstractPreOrderTree.this;
+        }
+    }
+
+    /**
+     * constructor with default iteration strategy
+     * @param strategy default iteration strategy
+     */
+    protected AbstractPreOrderTree(IterationStrategy strategy) {
+        super(strategy);
+    }
+
+    /**
+     * Receiver of nodes of a tree traversed in deep first pre order
+     * @param <T> the type of elements
+     */
+    interface LayoutSink<T> {
+
+        /**
+         * Accepts the next node
+         * @param index position of the node
+         * @param parent position of the parent, {@link #NO_NODE} for the root
+         * @param value value of the node
+         */
+        void accept(int index, int parent, T value);
+    }
+
+    /**
+     * Traverses supplied tree in deep first pre order with an explicit stack and passes every node
+     * with positions of the node and its parent to supplied sink
+     * @param source tree to traverse
+     * @param sink receiver of nodes
+     * @param <T> the type of elements
+     * @return number of nodes
+     */
+    static <T> int layout(Tree<T> source, LayoutSink<? super T> sink) {
+        Item<T> root = source.getRoot();
+        if (root == null || source.isEmpty()) {
+            return 0;
+        }
+
+        Object[] stackItems = new Object[16];
+        int[] stackParents = new int[16];
+        stackItems[0] = root;
+        stackParents[0] = NO_NODE;
+        int depth = 1;
+        int count = 0;
+        while (depth > 0) {
+            depth--;
+            @SuppressWarnings("unchecked")
+            Item<T> item = (Item<T>) stackItems[depth];
+            stackItems[depth] = null;
+            sink.accept(count, stackParents[depth], source.get(item));
+
+            Object[] children = source.getChildren(item).toArray();
+            if (depth + children.length > stackItems.length) {
+                int length = Math.max(stackItems.length << 1, depth + children.length);
+                stackItems = Arrays.copyOf(stackItems, length);
+                stackParents = Arrays.copyOf(stackParents, length);
+            }
+            for (int i = children.length - 1; i >= 0; i--) {
+                stackItems[depth] = children[i];
+                stackParents[depth++] = count;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Lays out nodes described by values and indices of their parents in deep first pre order and passes every node
+     * with positions of the node and its parent to supplied sink. Children of all of the nodes are gathered
+     * into a single array grouped by parent, children of a node are ordered by their indices
+     * @param values values of nodes
+     * @param parentIdx index of the parent of every node, <tt>-1</tt> for the root
+     * @param sink receiver of nodes
+     * @param <T> the type of elements
+     * @return number of nodes
+     * @throws IllegalArgumentException if the arrays do not describe a single tree
+     */
+    static <T> int layout(T[] values, int[] parentIdx, LayoutSink<? super T> sink) {
+        if (values.length != parentIdx.length) {
+            throw new IllegalArgumentException(String.format("%d values, but %d parent indices",
+                    values.length, parentIdx.length));
+        }
+
+        final int n = values.length;
+        final int[] firstChild = new int[n + 1];
+        int rootIdx = NO_NODE;
+        for (int i = 0; i < n; i++) {
+            int parent = parentIdx[i];
+            if (parent == NO_NODE) {
+                if (rootIdx != NO_NODE) {
+                    throw new IllegalArgumentException(String.format("Nodes %d and %d both have no parent", rootIdx, i));
+                }
+                rootIdx = i;
+            } else if (parent < 0 || parent >= n || parent == i) {
+                throw new IllegalArgumentException(String.format("Node %d has invalid parent index %d", i, parent));
+            } else {
+                firstChild[parent + 1]++;
+            }
+        }
+        if (n == 0) {
+            return 0;
+        }
+        if (rootIdx == NO_NODE) {
+            throw new IllegalArgumentException("There is no node without parent");
+        }
+
+        for (int i = 0; i < n; i++) {
+            firstChild[i + 1] += firstChild[i];
+        }
+        final int[] children = new int[n - 1];
+        final int[] next = Arrays.copyOf(firstChild, n);
+        for (int i = 0; i < n; i++) {
+            if (i != rootIdx) {
+                children[next[parentIdx[i]]++] = i;
+            }
+        }
+
+        // every node is pushed once at most, so the stack never grows
+        final int[] stackNodes = new int[n];
+        final int[] stackParents = new int[n];
+        stackNodes[0] = rootIdx;
+        stackParents[0] = NO_NODE;
+        int depth = 1;
+        int count = 0;
+        while (depth > 0) {
+            depth--;
+            int node = stackNodes[depth];
+            sink.accept(count, stackParents[depth], values[node]);
+            for (int i = firstChild[node + 1] - 1; i >= firstChild[node]; i--) {
+                stackNodes[depth] = children[i];
+                stackParents[depth++] = count;
+            }
+            count++;
+        }
+        if (count != n) {
+            throw new IllegalArgumentException(String.format("%d nodes are not reachable from the root %d",
+                    n - count, rootIdx));
+        }
+        return count;
+    }
+
+    /**
+     * Returns exception thrown by structural modifications
+     * @return exception to throw
+     */
+    static UnsupportedOperationException fixedStructure() {
+        return new UnsupportedOperationException("Structure of the tree can not be modified");
+    }
+
+    /**
+     * Returns handle of the node at supplied position
+     * @param index position of the node
+     * @return handle of the node, <tt>null</tt> if there is no node
+     */
+    private Item<T> handle(int index) {
+        return index == NO_NODE ? null : new Handle(index);
+    }
+
+    /**
+     * Returns position of the node of supplied handle
+     * @param item handle of the node
+     * @return position of the node
+     * @throws IllegalArgumentException if the item is not a handle of a node of this tree
+     */
+    int index(Item<T> item) {
+        if (!(item instanceof AbstractPreOrderTree.Handle) || ((Handle) item).tree() != this) {
+            throw new IllegalArgumentException("Node does not belong to this tree");
+        }
+        return ((Handle) item).index;
+    }
+
+    /**
+     * Returns position of the parent of the node at supplied position
+     * @param index position of the node
+     * @return position of the parent, {@link #NO_NODE} for the root
+     */
+    abstract int parentAt(int index);
+
+    /**
+     * Returns number of nodes in the subtree starting from the node at supplied position
+     * @param index position of the node
+     * @return number of nodes in the subtree, including the node
+     */
+    abstract int sizeAt(int index);
+
+    /**
+     * Returns value of the node at supplied position
+     * @param index position of the node
+     * @return value of the node
+     */
+    abstract T valueAt(int index);
+
+    /**
+     * Replaces value of the node at supplied position
+     * @param index position of the node
+     * @param value new value
+     */
+    abstract void setValueAt(int index, T value);
+
+    /**
+     * Copies values of consecutive positions to supplied array
+     * @param from first position to copy
+     * @param dest destination array
+     * @param count number of positions to copy
+     */
+    void copyValues(int from, Object[] dest, int count) {
+        for (int i = 0; i < count; i++) {
+            dest[i] = valueAt(from + i);
+        }
+    }
+
+    /**
+     * Returns position of the first child of the node at supplied position
+     * @param index position of the node
+     * @return position of the first child, {@link #NO_NODE} if the node has no children
+     */
+    private int firstChild(int index) {
+        return sizeAt(index) > 1 ? index + 1 : NO_NODE;
+    }
+
+    /**
+     * Returns position of the next sibling of the node at supplied position
+     * @param index position of the node
+     * @return position of the next sibling, {@link #NO_NODE} if the node is the last child or the root
+     */
+    private int nextSibling(int index) {
+        int parent = parentAt(index);
+        int next = index + sizeAt(index);
+        return parent != NO_NODE && next < parent + sizeAt(parent) ? next : NO_NODE;
+    }
+
+    /**
+     * Scans positions of the subtree sequentially
+     * @see Tree#contains(Object, Item)
+     * @param value element to test
+     * @param parent node from witch start
+     * @return
+     */
+    @Override
+    public boolean contains(T value, Item<T> parent) {
+        int from = index(parent);
+        int to = from + sizeAt(from);
+        for (int i = from; i < to; i++) {
+            if (Objects.equals(valueAt(i), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @see Tree#clear(Item)
+     * @param parent supplied node
+     */
+    @Override
+    public void clear(Item<T> parent) {
+        throw fixedStructure();
+    }
+
+    /**
+     * Pre order arrays are copied from the range of the subtree
+     * @see Tree#toArray(Object[], Item, IterationStrategy)
+     * @param typeRef the array into which the elements are stored, if it is big enough
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public T[] toArray(T[] typeRef, Item<T> parent, IterationStrategy strategy) {
+        if (!IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return super.toArray(typeRef, parent, strategy);
+        }
+
+        int from = index(parent);
+        int count = sizeAt(from);
+        final T[] result = typeRef.length >= count
+                ? typeRef
+                : (T[]) Array.newInstance(typeRef.getClass().getComponentType(), count);
+        copyValues(from, result, count);
+        if (result.length > count) {
+            result[count] = null;
+        }
+        return result;
+    }
+
+    /**
+     * Pre order arrays are copied from the range of the subtree
+     * @see Tree#toArray(IntFunction, Item, IterationStrategy)
+     * @param generator function allocating an array of requested length
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public T[] toArray(IntFunction<T[]> generator, Item<T> parent, IterationStrategy strategy) {
+        if (!IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return super.toArray(generator, parent, strategy);
+        }
+
+        int from = index(parent);
+        final T[] result = generator.apply(sizeAt(from));
+        copyValues(from, result, sizeAt(from));
+        return result;
+    }
+
+    /**
+     * Pre order arrays are copied from the range of the subtree
+     * @see Tree#toArray(Item, IterationStrategy)
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public Object[] toArray(Item<T> parent, IterationStrategy strategy) {
+        if (!IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return super.toArray(parent, strategy);
+        }
+
+        int from = index(parent);
+        final Object[] result = new Object[sizeAt(from)];
+        copyValues(from, result, result.length);
+        return result;
+    }
+
+    /**
+     * @see Tree#add(Object, Item)
+     * @param value
+     * @param parent parent to which add
+     * @return
+     */
+    @Override
+    public Item<T> add(T value, Item<T> parent) {
+        throw fixedStructure();
+    }
+
+    /**
+     * @see Tree#remove(Object, Item)
+     * @param value
+     * @param parent removed element
+     * @return
+     */
+    @Override
+    public Item<T> remove(T value, Item<T> parent) {
+        throw fixedStructure();
+    }
+
+    /**
+     * @see Tree#getRoot()
+     * @return
+     */
+    @Override
+    public Item<T> getRoot() {
+        return size() == 0 ? null : new Handle(0);
+    }
+
+    /**
+     * @see Tree#getChildren(Item)
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public Collection<Item<T>> getChildren(Item<T> item) {
+        return item.getChildren();
+    }
+
+    /**
+     * @see Tree#get(Item)
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public T get(Item<T> item) {
+        return valueAt(index(item));
+    }
+
+    /**
+     * @see Tree#set(Object, Item)
+     * @param value specified value
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public Item<T> set(T value, Item<T> item) {
+        return item.setValue(value);
+    }
+
+    /**
+     * @see Tree#hasChildren(Item)
+     * @param item <tt>true</tt> if root
+     * @return
+     */
+    @Override
+    public boolean hasChildren(Item<T> item) {
+        return item.hasChildren();
+    }
+
+    /**
+     * @see Tree#isRoot(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public boolean isRoot(Item<T> item) {
+        return item.isRoot();
+    }
+
+    /**
+     * @see Tree#getParent(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public Item<T> getParent(Item<T> item) {
+        return item.getParent();
+    }
+
+    /**
+     * @see Tree#setParent(Item, Item)
+     * @param item node to set parent
+     * @param parent parent to set
+     * @return
+     */
+    @Override
+    public Item<T> setParent(Item<T> item, Item<T> parent) {
+        throw fixedStructure();
+    }
+
+    /**
+     * @see Tree#findChild(Object, Item)
+     * @param value value that suppose to be find
+     * @param parent node from which start search
+     * @return
+     */
+    @Override
+    public Item<T> findChild(T value, Item<T> parent) {
+        AbstractTreeIterator it = iterator(defaultIterationStrategy, parent);
+        while (it.hasNext()) {
+            if (Objects.equals(it.next(), value)) {
+                return it.getCurrentItem();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see Tree#isParentOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isParentOf(Item<T> first, Item<T> second) {
+        return first != null && first.isParentOf(second);
+    }
+
+    /**
+     * @see Tree#isChildOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isChildOf(Item<T> first, Item<T> second) {
+        return first != null && first.isChildOf(second);
+    }
+
+    /**
+     * Subtree of a node is the range of positions following it, so the check takes constant time
+     * @see Tree#isAncestorOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isAncestorOf(Item<T> first, Item<T> second) {
+        if (first == null || second == null) {
+            return false;
+        }
+        final int ancestor = index(first);
+        final int descendant = index(second);
+        return ancestor < descendant && descendant < ancestor + sizeAt(ancestor);
+    }
+
+    /**
+     * Columns of the subtree are copied from its range to a compact tree
+     * @see Tree#subTree(Item)
+     * @param parent root node of subtree
+     * @return
+     */
+    @Override
+    public Tree<T> subTree(Item<T> parent) {
+        if (parent == null) {
+            return null;
+        }
+
+        int from = index(parent);
+        int to = from + sizeAt(from);
+        final Object[] subValues = new Object[to - from];
+        final int[] subParents = new int[to - from];
+        final int[] subSizes = new int[to - from];
+        copyValues(from, subValues, to - from);
+        subParents[0] = NO_NODE;
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                subParents[i - from] = parentAt(i) - from;
+            }
+            subSizes[i - from] = sizeAt(i);
+        }
+        return new CompactTree<>(defaultIterationStrategy, subValues, subParents, subSizes);
+    }
+
+    /**
+     * Pre order filter scans the range of the subtree
+     * @see Tree#filterFrom(Item, Predicate)
+     * @param parent node from which to start
+     * @param predicate predicate to test
+     * @return
+     */
+    @Override
+    public Collection<T> filterFrom(Item<T> parent, Predicate<? super T> predicate) {
+        if (!IterationStrategy.DEPTH_FIRST_PRE.equals(defaultIterationStrategy)) {
+            return super.filterFrom(parent, predicate);
+        }
+
+        Collection<T> result = new ArrayList<>();
+        int from = index(parent);
+        int to = from + sizeAt(from);
+        for (int i = from; i < to; i++) {
+            T curr = valueAt(i);
+            if (predicate.test(curr)) {
+                result.add(curr);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pre order walk scans the range of the subtree and jumps over the ranges of skipped subtrees
+     * @see Tree#walk(IterationStrategy, Item, TreeVisitor)
+     * @param strategy iteration strategy
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return
+     */
+    @Override
+    public boolean walk(IterationStrategy strategy, Item<T> parent, TreeVisitor<T> visitor) {
+        if (parent == null || !IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return super.walk(strategy, parent, visitor);
+        }
+
+        int from = index(parent);
+        int to = from + sizeAt(from);
+        for (int i = from; i < to; ) {
+            Item<T> item = new Handle(i);
+            T value = valueAt(i);
+            TreeVisitor.Result result = visitor.preVisit(item, value);
+            if (result == TreeVisitor.Result.CONTINUE) {
+                result = visitor.visit(item, value);
+            }
+            if (result == TreeVisitor.Result.TERMINATE) {
+                return false;
+            }
+            i += result == TreeVisitor.Result.SKIP_SUBTREE ? sizeAt(i) : 1;
+        }
+        return true;
+    }
+
+    /**
+     * @see Tree#iterator(IterationStrategy, Item)
+     * @param strategy supplied strategy
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public AbstractTreeIterator iterator(IterationStrategy strategy, Item<T> item) {
+        int start = item == null ? NO_NODE : index(item);
+        if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return new PreOrderIterator(start);
+        } else if (IterationStrategy.DEPTH_FIRST_POST.equals(strategy)) {
+            return new PostOrderIterator(start);
+        } else if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+            return new BreathFirstIterator(start);
+        } else {
+            throw new IllegalArgumentException(String.format("%s: no such enum constant for enum %s",
+                    strategy, IterationStrategy.class.getName()));
+        }
+    }
+
+    /**
+     * Pre order spliterator splits the range of the subtree in halves
+     * @see AbstractTree#spliterator(IterationStrategy, Item)
+     * @param strategy iteration strategy that defines order of elements
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    protected Spliterator<T> spliterator(IterationStrategy strategy, Item<T> parent) {
+        if (!IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return super.spliterator(strategy, parent);
+        }
+
+        int from = index(parent);
+        return IntStream.range(from, from + sizeAt(from)).mapToObj(this::valueAt).spliterator();
+    }
+
+    /**
+     * Abstract iterator that is used to retrieving Item<T> during iteration.
+     * Iterators keep positions only, the handle of the emitted element is created on request
+     */
+    public abstract class AbstractTreeIterator implements Iterator<T> {
+
+        /**
+         * position from which an iteration started
+         */
+        final int start;
+
+        /**
+         * position of the element that will be emitted by next() method, {@link #NO_NODE} if the iteration is over
+         */
+        int next;
+
+        /**
+         * position of the element that was emitted by next() method
+         */
+        int current = NO_NODE;
+
+        /**
+         * constructor with position from which start an iteration
+         * @param start position from which start an iteration
+         */
+        AbstractTreeIterator(int start) {
+            this.start = start;
+        }
+
+        /**
+         * getter for element that was emitted by next() method
+         * @return
+         */
+        public Item<T> getCurrentItem() {
+            return handle(current);
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return next != NO_NODE;
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public T next() {
+            if (next == NO_NODE) {
+                throw new NoSuchElementException();
+            }
+
+            current = next;
+            next = following(current);
+            return valueAt(current);
+        }
+
+        /**
+         * Finds the position following supplied one
+         * @param curr position that is emitted
+         * @return following position, {@link #NO_NODE} if there is none
+         */
+        abstract int following(int curr);
+    }
+
+    /**
+     * Iterator for traversing the tree according to deep first pre order iteration strategy,
+     * which reads the range of the subtree sequentially
+     */
+    private class PreOrderIterator extends AbstractTreeIterator {
+
+        /**
+         * position after the range of the subtree
+         */
+        private final int end;
+
+        /**
+         * constructor with position from which start an iteration
+         * @param start position from which start an iteration
+         */
+        PreOrderIterator(int start) {
+            super(start);
+            next = start;
+            end = start == NO_NODE ? NO_NODE : start + sizeAt(start);
+        }
+
+        /**
+         * @see AbstractTreeIterator#following(int)
+         * @param curr position that is emitted
+         * @return
+         */
+        @Override
+        int following(int curr) {
+            return curr + 1 < end ? curr + 1 : NO_NODE;
+        }
+    }
+
+    /**
+     * Iterator for traversing the tree according to deep first post order iteration strategy.
+     * The next position is the deepest first descendant of the next sibling, or the parent
+     */
+    private class PostOrderIterator extends AbstractTreeIterator {
+
+        /**
+         * constructor with position from which start an iteration
+         * @param start position from which start an iteration
+         */
+        PostOrderIterator(int start) {
+            super(start);
+            next = start == NO_NODE ? NO_NODE : firstLeaf(start);
+        }
+
+        /**
+         * @see AbstractTreeIterator#following(int)
+         * @param curr position that is emitted
+         * @return
+         */
+        @Override
+        int following(int curr) {
+            if (curr == start) {
+                return NO_NODE;
+            }
+            int sibling = nextSibling(curr);
+            return sibling != NO_NODE ? firstLeaf(sibling) : parentAt(curr);
+        }
+
+        /**
+         * Descends from supplied position through first children
+         * @param index supplied position
+         * @return position of the deepest first descendant, or the position itself
+         */
+        private int firstLeaf(int index) {
+            while (sizeAt(index) > 1) {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Iterator for traversing the tree according to breath first iteration strategy.
+     * The queue is an array sized by the subtree, since every position is queued once
+     */
+    private class BreathFirstIterator extends AbstractTreeIterator {
+
+        /**
+         * queued positions
+         */
+        private final int[] queue;
+
+        /**
+         * index of the next position to take from the queue
+         */
+        private int head;
+
+        /**
+         * index of the next position to put to the queue
+         */
+        private int tail;
+
+        /**
+         * constructor with position from which start an iteration
+         * @param start position from which start an iteration
+         */
+        BreathFirstIterator(int start) {
+            super(start);
+            next = start;
+            queue = new int[start == NO_NODE ? 0 : sizeAt(start)];
+        }
+
+        /**
+         * @see AbstractTreeIterator#following(int)
+         * @param curr position that is emitted
+         * @return
+         */
+        @Override
+        int following(int curr) {
+            for (int child = firstChild(curr); child != NO_NODE; child = nextSibling(child)) {
+                queue[tail++] = child;
+            }
+            return head < tail ? queue[head++] : NO_NODE;
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package com.globallogic.test.tree;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Skeletal implementation of Tree. Operations that can be expressed by a traversal are implemented
+ * on top of {@link #iterator(IterationStrategy, Item)}, {@link #getRoot()} and {@link #size()},
+ * implementations override them when they know a faster way
+ * @param <T> the type of elements in this tree
+ */
+public abstract class AbstractTree<T> implements Tree<T> {
+
+    /**
+     * default iteration strategy
+     */
+    protected final IterationStrategy defaultIterationStrategy;
+
+    /**
+     * constructor with default iteration strategy
+     * @param strategy default iteration strategy
+     */
+    protected AbstractTree(IterationStrategy strategy) {
+        this.defaultIterationStrategy = strategy;
+    }
+
+    /**
+     * @see Tree#isEmpty()
+     * @return
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @see Tree#contains(Object, Item)
+     * @param value element to test
+     * @param parent node from witch start
+     * @return
+     */
+    @Override
+    public boolean contains(T value, Item<T> parent) {
+        return findChild(value, parent) != null;
+    }
+
+    /**
+     * @see Tree#toArray(Object[], Item, IterationStrategy)
+     * @param typeRef the array into which the elements are stored, if it is big enough
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public T[] toArray(T[] typeRef, Item<T> parent, IterationStrategy strategy) {
+        return elements(strategy, parent).toArray(typeRef);
+    }
+
+    /**
+     * @see Tree#toArray(IntFunction, Item, IterationStrategy)
+     * @param generator function allocating an array of requested length
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public T[] toArray(IntFunction<T[]> generator, Item<T> parent, IterationStrategy strategy) {
+        List<T> elements = elements(strategy, parent);
+        return elements.toArray(generator.apply(elements.size()));
+    }
+
+    /**
+     * @see Tree#toArray(Item, IterationStrategy)
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public Object[] toArray(Item<T> parent, IterationStrategy strategy) {
+        return elements(strategy, parent).toArray();
+    }
+
+    /**
+     * Collects elements of the subtree starting from supplied node into a list
+     * @param strategy iteration strategy according to which a tree will be traversed
+     * @param parent starting from this node
+     * @return elements of the subtree
+     */
+    private List<T> elements(IterationStrategy strategy, Item<T> parent) {
+        List<T> result = new ArrayList<>();
+        Iterator<T> it = iterator(strategy, parent);
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * @see Tree#isParentOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isParentOf(Item<T> first, Item<T> second) {
+        return first != null && second != null && getParent(second) == first;
+    }
+
+    /**
+     * @see Tree#isChildOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isChildOf(Item<T> first, Item<T> second) {
+        return isParentOf(second, first);
+    }
+
+    /**
+     * Walks parents of the second node
+     * @see Tree#isAncestorOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isAncestorOf(Item<T> first, Item<T> second) {
+        if (first == null || second == null) {
+            return false;
+        }
+        for (Item<T> curr = getParent(second); curr != null; curr = getParent(curr)) {
+            if (curr == first) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @see Tree#isDescendantOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isDescendantOf(Item<T> first, Item<T> second) {
+        return isAncestorOf(second, first);
+    }
+
+    /**
+     * Walks parents of supplied node
+     * @see Tree#depth(Item)
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public int depth(Item<T> item) {
+        int depth = 0;
+        for (Item<T> curr = getParent(item); curr != null; curr = getParent(curr)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * @see Tree#filter(Predicate)
+     * @param predicate predicate to test
+     * @return
+     */
+    @Override
+    public Collection<T> filter(Predicate<? super T> predicate) {
+        return filterFrom(getRoot(), predicate);
+    }
+
+    /**
+     * @see Tree#filterFrom(Item, Predicate)
+     * @param parent node from which to start
+     * @param predicate predicate to test
+     * @return
+     */
+    @Override
+    public Collection<T> filterFrom(Item<T> parent, Predicate<? super T> predicate) {
+        Collection<T> result = new ArrayList<>();
+        Iterator<T> it = iterator(parent);
+
+        while (it.hasNext()) {
+            T curr = it.next();
+            if (predicate.test(curr)) {
+                result.add(curr);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @see Tree#filterFrom(Item, Predicate, Predicate)
+     * @param parent node from which to start
+     * @param predicate predicate to test
+     * @param subtreePredicate predicate telling whether the subtree starting from a node may contain matching elements
+     * @return
+     */
+    @Override
+    public Collection<T> filterFrom(Item<T> parent, Predicate<? super T> predicate,
+                                    Predicate<? super T> subtreePredicate) {
+        final Collection<T> result = new ArrayList<>();
+
+        walk(parent, new TreeVisitor<T>() {
+            @Override
+            public Result preVisit(Item<T> item, T value) {
+                return subtreePredicate.test(value) ? Result.CONTINUE : Result.SKIP_SUBTREE;
+            }
+
+            @Override
+            public Result visit(Item<T> item, T value) {
+                if (predicate.test(value)) {
+                    result.add(value);
+                }
+                return Result.CONTINUE;
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * @see Tree#walk(Item, TreeVisitor)
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return
+     */
+    @Override
+    public boolean walk(Item<T> parent, TreeVisitor<T> visitor) {
+        return walk(defaultIterationStrategy, parent, visitor);
+    }
+
+    /**
+     * The walk reads nodes by {@link #get(Item)} and {@link #getChildren(Item)}, skipped subtrees are not read
+     * @see Tree#walk(IterationStrategy, Item, TreeVisitor)
+     * @param strategy iteration strategy
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return
+     */
+    @Override
+    public boolean walk(IterationStrategy strategy, Item<T> parent, TreeVisitor<T> visitor) {
+        if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return parent == null || walkPreOrder(parent, visitor);
+        } else if (IterationStrategy.DEPTH_FIRST_POST.equals(strategy)) {
+            return parent == null || walkPostOrder(parent, visitor);
+        } else if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+            return parent == null || walkBreathFirst(parent, visitor);
+        } else {
+            throw new IllegalArgumentException(String.format("%s: no such enum constant for enum %s",
+                    strategy, IterationStrategy.class.getName()));
+        }
+    }
+
+    /**
+     * Walks the subtree in deep first pre order with a stack of iterators over children
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return <tt>false</tt> if the visitor terminated the walk, <tt>true</tt> otherwise
+     */
+    private boolean walkPreOrder(Item<T> parent, TreeVisitor<T> visitor) {
+        final Deque<Iterator<Item<T>>> stack = new ArrayDeque<>();
+        stack.add(Collections.singletonList(parent).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Item<T>> siblings = stack.peekLast();
+            if (!siblings.hasNext()) {
+                stack.pollLast();
+                continue;
+            }
+            Item<T> item = siblings.next();
+            T value = get(item);
+            TreeVisitor.Result result = visitor.preVisit(item, value);
+            if (result == TreeVisitor.Result.CONTINUE) {
+                result = visitor.visit(item, value);
+            }
+            if (result == TreeVisitor.Result.TERMINATE) {
+                return false;
+            }
+            if (result == TreeVisitor.Result.CONTINUE) {
+                Collection<Item<T>> children = getChildren(item);
+                if (!children.isEmpty()) {
+                    stack.add(children.iterator());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walks the subtree in deep first post order with a stack of entered nodes
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return <tt>false</tt> if the visitor terminated the walk, <tt>true</tt> otherwise
+     */
+    private boolean walkPostOrder(Item<T> parent, TreeVisitor<T> visitor) {
+        final Deque<Entered<T>> stack = new ArrayDeque<>();
+        Item<T> next = parent;
+        while (true) {
+            if (next != null) {
+                T value = get(next);
+                TreeVisitor.Result result = visitor.preVisit(next, value);
+                if (result == TreeVisitor.Result.TERMINATE) {
+                    return false;
+                }
+                if (result == TreeVisitor.Result.CONTINUE) {
+                    stack.add(new Entered<>(next, value, getChildren(next).iterator()));
+                }
+            }
+            if (stack.isEmpty()) {
+                return true;
+            }
+            Entered<T> entered = stack.peekLast();
+            if (entered.children.hasNext()) {
+                next = entered.children.next();
+            } else {
+                next = null;
+                stack.pollLast();
+                if (visitor.visit(entered.item, entered.value) == TreeVisitor.Result.TERMINATE) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the subtree in breath first order with a queue of reached nodes
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return <tt>false</tt> if the visitor terminated the walk, <tt>true</tt> otherwise
+     */
+    private boolean walkBreathFirst(Item<T> parent, TreeVisitor<T> visitor) {
+        final Deque<Item<T>> queue = new ArrayDeque<>();
+        queue.add(parent);
+        while (!queue.isEmpty()) {
+            Item<T> item = queue.pollFirst();
+            T value = get(item);
+            TreeVisitor.Result result = visitor.preVisit(item, value);
+            if (result == TreeVisitor.Result.CONTINUE) {
+                result = visitor.visit(item, value);
+            }
+            if (result == TreeVisitor.Result.TERMINATE) {
+                return false;
+            }
+            if (result == TreeVisitor.Result.CONTINUE) {
+                queue.addAll(getChildren(item));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @see Tree#parallelFilterFrom(Item, Predicate)
+     * @param parent node from which to start
+     * @param predicate predicate to test, must be safe to call from several threads
+     * @return
+     */
+    @Override
+    public Collection<T> parallelFilterFrom(Item<T> parent, Predicate<? super T> predicate) {
+        return parallelFilterFrom(defaultIterationStrategy, parent, predicate);
+    }
+
+    /**
+     * Elements are read in the order of supplied strategy and tested in parallel in batches
+     * @see Tree#parallelFilterFrom(IterationStrategy, Item, Predicate)
+     * @param strategy iteration strategy that defines order of the result
+     * @param parent node from which to start
+     * @param predicate predicate to test, must be safe to call from several threads
+     * @return
+     */
+    @Override
+    public Collection<T> parallelFilterFrom(IterationStrategy strategy, Item<T> parent,
+                                            Predicate<? super T> predicate) {
+        return StreamSupport.stream(spliterator(strategy, parent), true)
+                .filter(predicate)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Elements are read in deep first pre order and mapped in parallel in batches
+     * @see Tree#aggregate(Item, Object, Function, BinaryOperator)
+     * @param parent node from which to start
+     * @param identity identity value for combiner
+     * @param mapper function applied to every element
+     * @param combiner associative function combining two results
+     * @param <U>
+     * @return
+     */
+    @Override
+    public <U> U aggregate(Item<T> parent, U identity, Function<? super T, ? extends U> mapper,
+                           BinaryOperator<U> combiner) {
+        return StreamSupport.stream(spliterator(IterationStrategy.DEPTH_FIRST_PRE, parent), true)
+                .<U>map(mapper)
+                .reduce(identity, combiner);
+    }
+
+    /**
+     * @see Tree#iterator()
+     * @return
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(defaultIterationStrategy, getRoot());
+    }
+
+    /**
+     * @see Tree#iterator(Item)
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    public Iterator<T> iterator(Item<T> parent) {
+        return iterator(defaultIterationStrategy, parent);
+    }
+
+    /**
+     * @see Tree#iterator(IterationStrategy)
+     * @param strategy supplied iteration strategy
+     * @return
+     */
+    @Override
+    public Iterator<T> iterator(IterationStrategy strategy) {
+        return iterator(strategy, getRoot());
+    }
+
+    /**
+     * @see Tree#spliterator()
+     * @return
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        if (getRoot() == null || isEmpty()) {
+            return Spliterators.emptySpliterator();
+        }
+        return spliterator(getRoot());
+    }
+
+    /**
+     * The spliterator splits by batches of elements read in the order of default iteration strategy
+     * @see Tree#spliterator(Item)
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    public Spliterator<T> spliterator(Item<T> parent) {
+        return spliterator(defaultIterationStrategy, parent);
+    }
+
+    /**
+     * Returns a spliterator over the elements of the subtree starting from supplied node,
+     * which splits by batches of elements read in the order of supplied strategy
+     * @param strategy iteration strategy that defines order of elements
+     * @param parent supplied node
+     * @return a spliterator over the elements of the subtree
+     */
+    protected Spliterator<T> spliterator(IterationStrategy strategy, Item<T> parent) {
+        return Spliterators.spliteratorUnknownSize(iterator(strategy, parent), Spliterator.ORDERED);
+    }
+
+    /**
+     * @see Tree#hashCode()
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (T item : this)
+            hashCode = 31 * hashCode + (item == null ? 0 : item.hashCode());
+        return hashCode;
+    }
+
+    /**
+     * @see Tree#equals(Object)
+     * @param that
+     * @return
+     */
+    @Override
+    public boolean equals(Object that) {
+        if (that == this) {
+            return true;
+        }
+        if (!(that instanceof Tree)) {
+            return false;
+        }
+
+        Iterator<T> it1 = iterator();
+        Iterator<?> it2 = ((Tree<?>) that).iterator();
+        while (it1.hasNext() && it2.hasNext()) {
+            T item1 = it1.next();
+            Object item2 = it2.next();
+            if (!(Objects.equals(item1, item2))) {
+                return false;
+            }
+        }
+        return !(it1.hasNext() || it2.hasNext());
+    }
+
+    /**
+     * @see Tree#toString()
+     * @return
+     */
+    @Override
+    public String toString() {
+        return toString(defaultIterationStrategy, getRoot());
+    }
+
+    /**
+     * @see Tree#toString(Item)
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    public String toString(Item<T> parent) {
+        return toString(defaultIterationStrategy, parent);
+    }
+
+    /**
+     * @see Tree#toString(IterationStrategy)
+     * @param strategy supplied iteration strategy
+     * @return
+     */
+    @Override
+    public String toString(IterationStrategy strategy) {
+        return toString(strategy, getRoot());
+    }
+
+    /**
+     * @see Tree#toString(IterationStrategy, Item)
+     * @param strategy supplied iteration strategy
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    public String toString(IterationStrategy strategy, Item<T> parent) {
+        Iterator<T> it = iterator(strategy, parent);
+        if (!it.hasNext()) {
+            return "[]";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (; ; ) {
+            T e = it.next();
+            sb.append(e == this ? "(this Tree)" : e);
+            if (!it.hasNext()) {
+                return sb.append(']').toString();
+            }
+            sb.append(',').append(' ');
+        }
+    }
+
+    /**
+     * Node entered by the walk in deep first post order, which waits for its descendants
+     * @param <T> the type of elements
+     */
+    private static final class Entered<T> {
+
+        /**
+         * entered node
+         */
+        final Item<T> item;
+
+        /**
+         * value of the node
+         */
+        final T value;
+
+        /**
+         * children of the node not entered yet
+         */
+        final Iterator<Item<T>> children;
+
+        /**
+         * constructor with entered node
+         * @param item entered node
+         * @param value value of the node
+         * @param children iterator over children of the node
+         */
+        Entered(Item<T> item, T value, Iterator<Item<T>> children) {
+            this.item = item;
+            this.value = value;
+            this.children = children;
+        }
+    }
+}
@@ -0,0 +1,827 @@
+package com.globallogic.test.tree;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Thread-safe implementation of Tree for ingestion: nodes can be added and their values replaced,
+ * but never removed or moved. Children of a node form a singly linked list that is appended to
+ * with compare-and-set, so any number of threads add to the same or different parents without blocking.
+ * Since the parent of a node never changes, iterators walk the tree by links and are weakly consistent:
+ * they never throw ConcurrentModificationException and see every node that was added before they reached its parent
+ * @param <T> the type of elements in this tree
+ */
+public class AppendOnlyTree<T> extends AbstractTree<T> {
+
+    /**
+     * number of elements in tree
+     */
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * root node
+     */
+    private final Node<T> root;
+
+    /**
+     * Node of append-only tree
+     * @param <T> the type of element in this node
+     */
+    static final class Node<T> extends Item<T> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> FIRST_CHILD =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "firstChild");
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> LAST_CHILD =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "lastChild");
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT_SIBLING =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "nextSibling");
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> CHILD_COUNT =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "childCount");
+
+        /**
+         * tree this node belongs to
+         */
+        final AppendOnlyTree<T> tree;
+
+        /**
+         * Parent of this node
+         */
+        final Node<T> parent;
+
+        /**
+         * whether this node is reachable from the root of the tree
+         */
+        final boolean attached;
+
+        /**
+         * Node value
+         */
+        volatile T value;
+
+        /**
+         * first child of this node
+         */
+        volatile Node<T> firstChild;
+
+        /**
+         * last child of this node, or one of the preceding children while an append is in progress
+         */
+        volatile Node<T> lastChild;
+
+        /**
+         * next child of the parent of this node
+         */
+        volatile Node<T> nextSibling;
+
+        /**
+         * number of children of this node
+         */
+        volatile int childCount;
+
+        /**
+         * constructor with tree, parent and element
+         * @param tree tree the node belongs to
+         * @param parent node parent
+         * @param value node element
+         * @param attached whether the node is reachable from the root of the tree
+         */
+        Node(AppendOnlyTree<T> tree, Node<T> parent, T value, boolean attached) {
+            this.tree = tree;
+            this.parent = parent;
+            this.value = value;
+            this.attached = attached;
+        }
+
+        /**
+         * Appends supplied node to children of this node without locking. An append that finds
+         * the last child lagging behind completes the concurrent append before retrying
+         * @param child node to append
+         */
+        @SuppressWarnings("unchecked")
+        void append(Node<T> child) {
+            for (; ; ) {
+                Node<T> last = lastChild;
+                if (last == null) {
+                    if (FIRST_CHILD.compareAndSet(this, null, child)) {
+                        LAST_CHILD.compareAndSet(this, null, child);
+                        break;
+                    }
+                    LAST_CHILD.compareAndSet(this, null, firstChild);
+                } else {
+                    Node<T> next = last.nextSibling;
+                    if (next == null) {
+                        if (NEXT_SIBLING.compareAndSet(last, null, child)) {
+                            LAST_CHILD.compareAndSet(this, last, child);
+                            break;
+                        }
+                    } else {
+                        LAST_CHILD.compareAndSet(this, last, next);
+                    }
+                }
+            }
+            CHILD_COUNT.incrementAndGet(this);
+        }
+
+        /**
+         * Returns number of nodes in the subtree starting from this node, counted by a traversal
+         * @see Item#size()
+         * @return
+         */
+        @Override
+        int size() {
+            int count = 0;
+            Iterator<T> it = tree.iterator(IterationStrategy.DEPTH_FIRST_PRE, this);
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * @see Item#contains(Object)
+         * @param value element whose presence is to be tested
+         * @return
+         */
+        @Override
+        boolean contains(T value) {
+            return tree.contains(value, this);
+        }
+
+        /**
+         * @see Item#toArray(Object[], IterationStrategy)
+         * @param typeRef the array into which the elements are stored, if it is big enough
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        T[] toArray(T[] typeRef, IterationStrategy strategy) {
+            return tree.toArray(typeRef, this, strategy);
+        }
+
+        /**
+         * @see Item#toArray(IntFunction, IterationStrategy)
+         * @param generator function allocating an array of requested length
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        T[] toArray(IntFunction<T[]> generator, IterationStrategy strategy) {
+            return tree.toArray(generator, this, strategy);
+        }
+
+        /**
+         * @see Item#toArray(IterationStrategy)
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        Object[] toArray(IterationStrategy strategy) {
+            return tree.toArray(this, strategy);
+        }
+
+        /**
+         * @see Item#clear()
+         */
+        @Override
+        void clear() {
+            throw appendOnly();
+        }
+
+        /**
+         * @see Item#getValue()
+         * @return
+         */
+        @Override
+        T getValue() {
+            return value;
+        }
+
+        /**
+         * @see Item#setValue(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> setValue(T value) {
+            this.value = value;
+            return this;
+        }
+
+        /**
+         * @see Item#hasChildren()
+         * @return
+         */
+        @Override
+        boolean hasChildren() {
+            return firstChild != null;
+        }
+
+        /**
+         * @see Item#isRoot()
+         * @return
+         */
+        @Override
+        boolean isRoot() {
+            return parent == null;
+        }
+
+        /**
+         * @see Item#getParent()
+         * @return
+         */
+        @Override
+        Item<T> getParent() {
+            return parent;
+        }
+
+        /**
+         * @see Item#setParent(Item)
+         * @param parent node that suppose to be parent node of this node
+         * @return
+         */
+        @Override
+        Item<T> setParent(Item<T> parent) {
+            throw appendOnly();
+        }
+
+        /**
+         * Returns a copy of children of this node
+         * @see Item#getChildren()
+         * @return
+         */
+        @Override
+        Collection<Item<T>> getChildren() {
+            List<Item<T>> result = new ArrayList<>(childCount);
+            for (Node<T> child = firstChild; child != null; child = child.nextSibling) {
+                result.add(child);
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        /**
+         * @see Item#findChild(Object)
+         * @param value value that suppose to be find
+         * @return
+         */
+        @Override
+        Item<T> findChild(T value) {
+            return tree.findChild(value, this);
+        }
+
+        /**
+         * @see Item#addChild(Item)
+         * @param item
+         * @return
+         */
+        @Override
+        Item<T> addChild(Item<T> item) {
+            throw appendOnly();
+        }
+
+        /**
+         * @see Item#removeChild(Item)
+         * @param item
+         * @return
+         */
+        @Override
+        Item<T> removeChild(Item<T> item) {
+            throw appendOnly();
+        }
+
+        /**
+         * @see Item#addChild(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> addChild(T value) {
+            return tree.add(value, this);
+        }
+
+        /**
+         * @see Item#removeChild(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> removeChild(T value) {
+            throw appendOnly();
+        }
+
+        /**
+         * @see Item#isParentOf(Item)
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        boolean isParentOf(Item<T> item) {
+            return item != null && item.getParent() == this;
+        }
+
+        /**
+         * @see Item#isChildOf(Item)
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        boolean isChildOf(Item<T> item) {
+            return item != null && parent == item;
+        }
+
+        /**
+         * Returns a copy of the subtree starting from this node, which is not attached to the tree
+         * and can not be attached to it since nodes are never moved
+         * @see Item#deepCopy()
+         * @return
+         */
+        @Override
+        Item<T> deepCopy() {
+            Node<T> copy = new Node<>(tree, null, value, false);
+            copyChildren(this, copy);
+            return copy;
+        }
+
+        /**
+         * @see Item#toString()
+         * @return
+         */
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Default constructor for AppendOnlyTree
+     */
+    public AppendOnlyTree() {
+        this(IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    /**
+     * constructor for AppendOnlyTree with root value
+     * @param rootValue
+     */
+    public AppendOnlyTree(T rootValue) {
+        this(IterationStrategy.DEPTH_FIRST_PRE, rootValue);
+    }
+
+    /**
+     * constructor for AppendOnlyTree with default iteration strategy
+     * @param strategy
+     */
+    public AppendOnlyTree(IterationStrategy strategy) {
+        super(strategy);
+        this.root = null;
+    }
+
+    /**
+     * constructor for AppendOnlyTree with default iteration strategy and root value
+     * @param strategy
+     * @param rootValue
+     */
+    private AppendOnlyTree(IterationStrategy strategy, T rootValue) {
+        super(strategy);
+        this.root = new Node<>(this, null, rootValue, true);
+        size.increment();
+    }
+
+    /**
+     * Returns exception thrown by operations removing or moving nodes
+     * @return exception to throw
+     */
+    private static UnsupportedOperationException appendOnly() {
+        return new UnsupportedOperationException("Nodes of append-only tree can not be removed or moved");
+    }
+
+    /**
+     * Returns supplied node as a node of this tree
+     * @param item supplied node
+     * @return node of the tree
+     */
+    private Node<T> node(Item<T> item) {
+        return (Node<T>) item;
+    }
+
+    /**
+     * Copies children of supplied node with their subtrees under supplied copy, which is not published yet
+     * @param source node to copy
+     * @param copy copy of the node
+     * @param <T> the type of elements
+     * @return number of copied nodes
+     */
+    private static <T> int copyChildren(Node<T> source, Node<T> copy) {
+        int count = 0;
+        Deque<Node<T>> sources = new ArrayDeque<>();
+        Deque<Node<T>> copies = new ArrayDeque<>();
+        sources.push(source);
+        copies.push(copy);
+        while (!sources.isEmpty()) {
+            Node<T> currSource = sources.pop();
+            Node<T> currCopy = copies.pop();
+            Node<T> last = null;
+            for (Node<T> child = currSource.firstChild; child != null; child = child.nextSibling) {
+                Node<T> childCopy = new Node<>(currCopy.tree, currCopy, child.value, currCopy.attached);
+                if (last == null) {
+                    currCopy.firstChild = childCopy;
+                } else {
+                    last.nextSibling = childCopy;
+                }
+                last = childCopy;
+                currCopy.childCount++;
+                sources.push(child);
+                copies.push(childCopy);
+                count++;
+            }
+            currCopy.lastChild = last;
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of elements in this tree. It is exact when no addition is in progress
+     * @see Tree#size()
+     * @return
+     */
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * @see Tree#clear(Item)
+     * @param parent supplied node
+     */
+    @Override
+    public void clear(Item<T> parent) {
+        throw appendOnly();
+    }
+
+    /**
+     * Adding never blocks, it is safe to add to the same parent from several threads
+     * @see Tree#add(Object, Item)
+     * @param value
+     * @param parent parent to which add
+     * @return
+     */
+    @Override
+    public Item<T> add(T value, Item<T> parent) {
+        Node<T> node = node(parent);
+        Node<T> child = new Node<>(this, node, value, node.attached);
+        node.append(child);
+        if (child.attached) {
+            size.increment();
+        }
+        return child;
+    }
+
+    /**
+     * @see Tree#remove(Object, Item)
+     * @param value
+     * @param parent removed element
+     * @return
+     */
+    @Override
+    public Item<T> remove(T value, Item<T> parent) {
+        throw appendOnly();
+    }
+
+    /**
+     * @see Tree#getRoot()
+     * @return
+     */
+    @Override
+    public Item<T> getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns a copy of children of supplied node
+     * @see Tree#getChildren(Item)
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public Collection<Item<T>> getChildren(Item<T> item) {
+        return item.getChildren();
+    }
+
+    /**
+     * @see Tree#get(Item)
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public T get(Item<T> item) {
+        return item.getValue();
+    }
+
+    /**
+     * @see Tree#set(Object, Item)
+     * @param value specified value
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public Item<T> set(T value, Item<T> item) {
+        return item.setValue(value);
+    }
+
+    /**
+     * @see Tree#hasChildren(Item)
+     * @param item <tt>true</tt> if root
+     * @return
+     */
+    @Override
+    public boolean hasChildren(Item<T> item) {
+        return item.hasChildren();
+    }
+
+    /**
+     * @see Tree#isRoot(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public boolean isRoot(Item<T> item) {
+        return item.isRoot();
+    }
+
+    /**
+     * @see Tree#getParent(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public Item<T> getParent(Item<T> item) {
+        return item.getParent();
+    }
+
+    /**
+     * @see Tree#setParent(Item, Item)
+     * @param item node to set parent
+     * @param parent parent to set
+     * @return
+     */
+    @Override
+    public Item<T> setParent(Item<T> item, Item<T> parent) {
+        throw appendOnly();
+    }
+
+    /**
+     * @see Tree#findChild(Object, Item)
+     * @param value value that suppose to be find
+     * @param parent node from which start search
+     * @return
+     */
+    @Override
+    public Item<T> findChild(T value, Item<T> parent) {
+        AbstractTreeIterator it = iterator(defaultIterationStrategy, parent);
+        while (it.hasNext()) {
+            if (Objects.equals(it.next(), value)) {
+                return it.getCurrentItem();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see Tree#subTree(Item)
+     * @param parent root node of subtree
+     * @return
+     */
+    @Override
+    public Tree<T> subTree(Item<T> parent) {
+        if (parent == null) {
+            return null;
+        }
+
+        AppendOnlyTree<T> treeCopy = new AppendOnlyTree<>(defaultIterationStrategy, parent.getValue());
+        treeCopy.size.add(copyChildren(node(parent), treeCopy.root));
+        return treeCopy;
+    }
+
+    /**
+     * Returns a weakly consistent iterator
+     * @see Tree#iterator(IterationStrategy, Item)
+     * @param strategy supplied strategy
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public AbstractTreeIterator iterator(IterationStrategy strategy, Item<T> item) {
+        if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return new PreOrderIterator(node(item));
+        } else if (IterationStrategy.DEPTH_FIRST_POST.equals(strategy)) {
+            return new PostOrderIterator(node(item));
+        } else if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+            return new BreathFirstIterator(node(item));
+        } else {
+            throw new IllegalArgumentException(String.format("%s: no such enum constant for enum %s",
+                    strategy, IterationStrategy.class.getName()));
+        }
+    }
+
+    /**
+     * The spliterator is weakly consistent
+     * @see AbstractTree#spliterator(IterationStrategy, Item)
+     * @param strategy iteration strategy that defines order of elements
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    protected Spliterator<T> spliterator(IterationStrategy strategy, Item<T> parent) {
+        return Spliterators.spliteratorUnknownSize(iterator(strategy, parent),
+                Spliterator.ORDERED | Spliterator.CONCURRENT);
+    }
+
+    /**
+     * Abstract iterator that is used to retrieving Item<T> during iteration.
+     * Iterators find the next node when the current one is emitted
+     */
+    public abstract class AbstractTreeIterator implements Iterator<T> {
+        /**
+         * element that was emitted by next() method
+         */
+        protected Item<T> currentItem;
+
+        /**
+         * element from which an iteration started
+         */
+        final Node<T> start;
+
+        /**
+         * element that will be emitted by next() method, <tt>null</tt> if the iteration is over
+         */
+        Node<T> next;
+
+        /**
+         * constructor with element from which start an iteration
+         * @param start element from which start an iteration
+         */
+        AbstractTreeIterator(Node<T> start) {
+            this.start = start;
+        }
+
+        /**
+         * getter for element that was emitted by next() method
+         * @return
+         */
+        public Item<T> getCurrentItem() {
+            return currentItem;
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public T next() {
+            Node<T> curr = next;
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            next = following(curr);
+            currentItem = curr;
+            return curr.value;
+        }
+
+        /**
+         * Finds the node following supplied one
+         * @param curr node that is emitted
+         * @return following node, <tt>null</tt> if there is none
+         */
+        abstract Node<T> following(Node<T> curr);
+    }
+
+    /**
+     * Iterator for traversing the tree according to deep first pre order iteration strategy.
+     * The next node is found by links: the first child, or the next sibling of the closest ancestor
+     * having one, so the iterator does not allocate
+     */
+    private class PreOrderIterator extends AbstractTreeIterator {
+
+        /**
+         * constructor with element from which start an iteration
+         * @param item element from which start an iteration
+         */
+        PreOrderIterator(Node<T> item) {
+            super(item);
+            next = item;
+        }
+
+        /**
+         * @see AbstractTreeIterator#following(Node)
+         * @param curr node that is emitted
+         * @return
+         */
+        @Override
+        Node<T> following(Node<T> curr) {
+            if (curr.firstChild != null) {
+                return curr.firstChild;
+            }
+            for (Node<T> node = curr; node != start; node = node.parent) {
+                if (node.nextSibling != null) {
+                    return node.nextSibling;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Iterator for traversing the tree according to deep first post order iteration strategy.
+     * The next node is found by links: the deepest first descendant of the next sibling, or the parent,
+     * so the iterator does not allocate
+     */
+    private class PostOrderIterator extends AbstractTreeIterator {
+
+        /**
+         * constructor with element from which start an iteration
+         * @param item element from which start an iteration
+         */
+        PostOrderIterator(Node<T> item) {
+            super(item);
+            next = item == null ? null : firstLeaf(item);
+        }
+
+        /**
+         * @see AbstractTreeIterator#following(Node)
+         * @param curr node that is emitted
+         * @return
+         */
+        @Override
+        Node<T> following(Node<T> curr) {
+            if (curr == start) {
+                return null;
+            }
+            return curr.nextSibling != null ? firstLeaf(curr.nextSibling) : curr.parent;
+        }
+
+        /**
+         * Descends from supplied node through first children
+         * @param node supplied node
+         * @return the deepest first descendant of the node, or the node itself
+         */
+        private Node<T> firstLeaf(Node<T> node) {
+            while (node.firstChild != null) {
+                node = node.firstChild;
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Iterator for traversing the tree according to breath first iteration strategy
+     */
+    private class BreathFirstIterator extends AbstractTreeIterator {
+
+        /**
+         * internal queue for storing elements during iteration
+         */
+        final Deque<Node<T>> queue = new ArrayDeque<>();
+
+        /**
+         * constructor with element from which start an iteration
+         * @param item element from which start an iteration
+         */
+        BreathFirstIterator(Node<T> item) {
+            super(item);
+            next = item;
+        }
+
+        /**
+         * @see AbstractTreeIterator#following(Node)
+         * @param curr node that is emitted
+         * @return
+         */
+        @Override
+        Node<T> following(Node<T> curr) {
+            for (Node<T> child = curr.firstChild; child != null; child = child.nextSibling) {
+                queue.add(child);
+            }
+            return queue.pollFirst();
+        }
+    }
+}
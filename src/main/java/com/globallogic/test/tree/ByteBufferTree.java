@@ -0,0 +1,212 @@
+package com.globallogic.test.tree;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Implementation of Tree over a buffer with a tree in binary format, see {@link TreeFormat}.
+ * Nodes are laid out in deep first pre order, see {@link AbstractPreOrderTree}. Parent positions and subtree
+ * sizes are indexed from the structure section once, values stay in the buffer and are decoded on access.
+ * The tree is read only
+ * @param <T> the type of elements in this tree
+ */
+public class ByteBufferTree<T> extends AbstractPreOrderTree<T> {
+
+    /**
+     * buffer with the tree, positioned at the header
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * codec of values
+     */
+    private final ValueCodec<T> codec;
+
+    /**
+     * position of the parent of every node
+     */
+    private final int[] parents;
+
+    /**
+     * number of nodes in the subtree starting from every node
+     */
+    private final int[] sizes;
+
+    /**
+     * position of the length of the value of every node in the buffer, <tt>null</tt> for values of fixed width
+     */
+    private final int[] offsets;
+
+    /**
+     * position of the value section in the buffer
+     */
+    private final int valuesStart;
+
+    /**
+     * constructor indexing the structure of a tree in supplied buffer
+     * @param buffer buffer positioned at the tree
+     * @param codec codec of values
+     * @param strategy default iteration strategy
+     * @throws IllegalArgumentException if the buffer does not contain a tree in binary format
+     */
+    ByteBufferTree(ByteBuffer buffer, ValueCodec<T> codec, IterationStrategy strategy) {
+        super(strategy);
+        this.buffer = buffer.slice();
+        this.codec = codec;
+
+        final ByteBuffer in = this.buffer.duplicate();
+        try {
+            TreeFormat.checkHeader(in, codec);
+            final int count = TreeFormat.getVarint(in);
+            if (count < 0) {
+                throw new IllegalArgumentException(String.format("Invalid number of nodes %d", count));
+            }
+            parents = new int[count];
+            sizes = new int[count];
+            indexStructure(in);
+            valuesStart = in.position();
+
+            if (codec.width() == ValueCodec.VARIABLE) {
+                offsets = new int[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = in.position();
+                    skip(in, TreeFormat.getVarint(in));
+                }
+            } else {
+                offsets = null;
+                skip(in, (long) count * codec.width());
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Buffer ends before the end of a tree", e);
+        }
+    }
+
+    /**
+     * Creates a tree over supplied buffer with supplied default iteration strategy
+     * @see TreeFormat#wrap(ByteBuffer, ValueCodec)
+     * @param buffer buffer positioned at the tree
+     * @param codec codec of values
+     * @param strategy default iteration strategy
+     * @param <T> the type of elements
+     * @return tree over the buffer
+     */
+    public static <T> ByteBufferTree<T> wrap(ByteBuffer buffer, ValueCodec<T> codec, IterationStrategy strategy) {
+        return new ByteBufferTree<>(buffer, codec, strategy);
+    }
+
+    /**
+     * Reads numbers of children and fills parent positions and subtree sizes.
+     * Nodes still expecting children are kept on a stack
+     * @param in buffer positioned at the structure section
+     */
+    private void indexStructure(ByteBuffer in) {
+        final int count = parents.length;
+        int[] open = new int[16];
+        int[] remaining = new int[16];
+        int depth = 0;
+        for (int i = 0; i < count; i++) {
+            int childCount = TreeFormat.getVarint(in);
+            if (childCount < 0) {
+                throw new IllegalArgumentException(String.format("Node %d has %d children", i, childCount));
+            }
+            if (i > 0 && depth == 0) {
+                throw new IllegalArgumentException(String.format("Node %d follows the last node of the tree", i));
+            }
+            parents[i] = depth == 0 ? NO_NODE : open[depth - 1];
+            sizes[i] = 1;
+            if (depth > 0) {
+                remaining[depth - 1]--;
+            }
+            if (childCount > 0) {
+                if (depth == open.length) {
+                    open = Arrays.copyOf(open, depth << 1);
+                    remaining = Arrays.copyOf(remaining, depth << 1);
+                }
+                open[depth] = i;
+                remaining[depth++] = childCount;
+            }
+            while (depth > 0 && remaining[depth - 1] == 0) {
+                depth--;
+            }
+        }
+        if (depth != 0) {
+            throw new IllegalArgumentException(String.format("%d nodes still expect children", depth));
+        }
+        for (int i = count - 1; i > 0; i--) {
+            sizes[parents[i]] += sizes[i];
+        }
+    }
+
+    /**
+     * Skips supplied number of bytes of supplied buffer
+     * @param in supplied buffer
+     * @param size number of bytes
+     * @throws BufferUnderflowException if the buffer has less bytes remaining
+     */
+    private static void skip(ByteBuffer in, long size) {
+        if (size > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        in.position(in.position() + (int) size);
+    }
+
+    /**
+     * @see Tree#size()
+     * @return
+     */
+    @Override
+    public int size() {
+        return parents.length;
+    }
+
+    /**
+     * @see AbstractPreOrderTree#parentAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    int parentAt(int index) {
+        return parents[index];
+    }
+
+    /**
+     * @see AbstractPreOrderTree#sizeAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    int sizeAt(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @see AbstractPreOrderTree#valueAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    T valueAt(int index) {
+        final ByteBuffer value = buffer.duplicate();
+        if (offsets == null) {
+            int offset = valuesStart + index * codec.width();
+            value.limit(offset + codec.width());
+            value.position(offset);
+        } else {
+            value.position(offsets[index]);
+            int size = TreeFormat.getVarint(value);
+            value.limit(value.position() + size);
+        }
+        return codec.decode(value);
+    }
+
+    /**
+     * @see AbstractPreOrderTree#setValueAt(int, Object)
+     * @param index position of the node
+     * @param value new value
+     */
+    @Override
+    void setValueAt(int index, T value) {
+        throw new UnsupportedOperationException("Tree over a buffer can not be modified");
+    }
+}
@@ -0,0 +1,235 @@
+package com.globallogic.test.tree;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * Implementation of Tree that keeps nodes in primitive columns on heap instead of objects.
+ * Nodes are laid out in deep first pre order, see {@link AbstractPreOrderTree}, pre order traversals
+ * and subtree scans read arrays sequentially. The structure of the tree is fixed when it is built,
+ * values can be replaced
+ * @param <T> the type of elements in this tree
+ */
+public class CompactTree<T> extends AbstractPreOrderTree<T> {
+
+    /**
+     * values of nodes
+     */
+    private final Object[] values;
+
+    /**
+     * position of the parent of every node, {@link #NO_NODE} for the root
+     */
+    private final int[] parents;
+
+    /**
+     * number of nodes in the subtree starting from every node, including the node
+     */
+    private final int[] sizes;
+
+    /**
+     * constructor with columns in pre order layout
+     * @param strategy default iteration strategy
+     * @param values values of nodes
+     * @param parents position of the parent of every node
+     * @param sizes number of nodes in the subtree starting from every node
+     */
+    CompactTree(IterationStrategy strategy, Object[] values, int[] parents, int[] sizes) {
+        super(strategy);
+        this.values = values;
+        this.parents = parents;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Creates a compact copy of supplied tree with deep first pre order as default iteration strategy
+     * @see #of(Tree, IterationStrategy)
+     * @param source tree to copy
+     * @param <T> the type of elements
+     * @return new tree instance
+     */
+    public static <T> CompactTree<T> of(Tree<T> source) {
+        return of(source, IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    /**
+     * Creates a compact copy of supplied tree. The source is traversed once in deep first pre order,
+     * subtree sizes are summed from the last node to the first
+     * @param source tree to copy
+     * @param strategy default iteration strategy of the copy
+     * @param <T> the type of elements
+     * @return new tree instance
+     */
+    public static <T> CompactTree<T> of(Tree<T> source, IterationStrategy strategy) {
+        final Columns columns = new Columns(Math.max(source.size(), 1));
+        final int count = layout(source, columns);
+        final int[] parents = Arrays.copyOf(columns.parents, count);
+        return new CompactTree<>(strategy, Arrays.copyOf(columns.values, count), parents, sizesOf(parents));
+    }
+
+    /**
+     * Builds a compact tree from values and indices of their parents with deep first pre order
+     * as default iteration strategy
+     * @see #fromParentArray(Object[], int[], IterationStrategy)
+     * @param values values of nodes
+     * @param parentIdx index of the parent of every node, <tt>-1</tt> for the root
+     * @param <T> the type of elements
+     * @return new tree instance
+     */
+    public static <T> CompactTree<T> fromParentArray(T[] values, int[] parentIdx) {
+        return fromParentArray(values, parentIdx, IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    /**
+     * Builds a compact tree from values and indices of their parents. The columns are filled in pre order
+     * directly from the arrays, no node objects are created. Children of a node are ordered by their indices
+     * @param values values of nodes
+     * @param parentIdx index of the parent of every node, <tt>-1</tt> for the root
+     * @param strategy default iteration strategy
+     * @param <T> the type of elements
+     * @return new tree instance, empty if there are no values
+     * @throws IllegalArgumentException if the arrays do not describe a single tree
+     */
+    public static <T> CompactTree<T> fromParentArray(T[] values, int[] parentIdx, IterationStrategy strategy) {
+        final Columns columns = new Columns(Math.max(values.length, 1));
+        final int count = layout(values, parentIdx, columns);
+        final int[] parents = Arrays.copyOf(columns.parents, count);
+        return new CompactTree<>(strategy, Arrays.copyOf(columns.values, count), parents, sizesOf(parents));
+    }
+
+    /**
+     * Sums subtree sizes of nodes laid out in pre order from the last node to the first
+     * @param parents position of the parent of every node
+     * @return number of nodes in the subtree starting from every node
+     */
+    private static int[] sizesOf(int[] parents) {
+        int[] sizes = new int[parents.length];
+        Arrays.fill(sizes, 1);
+        for (int i = parents.length - 1; i > 0; i--) {
+            sizes[parents[i]] += sizes[i];
+        }
+        return sizes;
+    }
+
+    /**
+     * Growing columns of values and parents filled by a layout of a tree
+     */
+    private static final class Columns implements LayoutSink<Object> {
+
+        /**
+         * values of nodes
+         */
+        Object[] values;
+
+        /**
+         * position of the parent of every node
+         */
+        int[] parents;
+
+        /**
+         * constructor with initial capacity
+         * @param capacity initial capacity
+         */
+        Columns(int capacity) {
+            values = new Object[capacity];
+            parents = new int[capacity];
+        }
+
+        /**
+         * @see LayoutSink#accept(int, int, Object)
+         * @param index position of the node
+         * @param parent position of the parent
+         * @param value value of the node
+         */
+        @Override
+        public void accept(int index, int parent, Object value) {
+            if (index == values.length) {
+                values = Arrays.copyOf(values, index << 1);
+                parents = Arrays.copyOf(parents, index << 1);
+            }
+            values[index] = value;
+            parents[index] = parent;
+        }
+    }
+
+    /**
+     * @see Tree#size()
+     * @return
+     */
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @see AbstractPreOrderTree#parentAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    int parentAt(int index) {
+        return parents[index];
+    }
+
+    /**
+     * @see AbstractPreOrderTree#sizeAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    int sizeAt(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @see AbstractPreOrderTree#valueAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    T valueAt(int index) {
+        return (T) values[index];
+    }
+
+    /**
+     * @see AbstractPreOrderTree#setValueAt(int, Object)
+     * @param index position of the node
+     * @param value new value
+     */
+    @Override
+    void setValueAt(int index, T value) {
+        values[index] = value;
+    }
+
+    /**
+     * Values are copied from the range of the array
+     * @see AbstractPreOrderTree#copyValues(int, Object[], int)
+     * @param from first position to copy
+     * @param dest destination array
+     * @param count number of positions to copy
+     */
+    @Override
+    void copyValues(int from, Object[] dest, int count) {
+        System.arraycopy(values, from, dest, 0, count);
+    }
+
+    /**
+     * Pre order spliterator splits the range of the array in halves
+     * @see AbstractTree#spliterator(IterationStrategy, Item)
+     * @param strategy iteration strategy that defines order of elements
+     * @param parent supplied node
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Spliterator<T> spliterator(IterationStrategy strategy, Item<T> parent) {
+        if (!IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return super.spliterator(strategy, parent);
+        }
+
+        int from = index(parent);
+        return (Spliterator<T>) Spliterators.spliterator(values, from, from + sizes[from], Spliterator.ORDERED);
+    }
+}
@@ -0,0 +1,1059 @@
+package com.globallogic.test.tree;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe implementation of Tree.
+ * Children of every node are guarded by one of a fixed set of striped locks, so writers that add
+ * to different nodes rarely contend, and readers copy children under optimistic reads without blocking.
+ * Every node keeps the number of nodes in its subtree. Operations that detach or move a node
+ * (remove, clear, setParent) lock only the stripes of the node and of its old and new parent, and adjust
+ * the counts of the ancestors afterwards, so no subtree is walked under a lock. Iterators are weakly consistent: they never throw ConcurrentModificationException,
+ * reflect the children of every node as they were when the iterator reached it, and may miss or repeat
+ * a subtree that was moved during the iteration
+ * @param <T> the type of elements in this tree
+ */
+public class ConcurrentGeneralTree<T> extends AbstractTree<T> {
+
+    /**
+     * number of striped locks, a power of two
+     */
+    private static final int STRIPES = 64;
+
+    /**
+     * children of a node without children
+     */
+    private static final Object[] NO_CHILDREN = {};
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<ConcurrentGeneralTree.Node> COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(ConcurrentGeneralTree.Node.class, "count");
+
+    /**
+     * striped locks guarding children of nodes
+     */
+    private final StampedLock[] stripes = new StampedLock[STRIPES];
+
+    /**
+     * lock that is held for writing by operations attaching a node to a new parent. Operations that copy
+     * a subtree validate against it, so they never see a node that was moved meanwhile twice
+     */
+    private final StampedLock structure = new StampedLock();
+
+    /**
+     * number of elements in tree
+     */
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * root node
+     */
+    private final Node root;
+
+    /**
+     * Node of concurrent tree. Value and parent are volatile, children and parent are guarded by a stripe lock
+     */
+    class Node extends Item<T> {
+
+        /**
+         * index of the stripe lock of this node
+         */
+        private final int stripe = ThreadLocalRandom.current().nextInt(STRIPES);
+
+        /**
+         * stripe lock guarding children and parent of this node
+         */
+        private final StampedLock lock = stripes[stripe];
+
+        /**
+         * Node value
+         */
+        private volatile T value;
+
+        /**
+         * Parent of this node, changed under the locks of this node and of its old and new parent
+         */
+        private volatile Node parent;
+
+        /**
+         * number of nodes in the subtree starting from this node, changed through COUNT
+         */
+        volatile int count = 1;
+
+        /**
+         * Children of this node, the first childCount of them are in use
+         */
+        private Object[] children = NO_CHILDREN;
+
+        /**
+         * number of children of this node
+         */
+        private int childCount;
+
+        /**
+         * constructor with element and parent
+         * @param value node element
+         * @param parent node parent
+         */
+        Node(T value, Node parent) {
+            this.value = value;
+            this.parent = parent;
+        }
+
+        /**
+         * Returns a copy of children of this node. The copy is made under an optimistic read
+         * and repeated under the read lock if a writer interfered
+         * @return children of this node
+         */
+        Object[] children() {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Object[] array = children;
+                int count = Math.min(childCount, array.length);
+                Object[] result = count == 0 ? NO_CHILDREN : Arrays.copyOf(array, count);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return childCount == 0 ? NO_CHILDREN : Arrays.copyOf(children, childCount);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Creates a node of the same tree with this node as parent, the node is not appended to children
+         * @param value node element
+         * @return created node
+         */
+        private Node newChild(T value) {
+            return new Node(value, this);
+        }
+
+        /**
+         * Appends supplied node to children of this node. The caller holds the lock of this node
+         * or this node is not published yet
+         * @param child node to append
+         */
+        private void append(Node child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(4, childCount << 1));
+            }
+            children[childCount++] = child;
+        }
+
+        /**
+         * Removes supplied node from children of this node by identity. The caller holds the lock of this node
+         * @param child node to remove
+         * @return <tt>true</tt> if the node was a child of this node
+         */
+        private boolean detach(Node child) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i] == child) {
+                    System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+                    children[--childCount] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns number of nodes in the subtree starting from this node. It is exact when no modification is in progress
+         * @see Item#size()
+         * @return
+         */
+        @Override
+        int size() {
+            return count;
+        }
+
+        /**
+         * @see Item#contains(Object)
+         * @param value element whose presence is to be tested
+         * @return
+         */
+        @Override
+        boolean contains(T value) {
+            return ConcurrentGeneralTree.this.contains(value, this);
+        }
+
+        /**
+         * @see Item#toArray(Object[], IterationStrategy)
+         * @param typeRef the array into which the elements are stored, if it is big enough
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        T[] toArray(T[] typeRef, IterationStrategy strategy) {
+            return ConcurrentGeneralTree.this.toArray(typeRef, this, strategy);
+        }
+
+        /**
+         * @see Item#toArray(IntFunction, IterationStrategy)
+         * @param generator function allocating an array of requested length
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        T[] toArray(IntFunction<T[]> generator, IterationStrategy strategy) {
+            return ConcurrentGeneralTree.this.toArray(generator, this, strategy);
+        }
+
+        /**
+         * @see Item#toArray(IterationStrategy)
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        Object[] toArray(IterationStrategy strategy) {
+            return ConcurrentGeneralTree.this.toArray(this, strategy);
+        }
+
+        /**
+         * @see Item#clear()
+         */
+        @Override
+        void clear() {
+            ConcurrentGeneralTree.this.clear(this);
+        }
+
+        /**
+         * @see Item#getValue()
+         * @return
+         */
+        @Override
+        T getValue() {
+            return value;
+        }
+
+        /**
+         * @see Item#setValue(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> setValue(T value) {
+            this.value = value;
+            return this;
+        }
+
+        /**
+         * @see Item#hasChildren()
+         * @return
+         */
+        @Override
+        boolean hasChildren() {
+            long stamp = lock.tryOptimisticRead();
+            boolean result = childCount > 0;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    result = childCount > 0;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @see Item#isRoot()
+         * @return
+         */
+        @Override
+        boolean isRoot() {
+            return parent == null;
+        }
+
+        /**
+         * @see Item#getParent()
+         * @return
+         */
+        @Override
+        Item<T> getParent() {
+            return parent;
+        }
+
+        /**
+         * @see Item#setParent(Item)
+         * @param parent node that suppose to be parent node of this node
+         * @return
+         */
+        @Override
+        Item<T> setParent(Item<T> parent) {
+            return ConcurrentGeneralTree.this.setParent(this, parent);
+        }
+
+        /**
+         * Returns a copy of children of this node
+         * @see Item#getChildren()
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        @Override
+        Collection<Item<T>> getChildren() {
+            return Collections.unmodifiableList((List<Item<T>>) (List<?>) Arrays.asList(children()));
+        }
+
+        /**
+         * @see Item#findChild(Object)
+         * @param value value that suppose to be find
+         * @return
+         */
+        @Override
+        Item<T> findChild(T value) {
+            return ConcurrentGeneralTree.this.findChild(value, this);
+        }
+
+        /**
+         * @see Item#addChild(Item)
+         * @param item
+         * @return
+         */
+        @Override
+        Item<T> addChild(Item<T> item) {
+            ConcurrentGeneralTree.this.setParent(item, this);
+            return item;
+        }
+
+        /**
+         * @see Item#removeChild(Item)
+         * @param item
+         * @return
+         */
+        @Override
+        Item<T> removeChild(Item<T> item) {
+            if (item == null || item.getParent() != this) {
+                return null;
+            }
+            ConcurrentGeneralTree.this.setParent(item, null);
+            return item;
+        }
+
+        /**
+         * @see Item#addChild(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> addChild(T value) {
+            return add(value, this);
+        }
+
+        /**
+         * @see Item#removeChild(Object)
+         * @param value supplied value
+         * @return
+         */
+        @Override
+        Item<T> removeChild(T value) {
+            return remove(value, this);
+        }
+
+        /**
+         * @see Item#isParentOf(Item)
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        boolean isParentOf(Item<T> item) {
+            return item != null && item.getParent() == this;
+        }
+
+        /**
+         * @see Item#isChildOf(Item)
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        boolean isChildOf(Item<T> item) {
+            return item != null && parent == item;
+        }
+
+        /**
+         * @see Item#deepCopy()
+         * @return
+         */
+        @Override
+        Item<T> deepCopy() {
+            return readConsistently(() -> {
+                Node copy = new Node(value, null);
+                copyChildren(this, copy);
+                return copy;
+            });
+        }
+
+        /**
+         * @see Item#toString()
+         * @return
+         */
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Default constructor for ConcurrentGeneralTree
+     */
+    public ConcurrentGeneralTree() {
+        this(IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    /**
+     * constructor for ConcurrentGeneralTree with root value
+     * @param rootValue
+     */
+    public ConcurrentGeneralTree(T rootValue) {
+        this(IterationStrategy.DEPTH_FIRST_PRE, rootValue);
+    }
+
+    /**
+     * constructor for ConcurrentGeneralTree with default iteration strategy
+     * @param strategy
+     */
+    public ConcurrentGeneralTree(IterationStrategy strategy) {
+        super(strategy);
+        initStripes();
+        this.root = null;
+    }
+
+    /**
+     * constructor for ConcurrentGeneralTree with default iteration strategy and root value
+     * @param strategy
+     * @param rootValue
+     */
+    private ConcurrentGeneralTree(IterationStrategy strategy, T rootValue) {
+        super(strategy);
+        initStripes();
+        this.root = new Node(rootValue, null);
+        size.increment();
+    }
+
+    /**
+     * Creates striped locks
+     */
+    private void initStripes() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * Returns supplied node, or an element of children array, as a node of this tree
+     * @param item supplied node
+     * @return node of the tree
+     */
+    @SuppressWarnings("unchecked")
+    private Node node(Object item) {
+        return (Node) item;
+    }
+
+    /**
+     * Returns set of the stripes of supplied nodes as a bit mask, absent nodes are skipped
+     * @param nodes nodes or nulls
+     * @return bit mask with a bit for every stripe
+     */
+    private static long stripesOf(ConcurrentGeneralTree<?>.Node... nodes) {
+        long mask = 0L;
+        for (ConcurrentGeneralTree<?>.Node node : nodes) {
+            if (node != null) {
+                mask |= 1L << node.stripe;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Locks supplied stripes for writing in the order of their indexes, so writers never deadlock
+     * @param mask bit mask of stripes
+     */
+    private void lockStripes(long mask) {
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            stripes[Long.numberOfTrailingZeros(rest)].writeLock();
+        }
+    }
+
+    /**
+     * Unlocks supplied stripes locked by {@link #lockStripes(long)}
+     * @param mask bit mask of stripes
+     */
+    private void unlockStripes(long mask) {
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            stripes[Long.numberOfTrailingZeros(rest)].tryUnlockWrite();
+        }
+    }
+
+    /**
+     * Performs supplied read optimistically and repeats it under the read lock of the structure
+     * if a node was detached or moved meanwhile
+     * @param read read of several nodes
+     * @param <R> the type of the result
+     * @return result of the read
+     */
+    private <R> R readConsistently(Supplier<R> read) {
+        long stamp = structure.tryOptimisticRead();
+        if (stamp != 0) {
+            R result = read.get();
+            if (structure.validate(stamp)) {
+                return result;
+            }
+        }
+
+        stamp = structure.readLock();
+        try {
+            return read.get();
+        } finally {
+            structure.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds supplied delta to the counts of supplied node and its ancestors, and to the size of this tree
+     * if the root is reached. Every count is changed under the read lock of the node, so the node can not
+     * move between changing its count and reading its parent. The caller holds no stripe
+     * @param from first node to change, or null
+     * @param delta number of nodes added to the subtree
+     */
+    private void propagate(Node from, int delta) {
+        for (Node curr = from; curr != null; ) {
+            Node parent;
+            long stamp = curr.lock.readLock();
+            try {
+                COUNT.addAndGet(curr, delta);
+                parent = curr.parent;
+            } finally {
+                curr.lock.unlockRead(stamp);
+            }
+            if (curr == root) {
+                size.add(delta);
+            }
+            curr = parent;
+        }
+    }
+
+    /**
+     * Moves supplied node from its old parent to new parent, or detaches it when new parent is null.
+     * Locks the stripes of the node and of both parents; attaching holds the structure lock too,
+     * so concurrent moves can not build a cycle
+     * @param node node to move
+     * @param oldParent parent the node is expected to have
+     * @param newParent new parent of the node, or null
+     * @return <tt>false</tt> if the node was moved by another operation meanwhile
+     */
+    private boolean relink(Node node, Node oldParent, Node newParent) {
+        long stamp = newParent == null ? 0L : structure.writeLock();
+        int moved;
+        try {
+            for (Node ancestor = newParent; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor == node) {
+                    throw new IllegalArgumentException("Node can not become a child of its own subtree");
+                }
+            }
+
+            long mask = stripesOf(node, oldParent, newParent);
+            lockStripes(mask);
+            try {
+                if (node.parent != oldParent) {
+                    return false;
+                }
+                moved = node.count;
+                if (oldParent != null) {
+                    oldParent.detach(node);
+                }
+                if (newParent != null) {
+                    newParent.append(node);
+                }
+                node.parent = newParent;
+            } finally {
+                unlockStripes(mask);
+            }
+        } finally {
+            if (newParent != null) {
+                structure.unlockWrite(stamp);
+            }
+        }
+        propagate(oldParent, -moved);
+        propagate(newParent, moved);
+        return true;
+    }
+
+    /**
+     * Copies children of supplied node with their subtrees under supplied copy, which is not published yet
+     * @param source node to copy
+     * @param copy copy of the node
+     * @return number of copied nodes
+     */
+    private int copyChildren(Node source, Node copy) {
+        List<Node> copied = new ArrayList<>();
+        Deque<Node> sources = new ArrayDeque<>();
+        Deque<Node> copies = new ArrayDeque<>();
+        sources.push(source);
+        copies.push(copy);
+        while (!sources.isEmpty()) {
+            Node currSource = sources.pop();
+            Node currCopy = copies.pop();
+            for (Object child : currSource.children()) {
+                Node childSource = node(child);
+                Node childCopy = currCopy.newChild(childSource.value);
+                currCopy.append(childCopy);
+                sources.push(childSource);
+                copies.push(childCopy);
+                copied.add(childCopy);
+            }
+        }
+        for (int i = copied.size() - 1; i >= 0; i--) {
+            Node curr = copied.get(i);
+            curr.parent.count += curr.count;
+        }
+        return copied.size();
+    }
+
+    /**
+     * Returns number of elements in this tree. It is exact when no modification is in progress
+     * @see Tree#size()
+     * @return
+     */
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * @see Tree#clear(Item)
+     * @param parent supplied node
+     */
+    @Override
+    public void clear(Item<T> parent) {
+        Node node = node(parent);
+        for (Node oldParent = node.parent; oldParent != null && !relink(node, oldParent, null); ) {
+            oldParent = node.parent;
+        }
+        for (Object[] children = node.children(); children.length > 0; children = node.children()) {
+            for (Object child : children) {
+                relink(node(child), node, null);
+            }
+        }
+        node.value = null;
+        if (node == root) {
+            size.decrement();
+        }
+    }
+
+    /**
+     * Adding locks only the stripe of supplied parent, the counts of the ancestors are adjusted afterwards
+     * @see Tree#add(Object, Item)
+     * @param value
+     * @param parent parent to which add
+     * @return
+     */
+    @Override
+    public Item<T> add(T value, Item<T> parent) {
+        Node node = node(parent);
+        Node child = new Node(value, node);
+        long stamp = node.lock.writeLock();
+        try {
+            node.append(child);
+        } finally {
+            node.lock.unlockWrite(stamp);
+        }
+        propagate(node, 1);
+        return child;
+    }
+
+    /**
+     * @see Tree#remove(Object, Item)
+     * @param value
+     * @param parent removed element
+     * @return
+     */
+    @Override
+    public Item<T> remove(T value, Item<T> parent) {
+        Node node = node(parent);
+        while (true) {
+            Node found = null;
+            for (Object child : node.children()) {
+                if (Objects.equals(node(child).value, value)) {
+                    found = node(child);
+                    break;
+                }
+            }
+            if (found == null || relink(found, node, null)) {
+                return found;
+            }
+        }
+    }
+
+    /**
+     * @see Tree#getRoot()
+     * @return
+     */
+    @Override
+    public Item<T> getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns a copy of children of supplied node, it can be iterated while the tree is modified
+     * @see Tree#getChildren(Item)
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public Collection<Item<T>> getChildren(Item<T> item) {
+        return item.getChildren();
+    }
+
+    /**
+     * @see Tree#get(Item)
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public T get(Item<T> item) {
+        return item.getValue();
+    }
+
+    /**
+     * @see Tree#set(Object, Item)
+     * @param value specified value
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public Item<T> set(T value, Item<T> item) {
+        return item.setValue(value);
+    }
+
+    /**
+     * @see Tree#hasChildren(Item)
+     * @param item <tt>true</tt> if root
+     * @return
+     */
+    @Override
+    public boolean hasChildren(Item<T> item) {
+        return item.hasChildren();
+    }
+
+    /**
+     * @see Tree#isRoot(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public boolean isRoot(Item<T> item) {
+        return item.isRoot();
+    }
+
+    /**
+     * @see Tree#getParent(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public Item<T> getParent(Item<T> item) {
+        return item.getParent();
+    }
+
+    /**
+     * @see Tree#setParent(Item, Item)
+     * @param item node to set parent
+     * @param parent parent to set
+     * @return
+     */
+    @Override
+    public Item<T> setParent(Item<T> item, Item<T> parent) {
+        Node node = node(item);
+        Node newParent = node(parent);
+        Node oldParent = node.parent;
+        while (oldParent != newParent && !relink(node, oldParent, newParent)) {
+            oldParent = node.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * @see Tree#findChild(Object, Item)
+     * @param value value that suppose to be find
+     * @param parent node from which start search
+     * @return
+     */
+    @Override
+    public Item<T> findChild(T value, Item<T> parent) {
+        AbstractTreeIterator it = iterator(defaultIterationStrategy, parent);
+        while (it.hasNext()) {
+            if (Objects.equals(it.next(), value)) {
+                return it.getCurrentItem();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see Tree#subTree(Item)
+     * @param parent root node of subtree
+     * @return
+     */
+    @Override
+    public Tree<T> subTree(Item<T> parent) {
+        if (parent == null) {
+            return null;
+        }
+
+        Node node = node(parent);
+        return readConsistently(() -> {
+            ConcurrentGeneralTree<T> treeCopy = new ConcurrentGeneralTree<>(defaultIterationStrategy, node.value);
+            treeCopy.size.add(copyChildren(node, treeCopy.root));
+            return treeCopy;
+        });
+    }
+
+    /**
+     * Returns a weakly consistent iterator
+     * @see Tree#iterator(IterationStrategy, Item)
+     * @param strategy supplied strategy
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public AbstractTreeIterator iterator(IterationStrategy strategy, Item<T> item) {
+        if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return new PreOrderIterator(node(item));
+        } else if (IterationStrategy.DEPTH_FIRST_POST.equals(strategy)) {
+            return new PostOrderIterator(node(item));
+        } else if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+            return new BreathFirstIterator(node(item));
+        } else {
+            throw new IllegalArgumentException(String.format("%s: no such enum constant for enum %s",
+                    strategy, IterationStrategy.class.getName()));
+        }
+    }
+
+    /**
+     * The spliterator is weakly consistent
+     * @see AbstractTree#spliterator(IterationStrategy, Item)
+     * @param strategy iteration strategy that defines order of elements
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    protected Spliterator<T> spliterator(IterationStrategy strategy, Item<T> parent) {
+        return Spliterators.spliteratorUnknownSize(iterator(strategy, parent),
+                Spliterator.ORDERED | Spliterator.CONCURRENT);
+    }
+
+    /**
+     * Abstract iterator that is used to retrieving Item<T> during iteration
+     */
+    public abstract class AbstractTreeIterator implements Iterator<T> {
+        /**
+         * element that was emitted by next() method
+         */
+        protected Item<T> currentItem;
+
+        /**
+         * getter for element that was emitted by next() method
+         * @return
+         */
+        public Item<T> getCurrentItem() {
+            return currentItem;
+        }
+    }
+
+    /**
+     * Iterator for traversing the tree according to deep first pre order iteration strategy
+     */
+    private class PreOrderIterator extends AbstractTreeIterator {
+
+        /**
+         * stack for storing elements during iteration
+         */
+        final Deque<Node> stack = new ArrayDeque<>();
+
+        /**
+         * constructor with element from which start an iteration
+         * @param item element from which start an iteration
+         */
+        PreOrderIterator(Node item) {
+            if (item != null) {
+                stack.add(item);
+            }
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public T next() {
+            Node curr = stack.pollLast();
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            final Object[] children = curr.children();
+            for (int i = children.length - 1; i >= 0; i--) {
+                stack.add(node(children[i]));
+            }
+
+            currentItem = curr;
+            return curr.value;
+        }
+    }
+
+    /**
+     * Iterator for traversing the tree according to deep first post order iteration strategy.
+     * Only the path from the starting node to the current one is kept as a stack of frames:
+     * a node, a copy of its children and the index of the next child to descend into
+     */
+    private class PostOrderIterator extends AbstractTreeIterator {
+
+        /**
+         * initial capacity of the frame stack
+         */
+        private static final int INITIAL_CAPACITY = 16;
+
+        /**
+         * nodes of the frames from the starting node to the node that will be emitted next
+         */
+        private Object[] items = new Object[INITIAL_CAPACITY];
+
+        /**
+         * children of the nodes of the frames
+         */
+        private Object[][] children = new Object[INITIAL_CAPACITY][];
+
+        /**
+         * index of the next child to descend into for each frame
+         */
+        private int[] cursors = new int[INITIAL_CAPACITY];
+
+        /**
+         * number of frames in the stack
+         */
+        private int depth;
+
+        /**
+         * constructor with element from which start an iteration
+         * @param item element from which start an iteration
+         */
+        PostOrderIterator(Node item) {
+            if (item != null) {
+                push(item);
+            }
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public T next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+
+            while (cursors[depth - 1] < children[depth - 1].length) {
+                push(node(children[depth - 1][cursors[depth - 1]++]));
+            }
+
+            Node item = node(items[--depth]);
+            items[depth] = null;
+            children[depth] = null;
+            currentItem = item;
+            return item.value;
+        }
+
+        /**
+         * Pushes a frame for supplied node, growing the stack if needed
+         * @param item node of the frame
+         */
+        private void push(Node item) {
+            if (depth == items.length) {
+                items = Arrays.copyOf(items, depth << 1);
+                children = Arrays.copyOf(children, depth << 1);
+                cursors = Arrays.copyOf(cursors, depth << 1);
+            }
+            items[depth] = item;
+            children[depth] = item.children();
+            cursors[depth++] = 0;
+        }
+    }
+
+    /**
+     * Iterator for traversing the tree according to breath first iteration strategy
+     */
+    private class BreathFirstIterator extends AbstractTreeIterator {
+
+        /**
+         * internal queue for storing elements during iteration
+         */
+        final Deque<Node> queue = new ArrayDeque<>();
+
+        /**
+         * constructor with element from which start an iteration
+         * @param item element from which start an iteration
+         */
+        BreathFirstIterator(Node item) {
+            if (item != null) {
+                queue.add(item);
+            }
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public T next() {
+            Node curr = queue.pollFirst();
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            for (Object child : curr.children()) {
+                queue.add(node(child));
+            }
+
+            currentItem = curr;
+            return curr.value;
+        }
+    }
+}
@@ -1,20 +1,50 @@
 package com.globallogic.test.tree;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Standard implementation of Tree
  * @param <T> the type of elements in this tree
  */
-public class GeneralTree<T> implements Tree<T> {
+public class GeneralTree<T> extends AbstractTree<T> {
 
     /**
-     * default iteration strategy
+     * number of nodes below which a subtree is processed sequentially by parallel operations
      */
-    private IterationStrategy defaultIterationStrategy = IterationStrategy.DEPTH_FIRST_PRE;
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    /**
+     * nesting depth of parallel tasks after which a subtree is processed sequentially,
+     * keeps stack usage bounded on deep hierarchies
+     */
+    private static final int PARALLEL_MAX_DEPTH = 256;
+
+    /**
+     * version used to read the current state of nodes
+     */
+    private static final long LIVE = Long.MAX_VALUE;
+
+    /**
+     * number of references to snapshots after which references to collected snapshots are purged
+     */
+    private static final int SNAPSHOTS_PURGE_THRESHOLD = 64;
+
+    /**
+     * number of nodes having history after which history no alive snapshot can see is dropped
+     */
+    private static final int VERSIONED_NODES_PURGE_THRESHOLD = 1024;
 
     /**
      * root node
@@ -26,6 +56,62 @@ public class GeneralTree<T> implements Tree<T> {
      */
     private int size;
 
+    /**
+     * version of the tree, incremented by every snapshot. Modifications of nodes are stamped with it
+     */
+    private long version;
+
+    /**
+     * version captured by the latest snapshot that may still be alive, -1 if there is none
+     */
+    private long lastSnapshotVersion = -1;
+
+    /**
+     * references to snapshots in order of creation, used to find the oldest alive snapshot
+     */
+    private final Deque<WeakReference<Snapshot>> snapshots = new ArrayDeque<>();
+
+    /**
+     * nodes having history, their history is released when no snapshot is alive. Nodes are compared by identity
+     */
+    private final Set<Node> versionedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * number of nodes having history after which history no alive snapshot can see is dropped
+     */
+    private int versionedNodesPurgeThreshold = VERSIONED_NODES_PURGE_THRESHOLD;
+
+    /**
+     * number of references to snapshots after which references to collected snapshots are purged
+     */
+    private int snapshotsPurgeThreshold = SNAPSHOTS_PURGE_THRESHOLD;
+
+    /**
+     * version of the structure of this tree, incremented by modifications that interval labels can not follow
+     */
+    private long structureVersion = 1;
+
+    /**
+     * version of the structure interval labels of nodes were assigned for, see {@link #relabel()}
+     */
+    private volatile long labelsVersion;
+
+    /**
+     * number of parents walked by ancestor queries since labels became stale, labels are assigned again
+     * when it reaches the size of the tree
+     */
+    private long staleSteps;
+
+    /**
+     * lock of assigning interval labels by concurrent readers
+     */
+    private final Object labelsLock = new Object();
+
+    /**
+     * lock of computing cached hashes by concurrent readers
+     */
+    private final Object hashesLock = new Object();
+
     /**
      * @see com.globallogic.test.tree.Tree.Item
      */
@@ -46,6 +132,79 @@ public class GeneralTree<T> implements Tree<T> {
          */
         private T value;
 
+        /**
+         * Number of nodes in the subtree starting from this node, including this node.
+         * Kept up to date along the ancestor path by structural modifications
+         */
+        private int count = 1;
+
+        /**
+         * Number of structural modifications of the subtree starting from this node.
+         * Kept up to date along the ancestor path together with count
+         */
+        private int modCount;
+
+        /**
+         * Version of the tree at the last modification of this node
+         */
+        private long stamp = version;
+
+        /**
+         * States of this node preceding modifications that may be visible to snapshots, the newest first
+         */
+        private Record history;
+
+        /**
+         * Whether the children list is referenced by a record in history and has to be copied before modification
+         */
+        private boolean childrenShared;
+
+        /**
+         * Label of entering the subtree of this node in the deep first traversal, see {@link #relabel()}
+         */
+        private long enter;
+
+        /**
+         * Label of leaving the subtree of this node, greater than labels of all its descendants
+         */
+        private long exit;
+
+        /**
+         * Number of edges from the root to this node, valid together with the labels
+         */
+        private int depth;
+
+        /**
+         * Ancestor this node jumps to when climbing, valid together with the labels, see {@link #jumpOf(Node)}
+         */
+        private Node jump;
+
+        /**
+         * Version of the structure the labels of this node were assigned for, 0 if the node was never labeled
+         */
+        private long labeled;
+
+        /**
+         * Hash of the values and the shape of the subtree starting from this node, see {@link #subtreeHash(Item)}
+         */
+        private long structureHash;
+
+        /**
+         * Polynomial hash of the values of the subtree in the default order, see {@link GeneralTree#hashCode()}
+         */
+        private int orderHash;
+
+        /**
+         * 31 raised to the number of nodes in the subtree
+         */
+        private int power;
+
+        /**
+         * Whether hashes of this node are up to date. Cleared along the ancestor path by modifications,
+         * so a node with valid hashes has valid hashes of all its descendants
+         */
+        private boolean hashed;
+
         /**
          * Default constructor for tree node
          */
@@ -60,6 +219,16 @@ public class GeneralTree<T> implements Tree<T> {
             setValue(value);
         }
 
+        /**
+         * Constructor for node with element and expected number of children
+         * @param value element to be set
+         * @param capacity expected number of children
+         */
+        Node(T value, int capacity) {
+            this.value = value;
+            this.children = new ArrayList<>(capacity);
+        }
+
         /**
          * all arguments constructor
          * @param children node children
@@ -70,6 +239,9 @@ public class GeneralTree<T> implements Tree<T> {
             this.children = children;
             this.parent = parent;
             this.value = value;
+            for (Item<T> child : children) {
+                count += child.size();
+            }
         }
 
         /**
@@ -78,15 +250,120 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         int size() {
-            int result = 0;
-            Iterator<T> it = GeneralTree.this.iterator(defaultIterationStrategy, this);
-            while (it.hasNext()) {
-                it.next();
-                result++;
+            return count;
+        }
+
+        /**
+         * Adds supplied delta to subtree count of this node and all of its ancestors
+         * @param delta number of added (positive) or removed (negative) nodes
+         */
+        private void adjustCount(int delta) {
+            for (Node node = this; node != null; node = (Node) node.parent) {
+                node.beforeWrite();
+                node.count += delta;
+                node.modCount++;
+                node.hashed = false;
+            }
+        }
+
+        /**
+         * Invalidates hashes of this node and all of its ancestors
+         */
+        private void invalidateHashes() {
+            for (Node node = this; node != null && node.hashed; node = (Node) node.parent) {
+                node.hashed = false;
+            }
+        }
+
+        /**
+         * Must be called before any modification of this node. If a snapshot taken after the previous
+         * modification may be alive, the current state is kept in history for it.
+         * Records no alive snapshot can see are dropped
+         */
+        private void beforeWrite() {
+            if (stamp <= lastSnapshotVersion || history != null) {
+                long oldest = oldestSnapshotVersion();
+                if (oldest != LIVE) {
+                    if (stamp <= lastSnapshotVersion) {
+                        history = new Record(version, value, parent, children, count, prune(history, oldest));
+                        childrenShared = true;
+                        registerHistory(this, oldest);
+                    } else {
+                        history = prune(history, oldest);
+                    }
+                }
+            }
+            stamp = version;
+        }
+
+        /**
+         * Returns children list that can be modified, copying it if it is referenced by history
+         * @return children list of this node
+         */
+        private List<Item<T>> mutableChildren() {
+            if (childrenShared) {
+                children = new ArrayList<>(children);
+                childrenShared = false;
+            }
+            return children;
+        }
+
+        /**
+         * Returns a record describing this node as it was at supplied version
+         * @param version version of the tree
+         * @return record, or <tt>null</tt> if the node has not been modified since that version
+         */
+        private Record recordAt(long version) {
+            if (stamp <= version) {
+                return null;
+            }
+            Record result = null;
+            for (Record record = history; record != null && record.until > version; record = record.previous) {
+                result = record;
             }
             return result;
         }
 
+        /**
+         * Returns value of this node at supplied version
+         * @param version version of the tree
+         * @return value of this node
+         */
+        T valueAt(long version) {
+            Record record = recordAt(version);
+            return record == null ? value : record.value;
+        }
+
+        /**
+         * Returns children of this node at supplied version
+         * @param version version of the tree
+         * @return children of this node
+         */
+        List<Item<T>> childrenAt(long version) {
+            Record record = recordAt(version);
+            return record == null ? children : record.children;
+        }
+
+        /**
+         * Returns parent of this node at supplied version
+         * @param version version of the tree
+         * @return parent of this node
+         */
+        Item<T> parentAt(long version) {
+            Record record = recordAt(version);
+            return record == null ? parent : record.parent;
+        }
+
+        /**
+         * Returns number of nodes in the subtree starting from this node at supplied version
+         * @param version version of the tree
+         * @return number of nodes in the subtree
+         */
+        int countAt(long version) {
+            Record record = recordAt(version);
+            return record == null ? count : record.count;
+        }
+
         /**
          * @see Item#contains(Object)
          * @param value element whose presence is to be tested
@@ -111,19 +388,32 @@ public class GeneralTree<T> implements Tree<T> {
          * @param strategy iteration strategy according to which a tree will be traversed when creating an array
          * @return
          */
-        @SuppressWarnings({"unchecked", "Duplicates"})
+        @SuppressWarnings("unchecked")
         @Override
         T[] toArray(T[] typeRef, IterationStrategy strategy) {
-            final T[] result = (T[]) Array.newInstance(typeRef.getClass().getComponentType(), GeneralTree.this.size);
-            int index = 0;
-
-            Iterator<T> it = GeneralTree.this.iterator(strategy, this);
-            while (it.hasNext()) {
-                result[index++] = it.next();
+            final T[] result = typeRef.length >= count
+                    ? typeRef
+                    : (T[]) Array.newInstance(typeRef.getClass().getComponentType(), count);
+            fill(result, strategy);
+            if (result.length > count) {
+                result[count] = null;
             }
             return result;
         }
 
+        /**
+         * @see Item#toArray(IntFunction, IterationStrategy)
+         * @param generator function allocating an array of requested length
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return
+         */
+        @Override
+        T[] toArray(IntFunction<T[]> generator, IterationStrategy strategy) {
+            final T[] result = generator.apply(count);
+            fill(result, strategy);
+            return result;
+        }
+
         /**
          * @see Item#toArray(IterationStrategy)
          * @param strategy iteration strategy according to which a tree will be traversed when creating an array
@@ -131,14 +421,23 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         Object[] toArray(IterationStrategy strategy) {
-            Object[] result = new Object[GeneralTree.this.size];
+            Object[] result = new Object[count];
+            fill(result, strategy);
+            return result;
+        }
+
+        /**
+         * Stores elements of the subtree starting from this node into the beginning of supplied array
+         * @param result array that is big enough to hold the subtree
+         * @param strategy iteration strategy according to which a tree will be traversed
+         */
+        private void fill(Object[] result, IterationStrategy strategy) {
             int index = 0;
 
             Iterator<T> it = GeneralTree.this.iterator(strategy, this);
             while (it.hasNext()) {
                 result[index++] = it.next();
             }
-            return result;
         }
 
         /**
@@ -146,9 +445,17 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         void clear() {
-            children.clear();
+            if (parent != null) {
+                parent.removeChild(this);
+            }
+            adjustCount(1 - count);
+            if (childrenShared) {
+                children = new ArrayList<>();
+                childrenShared = false;
+            } else {
+                children.clear();
+            }
             value = null;
-            parent = null;
         }
 
         /**
@@ -167,6 +474,8 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         Item<T> setValue(T value) {
+            beforeWrite();
+            invalidateHashes();
             this.value = value;
             return this;
         }
@@ -205,7 +514,38 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         Item<T> setParent(Item<T> parent) {
-            this.parent = parent;
+            if (this.parent == parent) {
+                return parent;
+            }
+            return setParent(parent, parent == null ? 0 : parent.getChildren().size());
+        }
+
+        /**
+         * Sets a parent node of this node and places this node at supplied position among its children.
+         * The parent may be the current parent, then this node is moved among its siblings
+         * @param parent node that suppose to be parent node of this node
+         * @param index position of this node among children of the parent after the move
+         * @return parent node that has been set
+         * @throws IndexOutOfBoundsException if the position is out of range
+         */
+        Item<T> setParent(Item<T> parent, int index) {
+            for (Item<T> ancestor = parent; ancestor != null; ancestor = ancestor.getParent()) {
+                if (ancestor == this) {
+                    throw new IllegalArgumentException("Node can not become a child of its own subtree");
+                }
+            }
+            if (parent != null) {
+                int bound = parent.getChildren().size() - (this.parent == parent ? 1 : 0);
+                if (index < 0 || index > bound) {
+                    throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, bound));
+                }
+            }
+            if (this.parent != null) {
+                this.parent.removeChild(this);
+            }
+            if (parent != null) {
+                ((Node) parent).addChild(this, index);
+            }
             return parent;
         }
 
@@ -247,8 +587,22 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         Item<T> addChild(Item<T> item) {
-            children.add(item);
-            item.setParent(this);
+            return addChild(item, children.size());
+        }
+
+        /**
+         * Inserts child to this node at supplied position
+         * @param item supplied node
+         * @param index position of the child among children of this node
+         * @return added node
+         */
+        Item<T> addChild(Item<T> item, int index) {
+            Node node = (Node) item;
+            beforeWrite();
+            mutableChildren().add(index, node);
+            node.beforeWrite();
+            node.parent = this;
+            adjustCount(node.count);
             return item;
         }
 
@@ -259,9 +613,19 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         Item<T> removeChild(Item<T> item) {
-            if (item != null && children.remove(item)) {
-                item.setParent(null);
-                return item;
+            if (item == null || item.getParent() != this) {
+                return null;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) == item) {
+                    beforeWrite();
+                    mutableChildren().remove(i);
+                    Node node = (Node) item;
+                    node.beforeWrite();
+                    node.parent = null;
+                    adjustCount(-node.count);
+                    return item;
+                }
             }
             return null;
         }
@@ -283,7 +647,12 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         Item<T> removeChild(T value) {
-            return removeChild(findChild(value));
+            for (Item<T> child : children) {
+                if (Objects.equals(child.getValue(), value)) {
+                    return removeChild(child);
+                }
+            }
+            return null;
         }
 
         /**
@@ -293,10 +662,7 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         boolean isParentOf(Item<T> item) {
-            if (item == null) {
-                return false;
-            }
-            return this.equals(item.getParent());
+            return item != null && item.getParent() == this;
         }
 
         /**
@@ -306,11 +672,7 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         boolean isChildOf(Item<T> item) {
-            if (item == null) {
-                return false;
-            }
-            Item<T> tmp = findChild(value);
-            return this.equals(tmp);
+            return item != null && parent == item;
         }
 
         /**
@@ -319,71 +681,137 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         Item<T> deepCopy() {
-            Node node = new Node(this.getValue());
-            for (Item<T> child : children) {
-                node.addChild(child.deepCopy());
-            }
+            return copyOf(this, LIVE);
+        }
 
-            return node;
+        /**
+         * Returns tree this node was created by
+         * @return owner of this node
+         */
+        private GeneralTree<T> owner() {
+            return GeneralTree.this;
         }
 
         /**
-         * @see Item#equals(Object)
-         * @param o
+         * @see Item#toString()
          * @return
          */
-        @SuppressWarnings("unchecked")
         @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Node node = (Node) o;
+        public String toString() {
+            return this.getValue().toString();
+        }
+    }
 
-            List<T> values = children.stream()
-                    .map(Item::getValue)
-                    .collect(Collectors.toList());
-            List<T> nodeValues = node.children.stream()
-                    .map(Item::getValue)
-                    .collect(Collectors.toList());
+    /**
+     * State of a node preceding its modification, kept while it may be visible to snapshots
+     */
+    private class Record {
 
-            return Objects.equals(values, nodeValues) &&
-                    Objects.equals(parent, node.parent) &&
-                    Objects.equals(value, node.value);
-        }
+        /**
+         * version of the modification, the record describes the node for snapshots of earlier versions
+         */
+        final long until;
 
         /**
-         * @see Item#hashCode()
-         * @return
+         * value of the node
          */
-        @Override
-        public int hashCode() {
-            return Objects.hash(children, parent, value);
-        }
+        final T value;
 
         /**
-         * @see Item#toString()
-         * @return
+         * parent of the node
          */
-        @Override
-        public String toString() {
-            return this.getValue().toString();
+        final Item<T> parent;
+
+        /**
+         * children of the node, the list is not modified anymore
+         */
+        final List<Item<T>> children;
+
+        /**
+         * number of nodes in the subtree starting from the node
+         */
+        final int count;
+
+        /**
+         * preceding record
+         */
+        Record previous;
+
+        Record(long until, T value, Item<T> parent, List<Item<T>> children, int count, Record previous) {
+            this.until = until;
+            this.value = value;
+            this.parent = parent;
+            this.children = children;
+            this.count = count;
+            this.previous = previous;
         }
     }
 
     /**
-     * Default constructor for GeneralTree
+     * Drops records that are not visible to any alive snapshot
+     * @param history records of a node, the newest first
+     * @param oldest version of the oldest alive snapshot
+     * @return remaining records
      */
-    public GeneralTree() {
-        size = 0;
+    private Record prune(Record history, long oldest) {
+        if (history == null || history.until <= oldest) {
+            return null;
+        }
+        Record record = history;
+        while (record.previous != null && record.previous.until > oldest) {
+            record = record.previous;
+        }
+        record.previous = null;
+        return history;
     }
 
     /**
-     * constructor for GeneralTree with root element
-     * @param root
+     * Registers supplied node as having history. When the number of registered nodes reaches the threshold,
+     * history no alive snapshot can see is dropped and nodes left without history are forgotten,
+     * so history of nodes that are not modified anymore does not outlive the snapshots that can see it
+     * @param node node having history
+     * @param oldest version of the oldest alive snapshot
      */
-    private GeneralTree(Item<T> root) {
-        this.root = root;
-        size = 1;
+    private void registerHistory(Node node, long oldest) {
+        if (versionedNodes.add(node) && versionedNodes.size() >= versionedNodesPurgeThreshold) {
+            versionedNodes.removeIf(curr -> {
+                curr.history = prune(curr.history, oldest);
+                return curr.history == null;
+            });
+            versionedNodesPurgeThreshold = Math.max(VERSIONED_NODES_PURGE_THRESHOLD, versionedNodes.size() * 2);
+        }
+    }
+
+    /**
+     * Returns version of the oldest snapshot that is still alive. If there is none,
+     * history of all nodes is released and modifications stop keeping history
+     * @return version of the oldest alive snapshot, {@link #LIVE} if there is none
+     */
+    private long oldestSnapshotVersion() {
+        WeakReference<Snapshot> reference;
+        while ((reference = snapshots.peekFirst()) != null) {
+            Snapshot snapshot = reference.get();
+            if (snapshot != null) {
+                return snapshot.version;
+            }
+            snapshots.pollFirst();
+        }
+        for (Node node : versionedNodes) {
+            node.history = null;
+            node.childrenShared = false;
+        }
+        versionedNodes.clear();
+        versionedNodesPurgeThreshold = VERSIONED_NODES_PURGE_THRESHOLD;
+        lastSnapshotVersion = -1;
+        return LIVE;
+    }
+
+    /**
+     * Default constructor for GeneralTree
+     */
+    public GeneralTree() {
+        super(IterationStrategy.DEPTH_FIRST_PRE);
+        size = 0;
     }
 
     /**
@@ -391,6 +819,7 @@ public class GeneralTree<T> implements Tree<T> {
      * @param rootValue
      */
     public GeneralTree(T rootValue) {
+        super(IterationStrategy.DEPTH_FIRST_PRE);
         this.root = new Node(rootValue);
         size = 1;
     }
@@ -400,7 +829,7 @@ public class GeneralTree<T> implements Tree<T> {
      * @param strategy
      */
     public GeneralTree(IterationStrategy strategy) {
-        this.defaultIterationStrategy = strategy;
+        super(strategy);
         size = 0;
     }
 
@@ -410,27 +839,222 @@ public class GeneralTree<T> implements Tree<T> {
      * @param strategy
      */
     public GeneralTree(Item<T> root, IterationStrategy strategy) {
-        this.defaultIterationStrategy = strategy;
+        super(strategy);
         this.root = root;
-        size = 1;
+        size = root.size();
     }
 
     /**
-     * @see Tree#size()
-     * @return
+     * Builds a tree from values and indices of their parents in one pass over the arrays.
+     * Children of a node are ordered by their indices
+     * @see #fromParentArray(Object[], int[], boolean)
+     * @param values values of nodes
+     * @param parentIdx index of the parent of every node, <tt>-1</tt> for the root
+     * @param <T> the type of elements
+     * @return new tree instance
      */
-    @Override
-    public int size() {
-        return size;
+    public static <T> GeneralTree<T> fromParentArray(T[] values, int[] parentIdx) {
+        return fromParentArray(values, parentIdx, false);
+    }
+
+    /**
+     * Builds a tree from values and indices of their parents. Child lists are allocated with exact capacity
+     * and subtree sizes are computed by a single pass from leaves to the root, without a traversal.
+     * Children of a node are ordered by their indices
+     * @param values values of nodes
+     * @param parentIdx index of the parent of every node, <tt>-1</tt> for the root
+     * @param parallel <tt>true</tt> if nodes should be allocated in parallel
+     * @param <T> the type of elements
+     * @return new tree instance, empty if there are no values
+     * @throws IllegalArgumentException if the arrays do not describe a single tree
+     */
+    public static <T> GeneralTree<T> fromParentArray(T[] values, int[] parentIdx, boolean parallel) {
+        if (values.length != parentIdx.length) {
+            throw new IllegalArgumentException(String.format("%d values, but %d parent indices",
+                    values.length, parentIdx.length));
+        }
+
+        GeneralTree<T> tree = new GeneralTree<>();
+        if (values.length > 0) {
+            tree.load(values, parentIdx, parallel);
+        }
+        return tree;
+    }
+
+    /**
+     * Replaces the content of this empty tree by nodes described by values and indices of their parents
+     * @param values values of nodes
+     * @param parentIdx index of the parent of every node, <tt>-1</tt> for the root
+     * @param parallel <tt>true</tt> if nodes should be allocated in parallel
+     */
+    @SuppressWarnings("unchecked")
+    private void load(T[] values, int[] parentIdx, boolean parallel) {
+        final int n = values.length;
+        final int[] pending = new int[n];
+        int rootIdx = -1;
+        for (int i = 0; i < n; i++) {
+            int parent = parentIdx[i];
+            if (parent == -1) {
+                if (rootIdx != -1) {
+                    throw new IllegalArgumentException(String.format("Nodes %d and %d both have no parent", rootIdx, i));
+                }
+                rootIdx = i;
+            } else if (parent < 0 || parent >= n || parent == i) {
+                throw new IllegalArgumentException(String.format("Node %d has invalid parent index %d", i, parent));
+            } else {
+                pending[parent]++;
+            }
+        }
+        if (rootIdx == -1) {
+            throw new IllegalArgumentException("There is no node without parent");
+        }
+
+        final Node[] nodes = (Node[]) Array.newInstance(Node.class, n);
+        IntStream indices = IntStream.range(0, n);
+        (parallel ? indices.parallel() : indices).forEach(i -> nodes[i] = new Node(values[i], pending[i]));
+        for (int i = 0; i < n; i++) {
+            if (i != rootIdx) {
+                Node parent = nodes[parentIdx[i]];
+                parent.children.add(nodes[i]);
+                nodes[i].parent = parent;
+            }
+        }
+
+        // a node is complete when all of its children are complete, complete nodes are added to their parents
+        int completed = 0;
+        for (int i = 0; i < n; i++) {
+            for (int curr = i; pending[curr] == 0; ) {
+                pending[curr] = -1;
+                completed++;
+                int parent = parentIdx[curr];
+                if (parent == -1) {
+                    break;
+                }
+                nodes[parent].count += nodes[curr].count;
+                if (--pending[parent] != 0) {
+                    break;
+                }
+                curr = parent;
+            }
+        }
+        if (completed != n) {
+            throw new IllegalArgumentException(String.format("%d nodes are not reachable from the root %d",
+                    n - completed, rootIdx));
+        }
+
+        root = nodes[rootIdx];
+        size = n;
+    }
+
+    /**
+     * Builds a tree of supplied number of nodes laid out in deep first pre order.
+     * Numbers of children of all of the nodes are taken first and values are taken after them in the same order,
+     * so both can be read from a stream without intermediate collections
+     * @param n number of nodes
+     * @param childCounts supplier of the number of children of the next node
+     * @param values supplier of the value of the next node
+     * @param <T> the type of elements
+     * @return new tree instance, empty if there are no nodes
+     * @throws IllegalArgumentException if the numbers of children do not describe a single tree of n nodes
+     */
+    static <T> GeneralTree<T> fromPreOrder(int n, IntSupplier childCounts, Supplier<? extends T> values) {
+        GeneralTree<T> tree = new GeneralTree<>();
+        if (n > 0) {
+            tree.loadPreOrder(n, childCounts, values);
+        }
+        return tree;
+    }
+
+    /**
+     * Replaces the content of this empty tree by nodes laid out in deep first pre order.
+     * Open nodes are kept on a stack with the number of children still to come,
+     * a node is complete when its last child is complete and then adds its count to its parent
+     * @param n number of nodes
+     * @param childCounts supplier of the number of children of the next node
+     * @param values supplier of the value of the next node
+     */
+    @SuppressWarnings("unchecked")
+    private void loadPreOrder(int n, IntSupplier childCounts, Supplier<? extends T> values) {
+        Node[] open = (Node[]) Array.newInstance(Node.class, 16);
+        int[] remaining = new int[16];
+        int depth = 0;
+        Node first = null;
+        for (int i = 0; i < n; i++) {
+            int childCount = childCounts.getAsInt();
+            if (childCount < 0) {
+                throw new IllegalArgumentException(String.format("Node %d has %d children", i, childCount));
+            }
+            Node node = new Node(null, childCount);
+            if (first == null) {
+                first = node;
+            } else if (depth == 0) {
+                throw new IllegalArgumentException(String.format("Node %d follows the last node of the tree", i));
+            } else {
+                node.parent = open[depth - 1];
+                open[depth - 1].children.add(node);
+                remaining[depth - 1]--;
+            }
+
+            if (childCount > 0) {
+                if (depth == open.length) {
+                    open = Arrays.copyOf(open, depth << 1);
+                    remaining = Arrays.copyOf(remaining, depth << 1);
+                }
+                open[depth] = node;
+                remaining[depth++] = childCount;
+                continue;
+            }
+            for (Node curr = node; curr.parent != null; ) {
+                Node parent = (Node) curr.parent;
+                parent.count += curr.count;
+                if (remaining[depth - 1] != 0) {
+                    break;
+                }
+                open[--depth] = null;
+                curr = parent;
+            }
+        }
+        if (depth != 0) {
+            throw new IllegalArgumentException(String.format("%d nodes still expect children", depth));
+        }
+
+        root = first;
+        size = n;
+        AbstractTreeIterator it = iterator(IterationStrategy.DEPTH_FIRST_PRE, root, LIVE);
+        while (it.hasNext()) {
+            it.next();
+            ((Node) it.getCurrentItem()).value = values.get();
+        }
+    }
+
+    /**
+     * Creates a node of this tree that is not attached to it. A detached node is attached by
+     * {@link Item#addChild(Item)} of its parent or becomes the root by {@link #setRoot(Item)}.
+     * Attaching a complete subtree to a detached parent takes constant time
+     * @param value value of the node
+     * @return new node
+     */
+    Item<T> newNode(T value) {
+        return new Node(value);
     }
 
     /**
-     * @see Tree#isEmpty()
+     * Makes supplied detached node the root of this empty tree
+     * @param item detached node created by {@link #newNode(Object)}, <tt>null</tt> to make the tree empty
+     */
+    void setRoot(Item<T> item) {
+        root = item;
+        size = item == null ? 0 : item.size();
+        structureVersion++;
+    }
+
+    /**
+     * @see Tree#size()
      * @return
      */
     @Override
-    public boolean isEmpty() {
-        return size == 0;
+    public int size() {
+        return size;
     }
 
     /**
@@ -451,8 +1075,12 @@ public class GeneralTree<T> implements Tree<T> {
     @Override
     public void clear(Item<T> parent) {
         int removed = parent.size();
+        boolean attached = isAttached(parent);
         parent.clear();
-        size -= removed;
+        if (attached) {
+            size -= removed;
+            structureVersion++;
+        }
     }
 
     /**
@@ -467,6 +1095,18 @@ public class GeneralTree<T> implements Tree<T> {
         return parent.toArray(typeRef, strategy);
     }
 
+    /**
+     * @see Tree#toArray(IntFunction, Item, IterationStrategy)
+     * @param generator function allocating an array of requested length
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public T[] toArray(IntFunction<T[]> generator, Item<T> parent, IterationStrategy strategy) {
+        return parent.toArray(generator, strategy);
+    }
+
     /**
      * @see Tree#toArray(Item, IterationStrategy)
      * @param parent starting from this node
@@ -487,7 +1127,36 @@ public class GeneralTree<T> implements Tree<T> {
     @Override
     public Item<T> add(T value, Item<T> parent) {
         Item<T> added = parent.addChild(value);
-        size++;
+        if (isAttached(parent)) {
+            size++;
+            labelLeaf((Node) parent, (Node) added);
+        }
+        return added;
+    }
+
+    /**
+     * Adds supplied value at supplied position among children of supplied parent
+     * @see Tree#add(Object, Item)
+     * @param value value to add
+     * @param parent parent to which add
+     * @param index position of the new node among children of the parent
+     * @return new node
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public Item<T> add(T value, Item<T> parent, int index) {
+        final int count = parent.getChildren().size();
+        if (index < 0 || index > count) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, count));
+        }
+        Item<T> added = ((Node) parent).addChild(new Node(value), index);
+        if (isAttached(parent)) {
+            size++;
+            if (index == count) {
+                labelLeaf((Node) parent, (Node) added);
+            } else {
+                structureVersion++;
+            }
+        }
         return added;
     }
 
@@ -500,7 +1169,10 @@ public class GeneralTree<T> implements Tree<T> {
     @Override
     public Item<T> remove(T value, Item<T> parent) {
         Item<T> removed = parent.removeChild(value);
-        size = root.size();
+        if (removed != null && isAttached(parent)) {
+            size -= removed.size();
+            structureVersion++;
+        }
         return removed;
     }
 
@@ -582,224 +1254,1606 @@ public class GeneralTree<T> implements Tree<T> {
      */
     @Override
     public Item<T> setParent(Item<T> item, Item<T> parent) {
-        return item.setParent(parent);
+        int moved = item.size();
+        boolean wasAttached = isAttached(item);
+        Item<T> before = item.getParent();
+        Item<T> result = item.setParent(parent);
+        boolean attached = isAttached(item);
+        if (wasAttached != attached) {
+            size += attached ? moved : -moved;
+        }
+        if ((wasAttached || attached) && before != parent) {
+            structureVersion++;
+        }
+        return result;
     }
 
     /**
-     * @see Tree#findChild(Object, Item)
-     * @param value value that suppose to be find
-     * @param parent node from which start search
-     * @return
+     * Sets parent of supplied node and places the node at supplied position among children of the parent.
+     * The parent may be the current parent, then the node is moved among its siblings
+     * @see #setParent(Item, Item)
+     * @param item node to set parent
+     * @param parent parent to set
+     * @param index position of the node among children of the parent after the move
+     * @return parent that has been set
+     * @throws IndexOutOfBoundsException if the position is out of range
      */
-    @Override
-    public Item<T> findChild(T value, Item<T> parent) {
-        return parent.findChild(value);
+    public Item<T> setParent(Item<T> item, Item<T> parent, int index) {
+        int moved = item.size();
+        boolean wasAttached = isAttached(item);
+        Item<T> result = ((Node) item).setParent(parent, index);
+        boolean attached = isAttached(item);
+        if (wasAttached != attached) {
+            size += attached ? moved : -moved;
+        }
+        if (wasAttached || attached) {
+            structureVersion++;
+        }
+        return result;
     }
 
     /**
-     * @see Tree#isParentOf(Item, Item)
-     * @param first first
-     * @param second second
-     * @return
+     * Labels a leaf appended to a labeled node without assigning labels again. The leaf takes the first
+     * half of the labels between the last child of the parent and the end of the parent, labels become stale
+     * if there is no room left
+     * @param parent labeled node
+     * @param leaf appended leaf
      */
-    @Override
-    public boolean isParentOf(Item<T> first, Item<T> second) {
-        return first.isParentOf(second);
+    private void labelLeaf(Node parent, Node leaf) {
+        if (labelsVersion != structureVersion || parent.labeled != structureVersion) {
+            return;
+        }
+        final List<Item<T>> children = parent.children;
+        final long last = children.size() > 1 ? ((Node) children.get(children.size() - 2)).exit : parent.enter;
+        final long gap = parent.exit - last;
+        if (gap < 4) {
+            structureVersion++;
+            return;
+        }
+        leaf.enter = last + 1;
+        leaf.exit = last + gap / 2;
+        leaf.depth = parent.depth + 1;
+        leaf.jump = jumpOf(parent);
+        leaf.labeled = structureVersion;
     }
 
     /**
-     * @see Tree#isChildOf(Item, Item)
-     * @param first first
-     * @param second second
-     * @return
+     * Returns the jump pointer of a child of supplied labeled node. Jump pointers form skew binary
+     * ranges: a node jumps twice as far as its parent when the parent and the target of the parent
+     * jump equally far, otherwise it jumps to its parent. The target depends only on the depth, so a leaf
+     * is labeled in constant time and climbing to any ancestor takes a logarithmic number of jumps
+     * @param parent labeled parent
+     * @return ancestor the child jumps to
      */
-    @Override
-    public boolean isChildOf(Item<T> first, Item<T> second) {
-        return first.isChildOf(second);
+    private Node jumpOf(Node parent) {
+        Node target = parent.jump;
+        if (parent.depth - target.depth == target.depth - target.jump.depth) {
+            return target.jump;
+        }
+        return parent;
     }
 
     /**
-     * @see Tree#subTree(Item)
-     * @param parent root node of subtree
-     * @return
+     * Assigns interval labels to nodes reachable from the root. Labels are taken in the order of entering
+     * and leaving subtrees of the deep first traversal with equal gaps, so a node is an ancestor of another one
+     * if and only if the interval of its labels contains the interval of the other one. Gaps are spread over
+     * the whole range of long, so leaves appended later find room between the labels of their parents
      */
-    @Override
-    public Tree<T> subTree(Item<T> parent) {
-        if (parent == null) {
-            return null;
+    @SuppressWarnings("unchecked")
+    private void relabel() {
+        final long labeling = structureVersion;
+        if (root != null) {
+            final long step = Long.MAX_VALUE / (2L * root.size() + 2);
+            long label = 0;
+            Node[] path = (Node[]) Array.newInstance(Node.class, 16);
+            int[] next = new int[16];
+            int depth = 0;
+            Node node = (Node) root;
+            node.enter = label;
+            node.depth = 0;
+            node.jump = node;
+            path[depth++] = node;
+            while (depth > 0) {
+                node = path[depth - 1];
+                if (next[depth - 1] < node.children.size()) {
+                    Node child = (Node) node.children.get(next[depth - 1]++);
+                    label += step;
+                    child.enter = label;
+                    child.depth = depth;
+                    child.jump = jumpOf(node);
+                    if (depth == path.length) {
+                        path = Arrays.copyOf(path, depth << 1);
+                        next = Arrays.copyOf(next, depth << 1);
+                    }
+                    path[depth] = child;
+                    next[depth++] = 0;
+                } else {
+                    label += step;
+                    node.exit = label;
+                    node.labeled = labeling;
+                    path[--depth] = null;
+                }
+            }
         }
+        staleSteps = 0;
+        labelsVersion = labeling;
+    }
 
-        Item<T> parentCopy = parent.deepCopy();
-        GeneralTree<T> treeCopy = new GeneralTree<>(parentCopy);
-        return treeCopy;
+    /**
+     * Returns whether interval labels of nodes are up to date. Stale labels are assigned again once
+     * queries walked as many parents as there are nodes, so alternating modifications and queries
+     * cost no more than walking
+     * @return <tt>true</tt> if labels of attached nodes can be used
+     */
+    private boolean labelsValid() {
+        if (labelsVersion == structureVersion) {
+            return true;
+        }
+        if (staleSteps < size) {
+            return false;
+        }
+        synchronized (labelsLock) {
+            if (labelsVersion != structureVersion) {
+                relabel();
+            }
+        }
+        return true;
     }
 
     /**
-     * @see Tree#filter(Predicate)
-     * @param predicate predicate to test
-     * @return
+     * Returns whether interval labels of supplied node are up to date for this tree. Labels of nodes of other trees
+     * are never used, their versions may be equal to the versions of this tree by chance. The caller checked
+     * that labels are valid
+     * @param item supplied node
+     * @return <tt>true</tt> if the node belongs to this tree and was labeled for the current labels
      */
-    @Override
-    public Collection<T> filter(Predicate<? super T> predicate) {
-        return filterFrom(root, predicate);
+    private boolean isLabeled(Item<T> item) {
+        return item instanceof GeneralTree.Node && ((Node) item).owner() == this && ((Node) item).labeled == labelsVersion;
     }
 
     /**
-     * @see Tree#filterFrom(Item, Predicate)
-     * @param parent node from which to start
-     * @param predicate predicate to test
+     * Answers from interval labels of nodes in constant time, nodes not reachable from the root,
+     * nodes of other trees and stale labels fall back to walking parents
+     * @see Tree#isAncestorOf(Item, Item)
+     * @param first first
+     * @param second second
      * @return
      */
     @Override
-    public Collection<T> filterFrom(Item<T> parent, Predicate<? super T> predicate) {
-        Collection<T> result = new ArrayList<>();
-        Iterator<T> it = iterator(parent);
-
-        while (it.hasNext()) {
-            T curr = it.next();
-            if (predicate.test(curr)) {
-                result.add(curr);
+    public boolean isAncestorOf(Item<T> first, Item<T> second) {
+        if (first == null || second == null) {
+            return false;
+        }
+        final boolean valid = labelsValid();
+        if (valid && isLabeled(first) && isLabeled(second)) {
+            Node ancestor = (Node) first;
+            Node descendant = (Node) second;
+            return ancestor.enter < descendant.enter && descendant.exit < ancestor.exit;
+        }
+        int steps = 0;
+        boolean result = false;
+        for (Item<T> curr = second.getParent(); curr != null; curr = curr.getParent()) {
+            steps++;
+            if (curr == first) {
+                result = true;
+                break;
             }
         }
-
+        if (!valid) {
+            staleSteps += steps;
+        }
         return result;
     }
 
     /**
-     * @see Tree#iterator()
+     * Answers from interval labels of nodes in constant time
+     * @see Tree#depth(Item)
+     * @see #isAncestorOf(Item, Item)
+     * @param item supplied node
      * @return
      */
     @Override
-    public Iterator<T> iterator() {
-        return iterator(defaultIterationStrategy, root);
+    public int depth(Item<T> item) {
+        final boolean valid = labelsValid();
+        if (valid && isLabeled(item)) {
+            return ((Node) item).depth;
+        }
+        int depth = 0;
+        for (Item<T> curr = item.getParent(); curr != null; curr = curr.getParent()) {
+            depth++;
+        }
+        if (!valid) {
+            staleSteps += depth;
+        }
+        return depth;
     }
 
     /**
-     * @see Tree#iterator(Item)
-     * @param parent supplied node
-     * @return
+     * Returns the lowest common ancestor of supplied nodes. Labeled nodes of this tree climb by jump pointers
+     * in logarithmic time, other nodes climb by parents
+     * @param first first node
+     * @param second second node
+     * @return the deepest node having both nodes in its subtree, possibly one of them,
+     * <tt>null</tt> if the nodes have no common ancestor
+     * @throws IllegalArgumentException if any of the nodes is <tt>null</tt>
      */
-    @Override
-    public Iterator<T> iterator(Item<T> parent) {
-        return iterator(defaultIterationStrategy, parent);
+    public Item<T> lca(Item<T> first, Item<T> second) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Node can not be null");
+        }
+        final boolean valid = labelsValid();
+        if (valid && isLabeled(first) && isLabeled(second)) {
+            Node a = (Node) first;
+            Node b = (Node) second;
+            if (a.depth > b.depth) {
+                a = ancestorAt(a, b.depth);
+            } else {
+                b = ancestorAt(b, a.depth);
+            }
+            while (a != b) {
+                if (a.depth == 0) {
+                    return null;
+                }
+                if (a.jump != b.jump) {
+                    a = a.jump;
+                    b = b.jump;
+                } else {
+                    a = (Node) a.parent;
+                    b = (Node) b.parent;
+                }
+            }
+            return a;
+        }
+
+        Item<T> a = first;
+        Item<T> b = second;
+        int depthA = depth(a);
+        int depthB = depth(b);
+        for (; depthA > depthB; depthA--) {
+            a = a.getParent();
+        }
+        for (; depthB > depthA; depthB--) {
+            b = b.getParent();
+        }
+        while (a != b) {
+            a = a.getParent();
+            b = b.getParent();
+        }
+        return a;
     }
 
     /**
-     * @see Tree#iterator(IterationStrategy)
-     * @param strategy supplied iteration strategy
-     * @return
+     * Returns the ancestor of supplied labeled node at supplied depth
+     * @param node labeled node
+     * @param depth depth of the ancestor, not greater than the depth of the node
+     * @return ancestor of the node or the node itself
      */
-    @Override
-    public Iterator<T> iterator(IterationStrategy strategy) {
-        return iterator(strategy, root);
+    private Node ancestorAt(Node node, int depth) {
+        Node result = node;
+        while (result.depth > depth) {
+            result = result.jump.depth >= depth ? result.jump : (Node) result.parent;
+        }
+        return result;
     }
 
     /**
-     * @see Tree#iterator(IterationStrategy, Item)
-     * @param strategy supplied strategy
+     * Returns nodes on the path from supplied node to the topmost node above it.
+     * The length of the path is known in advance for labeled nodes, so the path is filled without copying
      * @param item supplied node
-     * @return
+     * @return supplied node, its parent and so on up to the root
      */
-    @Override
-    public Iterator<T> iterator(IterationStrategy strategy, Item<T> item) {
-        if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
-            return new PreOrderIterator(item);
-        } else if (IterationStrategy.DEPTH_FIRST_POST.equals(strategy)) {
-            return new PostOrderIterator(item);
-        } else if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
-            return new BreathFirstIterator(item);
-        } else {
-            throw new IllegalArgumentException(String.format("%s: no such enum constant for enum %s",
-                    strategy, IterationStrategy.class.getName()));
+    public List<Item<T>> pathToRoot(Item<T> item) {
+        final List<Item<T>> result = new ArrayList<>(depth(item) + 1);
+        for (Item<T> curr = item; curr != null; curr = curr.getParent()) {
+            result.add(curr);
         }
+        return result;
     }
 
     /**
-     * Abstract iterator that is used to retrieving Item<T> during iteration
+     * Returns number of edges on the path between supplied nodes
+     * @see #lca(Item, Item)
+     * @param first first node
+     * @param second second node
+     * @return number of edges, -1 if the nodes have no common ancestor
+     * @throws IllegalArgumentException if any of the nodes is <tt>null</tt>
      */
-    public abstract class AbstractTreeIterator implements Iterator<T> {
-        /**
-         * element that was emitted by next() method
-         */
-        protected Item<T> currentItem;
-
-        /**
-         * getter for element that was emitted by next() method
-         * @return
-         */
-        public Item<T> getCurrentItem() {
-            return currentItem;
+    public int distance(Item<T> first, Item<T> second) {
+        final Item<T> ancestor = lca(first, second);
+        if (ancestor == null) {
+            return -1;
         }
+        return depth(first) + depth(second) - 2 * depth(ancestor);
     }
 
     /**
-     * Iterator for traversing the tree according to deep first pre order iteration strategy
+     * Returns structural hash of the subtree starting from supplied node. The hash mixes the value
+     * of the node, hashes of its children in their order and the size of the subtree, so subtrees with equal
+     * values in equal shape have equal hashes, in this and in other general trees. Hashes are cached
+     * in nodes and modifications invalidate only the path to the root, so the hash of an unmodified subtree
+     * is returned in constant time and after a modification only the invalidated path is hashed again
+     * @param item supplied node
+     * @return hash of the subtree
      */
-    private class PreOrderIterator extends AbstractTreeIterator {
-
-        /**
-         * queue for storing elements during iteration
-         */
-        final Deque<Item<T>> queue = new LinkedList<>();
+    public int subtreeHash(Item<T> item) {
+        return Long.hashCode(wideSubtreeHash(item));
+    }
 
-        /**
-         * constructor with element from which start an iteration
-         * @param item element from which start an iteration
-         */
-        PreOrderIterator(Item<T> item) {
-            queue.add(item);
+    /**
+     * Returns 64 bit structural hash of the subtree starting from supplied node, which {@link #subtreeHash(Item)}
+     * is folded from. It is used where subtrees are skipped by equal hashes and a collision of 32 bit hashes
+     * is too likely, see {@link TreeDiff}
+     * @param item supplied node
+     * @return hash of the subtree
+     */
+    long wideSubtreeHash(Item<T> item) {
+        synchronized (hashesLock) {
+            return hash((Node) item).structureHash;
         }
+    }
 
-        /**
-         * @see Iterator#hasNext()
-         * @return
-         */
-        @Override
-        public boolean hasNext() {
-            return !queue.isEmpty();
+    /**
+     * Computes hashes of supplied node and of its descendants with invalid hashes in deep first post order.
+     * Subtrees with valid hashes are not entered
+     * @param from supplied node
+     * @return supplied node with valid hashes
+     */
+    private Node hash(Node from) {
+        if (from.hashed) {
+            return from;
+        }
+        final boolean preOrder = IterationStrategy.DEPTH_FIRST_PRE.equals(defaultIterationStrategy);
+        final Deque<Node> stack = new ArrayDeque<>();
+        stack.add(from);
+        while (!stack.isEmpty()) {
+            final Node node = stack.peekLast();
+            boolean ready = true;
+            for (Item<T> child : node.children) {
+                if (!((Node) child).hashed) {
+                    stack.add((Node) child);
+                    ready = false;
+                }
+            }
+            if (!ready) {
+                continue;
+            }
+            stack.pollLast();
+
+            final int valueHash = node.value == null ? 0 : node.value.hashCode();
+            long structure = valueHash;
+            int order = 0;
+            int power = 1;
+            for (Item<T> item : node.children) {
+                Node child = (Node) item;
+                structure = 31 * structure + child.structureHash;
+                order = order * child.power + child.orderHash;
+                power *= child.power;
+            }
+            node.structureHash = mixHash(31 * structure + node.count);
+            node.orderHash = preOrder ? valueHash * power + order : 31 * order + valueHash;
+            node.power = 31 * power;
+            node.hashed = true;
         }
+        return from;
+    }
 
-        /**
-         * @see Iterator#next()
-         * @return
-         */
-        @Override
-        public T next() {
-            Item<T> curr = queue.pollLast();
+    /**
+     * Mixes bits of a structural hash, so hashes of small subtrees with small values spread over all bits
+     * and do not cancel each other out when combined by the parent. The 64 bit finalizer of MurmurHash3
+     * @param hash combined hash of a subtree
+     * @return mixed hash
+     */
+    static long mixHash(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
 
-            final List<Item<T>> children = (List<Item<T>>) curr.getChildren();
+    /**
+     * Equal to the hash of the elements in the default order, as specified by {@link AbstractTree#hashCode()},
+     * but composed from hashes cached in nodes, so it is returned in constant time while the tree is not modified.
+     * Breadth first order can not be composed from subtrees and is hashed by iterating
+     * @see Tree#hashCode()
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        if (!hasCachedHash()) {
+            return super.hashCode();
+        }
+        synchronized (hashesLock) {
+            final Node node = hash((Node) root);
+            return node.power + node.orderHash;
+        }
+    }
 
-            ListIterator<Item<T>> it = children.listIterator(children.size());
-            while (it.hasPrevious()) {
-                queue.add(it.previous());
+    /**
+     * General trees of different sizes or with different hash codes are unequal without iterating
+     * @see Tree#equals(Object)
+     * @param that
+     * @return
+     */
+    @Override
+    public boolean equals(Object that) {
+        if (that instanceof GeneralTree && that != this) {
+            final GeneralTree<?> other = (GeneralTree<?>) that;
+            if (hasCachedHash() && other.hasCachedHash()
+                    && (size != other.size || hashCode() != other.hashCode())) {
+                return false;
             }
-
-            currentItem = curr;
-            return curr.getValue();
         }
+        return super.equals(that);
     }
 
     /**
-     * Iterator for traversing the tree according to deep first post order iteration strategy
+     * Checks whether the hash code of this tree is composed from hashes cached in nodes
+     * @return <tt>true</tt> if the tree is not empty and its default order is deep first
      */
-    private class PostOrderIterator extends AbstractTreeIterator {
+    private boolean hasCachedHash() {
+        return root != null && !isEmpty() && !IterationStrategy.BREATH_FIRST.equals(defaultIterationStrategy);
+    }
 
-        /**
-         * internal queue for storing elements during iteration
+    /**
+     * Checks whether supplied node is reachable from the root of this tree
+     * @param item node to test
+     * @return <tt>true</tt> if the root is an ancestor of supplied node or the node itself
+     */
+    private boolean isAttached(Item<T> item) {
+        Item<T> curr = item;
+        while (curr.getParent() != null) {
+            curr = curr.getParent();
+        }
+        return curr == root;
+    }
+
+    /**
+     * @see Tree#findChild(Object, Item)
+     * @param value value that suppose to be find
+     * @param parent node from which start search
+     * @return
+     */
+    @Override
+    public Item<T> findChild(T value, Item<T> parent) {
+        return parent.findChild(value);
+    }
+
+    /**
+     * @see Tree#isParentOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isParentOf(Item<T> first, Item<T> second) {
+        return first.isParentOf(second);
+    }
+
+    /**
+     * @see Tree#isChildOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isChildOf(Item<T> first, Item<T> second) {
+        return first.isChildOf(second);
+    }
+
+    /**
+     * @see Tree#subTree(Item)
+     * @param parent root node of subtree
+     * @return
+     */
+    @Override
+    public Tree<T> subTree(Item<T> parent) {
+        return subTree(parent, false);
+    }
+
+    /**
+     * Creates a deep copy of tree starting from supplied node
+     * @param parent root node of subtree
+     * @param parallel <tt>true</tt> if large subtrees should be copied in parallel
+     * @return new tree instance
+     */
+    public Tree<T> subTree(Item<T> parent, boolean parallel) {
+        if (parent == null) {
+            return null;
+        }
+
+        GeneralTree<T> treeCopy = new GeneralTree<>(defaultIterationStrategy);
+        if (parallel) {
+            CopyTask task = new CopyTask(Collections.singletonList(parent), 0, 1, 0, treeCopy);
+            treeCopy.root = ForkJoinPool.commonPool().invoke(task).get(0);
+        } else {
+            treeCopy.root = treeCopy.copyOf(parent, LIVE);
+        }
+        treeCopy.size = parent.size();
+        return treeCopy;
+    }
+
+    /**
+     * Creates a read-only snapshot of this tree in constant time. The snapshot shares nodes with this tree:
+     * a modification of this tree keeps the previous state of every modified node, which is the node itself
+     * and its ancestors, while the snapshot is alive. Iterators, spliterators and streams of the snapshot
+     * keep it alive.
+     * <p>
+     * Like the tree itself, snapshots are not thread-safe: versions are not published to other threads.
+     * A snapshot may be read by another thread only if reads of the snapshot and modifications of the tree
+     * are guarded by the same lock, which may be released between batches of reads,
+     * like compaction of {@link JournaledTree} writes a snapshot while the tree is modified.
+     * Use {@link ConcurrentGeneralTree} for readers running alongside a writer without a common lock
+     * @return read-only view of the current state of this tree
+     */
+    public Tree<T> snapshot() {
+        return snapshot(root);
+    }
+
+    /**
+     * Creates a read-only snapshot of the subtree starting from supplied node in constant time
+     * @see #snapshot()
+     * @param parent root node of subtree
+     * @return read-only view of the current state of the subtree
+     */
+    public Tree<T> snapshot(Item<T> parent) {
+        Snapshot snapshot = new Snapshot(version, parent, parent == root ? size : parent.size());
+        lastSnapshotVersion = version++;
+
+        if (snapshots.size() >= snapshotsPurgeThreshold) {
+            snapshots.removeIf(reference -> reference.get() == null);
+            snapshotsPurgeThreshold = Math.max(SNAPSHOTS_PURGE_THRESHOLD, snapshots.size() * 2);
+        }
+        snapshots.add(new WeakReference<>(snapshot));
+        return snapshot;
+    }
+
+    /**
+     * Read-only view of a tree as it was at some version.
+     * Nodes of the view are nodes of the tree, their state is read from their history
+     */
+    private class Snapshot extends AbstractTree<T> {
+
+        /**
+         * version of the tree
+         */
+        private final long version;
+
+        /**
+         * root node of the view
+         */
+        private final Item<T> root;
+
+        /**
+         * number of elements in the view
+         */
+        private final int size;
+
+        /**
+         * constructor with version of the tree and root node of the view
+         * @param version version of the tree
+         * @param root root node of the view
+         * @param size number of elements in the view
+         */
+        Snapshot(long version, Item<T> root, int size) {
+            super(GeneralTree.this.defaultIterationStrategy);
+            this.version = version;
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * Returns exception thrown by modification methods
+         * @return exception to throw
+         */
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Snapshot of a tree can not be modified");
+        }
+
+        /**
+         * Returns supplied node as a node of the tree
+         * @param item supplied node
+         * @return node of the tree
+         */
+        private Node node(Item<T> item) {
+            return (Node) item;
+        }
+
+        /**
+         * @see Tree#size()
+         * @return
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @see Tree#clear(Item)
+         * @param parent supplied node
+         */
+        @Override
+        public void clear(Item<T> parent) {
+            throw readOnly();
+        }
+
+        /**
+         * @see Tree#add(Object, Item)
+         * @param value
+         * @param parent parent to which add
+         * @return
+         */
+        @Override
+        public Item<T> add(T value, Item<T> parent) {
+            throw readOnly();
+        }
+
+        /**
+         * @see Tree#remove(Object, Item)
+         * @param value
+         * @param parent removed element
+         * @return
+         */
+        @Override
+        public Item<T> remove(T value, Item<T> parent) {
+            throw readOnly();
+        }
+
+        /**
+         * @see Tree#getRoot()
+         * @return
+         */
+        @Override
+        public Item<T> getRoot() {
+            return root;
+        }
+
+        /**
+         * @see Tree#getChildren(Item)
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        public Collection<Item<T>> getChildren(Item<T> item) {
+            return Collections.unmodifiableList(node(item).childrenAt(version));
+        }
+
+        /**
+         * @see Tree#get(Item)
+         * @param item specified node
+         * @return
+         */
+        @Override
+        public T get(Item<T> item) {
+            return node(item).valueAt(version);
+        }
+
+        /**
+         * @see Tree#set(Object, Item)
+         * @param value specified value
+         * @param item specified node
+         * @return
+         */
+        @Override
+        public Item<T> set(T value, Item<T> item) {
+            throw readOnly();
+        }
+
+        /**
+         * @see Tree#hasChildren(Item)
+         * @param item <tt>true</tt> if root
+         * @return
+         */
+        @Override
+        public boolean hasChildren(Item<T> item) {
+            return !node(item).childrenAt(version).isEmpty();
+        }
+
+        /**
+         * @see Tree#isRoot(Item)
+         * @param item item to test
+         * @return
+         */
+        @Override
+        public boolean isRoot(Item<T> item) {
+            return item == root;
+        }
+
+        /**
+         * @see Tree#getParent(Item)
+         * @param item item to test
+         * @return
+         */
+        @Override
+        public Item<T> getParent(Item<T> item) {
+            return item == root ? null : node(item).parentAt(version);
+        }
+
+        /**
+         * @see Tree#setParent(Item, Item)
+         * @param item node to set parent
+         * @param parent parent to set
+         * @return
+         */
+        @Override
+        public Item<T> setParent(Item<T> item, Item<T> parent) {
+            throw readOnly();
+        }
+
+        /**
+         * @see Tree#findChild(Object, Item)
+         * @param value value that suppose to be find
+         * @param parent node from which start search
+         * @return
+         */
+        @Override
+        public Item<T> findChild(T value, Item<T> parent) {
+            AbstractTreeIterator it = iterator(defaultIterationStrategy, parent);
+            while (it.hasNext()) {
+                if (Objects.equals(it.next(), value)) {
+                    return it.getCurrentItem();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @see Tree#subTree(Item)
+         * @param parent root node of subtree
+         * @return
+         */
+        @Override
+        public Tree<T> subTree(Item<T> parent) {
+            if (parent == null) {
+                return null;
+            }
+
+            GeneralTree<T> treeCopy = new GeneralTree<>(defaultIterationStrategy);
+            treeCopy.root = treeCopy.copyOf(parent, version);
+            treeCopy.size = node(parent).countAt(version);
+            return treeCopy;
+        }
+
+        /**
+         * The iterator keeps this view reachable, so the state of the version it reads is kept
+         * while the iteration is in progress
+         * @see Tree#iterator(IterationStrategy, Item)
+         * @param strategy supplied strategy
+         * @param item supplied node
+         * @return
+         */
+        @Override
+        public AbstractTreeIterator iterator(IterationStrategy strategy, Item<T> item) {
+            AbstractTreeIterator it = GeneralTree.this.iterator(strategy, item, version);
+            it.snapshot = this;
+            return it;
+        }
+
+        /**
+         * The spliterator is sized by the number of elements of the subtree at the version of the view
+         * @see AbstractTree#spliterator(IterationStrategy, Item)
+         * @param strategy iteration strategy that defines order of elements
+         * @param parent supplied node
+         * @return
+         */
+        @Override
+        protected Spliterator<T> spliterator(IterationStrategy strategy, Item<T> parent) {
+            return Spliterators.spliterator(iterator(strategy, parent), node(parent).countAt(version),
+                    Spliterator.ORDERED);
+        }
+    }
+
+    /**
+     * Creates a copy of the subtree starting from supplied node, which consists of nodes of this tree.
+     * The copy is built with an explicit stack, so deep hierarchies do not overflow the call stack
+     * @param source root node of the subtree to copy
+     * @param version version of the source tree to copy
+     * @return root node of the copy, it has no parent
+     */
+    private Node copyOf(Item<T> source, long version) {
+        Node result = copyOfNode(source, version);
+        Deque<Item<T>> sources = new ArrayDeque<>();
+        Deque<Node> copies = new ArrayDeque<>();
+        sources.push(source);
+        copies.push(result);
+
+        while (!sources.isEmpty()) {
+            Node curr = (Node) sources.pop();
+            Node copy = copies.pop();
+            for (Item<T> child : curr.childrenAt(version)) {
+                Node childCopy = copyOfNode(child, version);
+                childCopy.parent = copy;
+                copy.children.add(childCopy);
+                if (childCopy.count > 1) {
+                    sources.push(child);
+                    copies.push(childCopy);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a node of this tree with the value and subtree count of supplied node
+     * and a children list presized for its children
+     * @param source node to copy
+     * @param version version of the source tree to copy
+     * @return copy of the node without children
+     */
+    private Node copyOfNode(Item<T> source, long version) {
+        Node node = (Node) source;
+        Node copy = new Node(node.valueAt(version), node.childrenAt(version).size());
+        copy.count = node.countAt(version);
+        return copy;
+    }
+
+    /**
+     * @see Tree#parallelFilterFrom(Item, Predicate)
+     * @param parent node from which to start
+     * @param predicate predicate to test, must be safe to call from several threads
+     * @return
+     */
+    @Override
+    public Collection<T> parallelFilterFrom(Item<T> parent, Predicate<? super T> predicate) {
+        return parallelFilterFrom(defaultIterationStrategy, parent, predicate);
+    }
+
+    /**
+     * @see Tree#parallelFilterFrom(IterationStrategy, Item, Predicate)
+     * @param strategy iteration strategy that defines order of the result
+     * @param parent node from which to start
+     * @param predicate predicate to test, must be safe to call from several threads
+     * @return
+     */
+    @Override
+    public Collection<T> parallelFilterFrom(IterationStrategy strategy, Item<T> parent, Predicate<? super T> predicate) {
+        FilterTask task = new FilterTask(Collections.singletonList(parent), 0, 1, 0, strategy, predicate);
+        Deque<Deque<List<T>>> levels = ForkJoinPool.commonPool().invoke(task);
+
+        int size = 0;
+        for (Deque<List<T>> level : levels) {
+            for (List<T> chunk : level) {
+                size += chunk.size();
+            }
+        }
+        List<T> result = new ArrayList<>(size);
+        for (Deque<List<T>> level : levels) {
+            for (List<T> chunk : level) {
+                result.addAll(chunk);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see Tree#aggregate(Item, Object, Function, BinaryOperator)
+     * @param parent node from which to start
+     * @param identity identity value for combiner
+     * @param mapper function applied to every element
+     * @param combiner associative function combining two results
+     * @param <U>
+     * @return
+     */
+    @Override
+    public <U> U aggregate(Item<T> parent, U identity, Function<? super T, ? extends U> mapper, BinaryOperator<U> combiner) {
+        AggregateTask<U> task = new AggregateTask<>(Collections.singletonList(parent), 0, 1, 0, identity, mapper, combiner);
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Task processing a range of sibling subtrees. A range is processed sequentially when it is small enough
+     * or nested too deep, otherwise it is split into two ranges of about the same number of nodes,
+     * and a single large subtree is split into its root and the range of its children
+     * @param <R> the type of the result
+     */
+    @SuppressWarnings("serial")
+    private abstract class SubtreeTask<R> extends RecursiveTask<R> {
+
+        /**
+         * siblings containing the range
+         */
+        final List<Item<T>> items;
+
+        /**
+         * first index of the range, inclusive
+         */
+        final int from;
+
+        /**
+         * last index of the range, exclusive
+         */
+        final int to;
+
+        /**
+         * nesting depth of this task
+         */
+        final int depth;
+
+        /**
+         * constructor with a range of sibling subtrees
+         * @param items siblings containing the range
+         * @param from first index of the range, inclusive
+         * @param to last index of the range, exclusive
+         * @param depth nesting depth of this task
+         */
+        SubtreeTask(List<Item<T>> items, int from, int to, int depth) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        /**
+         * @see RecursiveTask#compute()
+         * @return
+         */
+        @Override
+        protected R compute() {
+            if (depth >= PARALLEL_MAX_DEPTH) {
+                return computeSequentially();
+            }
+            if (to - from == 1) {
+                Item<T> item = items.get(from);
+                if (item.size() <= PARALLEL_THRESHOLD || !item.hasChildren()) {
+                    return computeSequentially();
+                }
+                List<Item<T>> children = (List<Item<T>>) item.getChildren();
+                return expand(item, subtask(children, 0, children.size(), depth + 1).compute());
+            }
+
+            long total = 0;
+            for (int i = from; i < to; i++) {
+                total += items.get(i).size();
+            }
+            if (total <= PARALLEL_THRESHOLD) {
+                return computeSequentially();
+            }
+
+            int mid = from + 1;
+            long leftSize = items.get(from).size();
+            while (mid < to - 1 && leftSize < total / 2) {
+                leftSize += items.get(mid++).size();
+            }
+            SubtreeTask<R> left = subtask(items, from, mid, depth + 1);
+            left.fork();
+            R right = subtask(items, mid, to, depth + 1).compute();
+            return merge(left.join(), right);
+        }
+
+        /**
+         * Creates a task of the same kind for another range
+         * @param items siblings containing the range
+         * @param from first index of the range, inclusive
+         * @param to last index of the range, exclusive
+         * @param depth nesting depth of new task
+         * @return new task
+         */
+        abstract SubtreeTask<R> subtask(List<Item<T>> items, int from, int to, int depth);
+
+        /**
+         * Processes the range in the current thread
+         * @return result for the range
+         */
+        abstract R computeSequentially();
+
+        /**
+         * Combines a node with the result of its children
+         * @param item node
+         * @param children result for the children of the node
+         * @return result for the subtree starting from the node
+         */
+        abstract R expand(Item<T> item, R children);
+
+        /**
+         * Combines results of two adjacent ranges
+         * @param left result for the first range
+         * @param right result for the second range
+         * @return result for both ranges
+         */
+        abstract R merge(R left, R right);
+    }
+
+    /**
+     * Task for parallel filtering. The result is a deque of levels: a single level for deep first
+     * strategies, and one level per depth for breath first strategy, so ranges can be merged level by level.
+     * A level is a deque of chunks of matched elements, so a node is put before its children and ranges
+     * are merged by moving chunks, and elements are copied once into the result
+     */
+    @SuppressWarnings("serial")
+    private class FilterTask extends SubtreeTask<Deque<Deque<List<T>>>> {
+
+        /**
+         * iteration strategy that defines order of the result
+         */
+        final IterationStrategy strategy;
+
+        /**
+         * predicate to test
+         */
+        final Predicate<? super T> predicate;
+
+        FilterTask(List<Item<T>> items, int from, int to, int depth,
+                   IterationStrategy strategy, Predicate<? super T> predicate) {
+            super(items, from, to, depth);
+            this.strategy = strategy;
+            this.predicate = predicate;
+        }
+
+        @Override
+        SubtreeTask<Deque<Deque<List<T>>>> subtask(List<Item<T>> items, int from, int to, int depth) {
+            return new FilterTask(items, from, to, depth, strategy, predicate);
+        }
+
+        @Override
+        Deque<Deque<List<T>>> computeSequentially() {
+            Deque<Deque<List<T>>> levels = new ArrayDeque<>();
+            if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+                List<Item<T>> level = items.subList(from, to);
+                while (!level.isEmpty()) {
+                    List<T> matched = new ArrayList<>();
+                    List<Item<T>> next = new ArrayList<>();
+                    for (Item<T> item : level) {
+                        if (predicate.test(item.getValue())) {
+                            matched.add(item.getValue());
+                        }
+                        next.addAll(item.getChildren());
+                    }
+                    levels.add(chunk(matched));
+                    level = next;
+                }
+            } else {
+                List<T> matched = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    Iterator<T> it = iterator(strategy, items.get(i));
+                    while (it.hasNext()) {
+                        T curr = it.next();
+                        if (predicate.test(curr)) {
+                            matched.add(curr);
+                        }
+                    }
+                }
+                levels.add(chunk(matched));
+            }
+            return levels;
+        }
+
+        @Override
+        Deque<Deque<List<T>>> expand(Item<T> item, Deque<Deque<List<T>>> children) {
+            List<T> matched = predicate.test(item.getValue())
+                    ? Collections.singletonList(item.getValue()) : Collections.emptyList();
+            if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+                children.addFirst(chunk(matched));
+            } else if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+                children.getFirst().addFirst(matched);
+            } else {
+                children.getFirst().addLast(matched);
+            }
+            return children;
+        }
+
+        @Override
+        Deque<Deque<List<T>>> merge(Deque<Deque<List<T>>> left, Deque<Deque<List<T>>> right) {
+            Iterator<Deque<List<T>>> lefts = left.iterator();
+            Iterator<Deque<List<T>>> rights = right.iterator();
+            while (lefts.hasNext() && rights.hasNext()) {
+                lefts.next().addAll(rights.next());
+            }
+            rights.forEachRemaining(left::addLast);
+            return left;
+        }
+
+        /**
+         * Creates a level consisting of supplied chunk
+         * @param matched matched elements
+         * @return new level
+         */
+        private Deque<List<T>> chunk(List<T> matched) {
+            Deque<List<T>> level = new ArrayDeque<>();
+            level.add(matched);
+            return level;
+        }
+    }
+
+    /**
+     * Task for parallel aggregation, results are combined in deep first pre order
+     * @param <U> the type of the result
+     */
+    @SuppressWarnings("serial")
+    private class AggregateTask<U> extends SubtreeTask<U> {
+
+        /**
+         * identity value for combiner
+         */
+        final U identity;
+
+        /**
+         * function applied to every element
+         */
+        final Function<? super T, ? extends U> mapper;
+
+        /**
+         * associative function combining two results
+         */
+        final BinaryOperator<U> combiner;
+
+        AggregateTask(List<Item<T>> items, int from, int to, int depth, U identity,
+                      Function<? super T, ? extends U> mapper, BinaryOperator<U> combiner) {
+            super(items, from, to, depth);
+            this.identity = identity;
+            this.mapper = mapper;
+            this.combiner = combiner;
+        }
+
+        @Override
+        SubtreeTask<U> subtask(List<Item<T>> items, int from, int to, int depth) {
+            return new AggregateTask<>(items, from, to, depth, identity, mapper, combiner);
+        }
+
+        @Override
+        U computeSequentially() {
+            U result = identity;
+            for (int i = from; i < to; i++) {
+                Iterator<T> it = iterator(IterationStrategy.DEPTH_FIRST_PRE, items.get(i));
+                while (it.hasNext()) {
+                    result = combiner.apply(result, mapper.apply(it.next()));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        U expand(Item<T> item, U children) {
+            return combiner.apply(mapper.apply(item.getValue()), children);
+        }
+
+        @Override
+        U merge(U left, U right) {
+            return combiner.apply(left, right);
+        }
+    }
+
+    /**
+     * Task for parallel copying of a range of sibling subtrees into another tree.
+     * The result is the list of copies of the range roots
+     */
+    @SuppressWarnings("serial")
+    private class CopyTask extends SubtreeTask<List<Item<T>>> {
+
+        /**
+         * tree owning the copies
+         */
+        final GeneralTree<T> target;
+
+        CopyTask(List<Item<T>> items, int from, int to, int depth, GeneralTree<T> target) {
+            super(items, from, to, depth);
+            this.target = target;
+        }
+
+        @Override
+        SubtreeTask<List<Item<T>>> subtask(List<Item<T>> items, int from, int to, int depth) {
+            return new CopyTask(items, from, to, depth, target);
+        }
+
+        @Override
+        List<Item<T>> computeSequentially() {
+            List<Item<T>> result = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                result.add(target.copyOf(items.get(i), LIVE));
+            }
+            return result;
+        }
+
+        @Override
+        List<Item<T>> expand(Item<T> item, List<Item<T>> children) {
+            GeneralTree<T>.Node copy = target.copyOfNode(item, LIVE);
+            for (Item<T> child : children) {
+                GeneralTree<T>.Node childCopy = (GeneralTree<T>.Node) child;
+                childCopy.parent = copy;
+                copy.children.add(childCopy);
+            }
+            List<Item<T>> result = new ArrayList<>(1);
+            result.add(copy);
+            return result;
+        }
+
+        @Override
+        List<Item<T>> merge(List<Item<T>> left, List<Item<T>> right) {
+            left.addAll(right);
+            return left;
+        }
+    }
+
+    /**
+     * @see Tree#iterator(IterationStrategy, Item)
+     * @param strategy supplied strategy
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public Iterator<T> iterator(IterationStrategy strategy, Item<T> item) {
+        return iterator(strategy, item, LIVE);
+    }
+
+    /**
+     * Returns an iterator over the elements in this tree as they were at specified version
+     * @param strategy supplied strategy
+     * @param item supplied node
+     * @param version version of the tree
+     * @return an iterator over the elements in this tree
+     */
+    private AbstractTreeIterator iterator(IterationStrategy strategy, Item<T> item, long version) {
+        if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return new PreOrderIterator(item, version);
+        } else if (IterationStrategy.DEPTH_FIRST_POST.equals(strategy)) {
+            return new PostOrderIterator(item, version);
+        } else if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+            return new BreathFirstIterator(item, version);
+        } else {
+            throw new IllegalArgumentException(String.format("%s: no such enum constant for enum %s",
+                    strategy, IterationStrategy.class.getName()));
+        }
+    }
+
+    /**
+     * Elements are encountered in the order of default iteration strategy. Deep first traversals split
+     * by handing off child subtrees, breath first traversal splits by batches of elements
+     * @see Tree#spliterator(Item)
+     * @param parent supplied node
+     * @return
+     */
+    @Override
+    public Spliterator<T> spliterator(Item<T> parent) {
+        if (IterationStrategy.BREATH_FIRST.equals(defaultIterationStrategy)) {
+            return Spliterators.spliterator(iterator(defaultIterationStrategy, parent), parent.size(),
+                    Spliterator.ORDERED);
+        }
+        return new SubtreeSpliterator(parent, IterationStrategy.DEPTH_FIRST_POST.equals(defaultIterationStrategy));
+    }
+
+    /**
+     * Spliterator that traverses the tree according to deep first pre or post order iteration strategy
+     * and splits by handing off child subtrees. Sizes of subtrees are used to balance splits
+     */
+    private class SubtreeSpliterator implements Spliterator<T> {
+
+        /**
+         * <tt>true</tt> if elements are traversed in deep first post order, pre order otherwise
+         */
+        private final boolean postOrder;
+
+        /**
+         * node whose children are pending, it is emitted before pending subtrees in pre order
+         * and after them in post order. Its children are not traversed by this spliterator
+         */
+        private Item<T> head;
+
+        /**
+         * iterator over the subtree that is being traversed in post order, <tt>null</tt> if there is none
+         */
+        private Iterator<T> current;
+
+        /**
+         * subtrees that remain to be traversed, in encounter order
+         */
+        private final Deque<Item<T>> pending;
+
+        /**
+         * number of remaining elements
+         */
+        private long size;
+
+        /**
+         * constructor with element from which start a traversal
+         * @param item element from which start a traversal
+         * @param postOrder <tt>true</tt> if elements are traversed in deep first post order
+         */
+        SubtreeSpliterator(Item<T> item, boolean postOrder) {
+            this.postOrder = postOrder;
+            this.pending = new ArrayDeque<>();
+            this.pending.add(item);
+            this.size = item.size();
+        }
+
+        /**
+         * constructor for a part of traversal that has been split off
+         * @param head node that is emitted first in pre order
+         * @param current iterator over the subtree that is traversed first in post order
+         * @param pending subtrees that are traversed after head or current subtree
+         * @param size number of elements
+         * @param postOrder <tt>true</tt> if elements are traversed in deep first post order
+         */
+        private SubtreeSpliterator(Item<T> head, Iterator<T> current, Deque<Item<T>> pending, long size,
+                                   boolean postOrder) {
+            this.postOrder = postOrder;
+            this.head = head;
+            this.current = current;
+            this.pending = pending;
+            this.size = size;
+        }
+
+        /**
+         * @see Spliterator#tryAdvance(Consumer)
+         * @param action
+         * @return
          */
-        final Deque<Item<T>> first = new LinkedList<>();
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (postOrder) {
+                return tryAdvancePostOrder(action);
+            }
+            Item<T> curr = head;
+            if (curr != null) {
+                head = null;
+            } else {
+                curr = pending.pollFirst();
+                if (curr == null) {
+                    return false;
+                }
+                final List<Item<T>> children = (List<Item<T>>) curr.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.addFirst(children.get(i));
+                }
+            }
+
+            size--;
+            action.accept(curr.getValue());
+            return true;
+        }
 
         /**
-         * internal queue for storing elements during iteration
+         * Emits next element of the current subtree, starting the next pending subtree when the current one
+         * is exhausted, and the head after all subtrees
+         * @param action
+         * @return
+         */
+        private boolean tryAdvancePostOrder(Consumer<? super T> action) {
+            while (current == null || !current.hasNext()) {
+                current = null;
+                Item<T> next = pending.pollFirst();
+                if (next == null) {
+                    if (head == null) {
+                        return false;
+                    }
+                    size--;
+                    action.accept(head.getValue());
+                    head = null;
+                    return true;
+                }
+                current = iterator(IterationStrategy.DEPTH_FIRST_POST, next);
+            }
+
+            size--;
+            action.accept(current.next());
+            return true;
+        }
+
+        /**
+         * Splits off a prefix of pending subtrees holding about a half of remaining elements.
+         * A single pending subtree is expanded into its root and its children first.
+         * The prefix takes the head in pre order and the partly traversed subtree in post order
+         * @see Spliterator#trySplit()
+         * @return
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            if (head == null && current == null && pending.size() == 1) {
+                Item<T> only = pending.pollFirst();
+                head = only;
+                pending.addAll(only.getChildren());
+            }
+            if (pending.size() < 2) {
+                return null;
+            }
+
+            long prefixSize;
+            if (postOrder) {
+                prefixSize = size - (head == null ? 0 : 1);
+                for (Item<T> item : pending) {
+                    prefixSize -= item.size();
+                }
+            } else {
+                prefixSize = head == null ? 0 : 1;
+            }
+            Deque<Item<T>> prefix = new ArrayDeque<>();
+            while (pending.size() > 1 && prefixSize < size / 2) {
+                Item<T> item = pending.pollFirst();
+                prefix.add(item);
+                prefixSize += item.size();
+            }
+
+            Spliterator<T> result;
+            if (postOrder) {
+                result = new SubtreeSpliterator(null, current, prefix, prefixSize, true);
+                current = null;
+            } else {
+                result = new SubtreeSpliterator(head, null, prefix, prefixSize, false);
+                head = null;
+            }
+            size -= prefixSize;
+            return result;
+        }
+
+        /**
+         * @see Spliterator#estimateSize()
+         * @return
+         */
+        @Override
+        public long estimateSize() {
+            return size;
+        }
+
+        /**
+         * @see Spliterator#characteristics()
+         * @return
+         */
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
+    /**
+     * Abstract iterator that is used to retrieving Item<T> during iteration.
+     * Iterators keep their traversal state in array-backed buffers, which are retained
+     * between traversals when an iterator is reused via {@link #reset(Item)}.
+     * Iterators over the current state of the tree are fail-fast: if the traversed subtree is structurally
+     * modified other than through {@link #remove()}, next() throws ConcurrentModificationException
+     */
+    public abstract class AbstractTreeIterator implements Iterator<T> {
+        /**
+         * element that was emitted by next() method
+         */
+        protected Item<T> currentItem;
+
+        /**
+         * version of the tree that is traversed
+         */
+        private final long version;
+
+        /**
+         * snapshot that is traversed, referenced so it is not collected while the iteration is in progress,
+         * <tt>null</tt> for iterators over the current state of the tree
+         */
+        private Snapshot snapshot;
+
+        /**
+         * element from which the iteration started
+         */
+        private Node start;
+
+        /**
+         * number of structural modifications of the traversed subtree that this iterator expects
+         */
+        private int expectedModCount;
+
+        /**
+         * constructor with version of the tree that is traversed
+         * @param version version of the tree
+         */
+        AbstractTreeIterator(long version) {
+            this.version = version;
+        }
+
+        /**
+         * Returns children of supplied node at traversed version
+         * @param item supplied node
+         * @return children of the node
+         */
+        final List<Item<T>> childrenOf(Item<T> item) {
+            return ((Node) item).childrenAt(version);
+        }
+
+        /**
+         * Returns value of supplied node at traversed version
+         * @param item supplied node
+         * @return value of the node
+         */
+        final T valueOf(Item<T> item) {
+            return ((Node) item).valueAt(version);
+        }
+
+        /**
+         * Remembers supplied node as the root of traversed subtree and forgets the emitted element
+         * @param item element from which start an iteration
+         */
+        final void startFrom(Item<T> item) {
+            start = (Node) item;
+            expectedModCount = start == null ? 0 : start.modCount;
+            currentItem = null;
+        }
+
+        /**
+         * Checks that the traversed subtree was not structurally modified other than through this iterator
+         * @throws ConcurrentModificationException if the subtree was modified
+         */
+        final void checkForComodification() {
+            if (version == LIVE && start != null && start.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        /**
+         * getter for element that was emitted by next() method
+         * @return
+         */
+        public Item<T> getCurrentItem() {
+            return currentItem;
+        }
+
+        /**
+         * Restarts an iteration from supplied node reusing internal buffers of this iterator,
+         * so repeated traversals do not allocate
+         * @param item element from which start an iteration
+         */
+        public abstract void reset(Item<T> item);
+
+        /**
+         * Removes the subtree starting from the element emitted by next() method.
+         * Descendants of the element that are pending in this iterator are dropped without a traversal,
+         * the element is detached from its parent
+         * @see Iterator#remove()
+         */
+        @Override
+        public void remove() {
+            if (version != LIVE) {
+                throw new UnsupportedOperationException("Snapshot of a tree can not be modified");
+            }
+            if (currentItem == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            if (currentItem.getParent() == null) {
+                throw new UnsupportedOperationException("Root of a tree can not be removed");
+            }
+
+            skipChildren();
+            GeneralTree.this.setParent(currentItem, null);
+            expectedModCount = start.modCount;
+            currentItem = null;
+        }
+
+        /**
+         * Drops pending children of the element emitted by next() method, which is being removed
+         */
+        abstract void skipChildren();
+    }
+
+    /**
+     * Iterator for traversing the tree according to deep first pre order iteration strategy
+     */
+    private class PreOrderIterator extends AbstractTreeIterator {
+
+        /**
+         * stack for storing elements during iteration
+         */
+        final Deque<Item<T>> stack = new ArrayDeque<>();
+
+        /**
+         * number of children of the emitted element pushed to the stack
          */
-        final Deque<Item<T>> second = new LinkedList<>();
+        private int pushed;
 
         /**
          * constructor with element from which start an iteration
          * @param item element from which start an iteration
          */
-        public PostOrderIterator(Item<T> item) {
-            first.add(item);
+        PreOrderIterator(Item<T> item, long version) {
+            super(version);
+            reset(item);
+        }
+
+        /**
+         * @see AbstractTreeIterator#reset(Item)
+         * @param item element from which start an iteration
+         */
+        @Override
+        public void reset(Item<T> item) {
+            stack.clear();
+            if (item != null) {
+                stack.add(item);
+            }
+            startFrom(item);
         }
 
         /**
@@ -808,7 +2862,7 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         public boolean hasNext() {
-            return !first.isEmpty() || !second.isEmpty();
+            return !stack.isEmpty();
         }
 
         /**
@@ -817,36 +2871,81 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         public T next() {
-            while (!first.isEmpty()) {
-                Item<T> curr = first.pollLast();
-                second.add(curr);
+            checkForComodification();
+            Item<T> curr = stack.pollLast();
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
 
-                final List<Item<T>> children = (List<Item<T>>) curr.getChildren();
-                first.addAll(children);
+            final List<Item<T>> children = childrenOf(curr);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.add(children.get(i));
             }
+            pushed = children.size();
 
-            Item<T> item = second.pollLast();
-            currentItem = item;
-            return item.getValue();
+            currentItem = curr;
+            return valueOf(curr);
+        }
+
+        /**
+         * @see AbstractTreeIterator#skipChildren()
+         */
+        @Override
+        void skipChildren() {
+            for (int i = 0; i < pushed; i++) {
+                stack.pollLast();
+            }
         }
     }
 
     /**
-     * Iterator for traversing the tree according to breath first iteration strategy
+     * Iterator for traversing the tree according to deep first post order iteration strategy.
+     * Nodes are emitted lazily, only the path from the starting node to the current one is kept
+     * as a stack of frames: a node and the index of its next child to descend into
      */
-    private class BreathFirstIterator extends AbstractTreeIterator {
+    private class PostOrderIterator extends AbstractTreeIterator {
 
         /**
-         * internal queue for storing elements during iteration
+         * initial capacity of the frame stack
+         */
+        private static final int INITIAL_CAPACITY = 16;
+
+        /**
+         * nodes of the frames from the starting node to the node that will be emitted next
          */
-        final Deque<Item<T>> queue = new LinkedList<>();
+        private Object[] items = new Object[INITIAL_CAPACITY];
+
+        /**
+         * index of the next child to descend into for each frame
+         */
+        private int[] cursors = new int[INITIAL_CAPACITY];
+
+        /**
+         * number of frames in the stack
+         */
+        private int depth;
 
         /**
          * constructor with element from which start an iteration
          * @param item element from which start an iteration
          */
-        public BreathFirstIterator(Item<T> item) {
-            queue.add(item);
+        public PostOrderIterator(Item<T> item, long version) {
+            super(version);
+            reset(item);
+        }
+
+        /**
+         * @see AbstractTreeIterator#reset(Item)
+         * @param item element from which start an iteration
+         */
+        @Override
+        public void reset(Item<T> item) {
+            Arrays.fill(items, 0, depth, null);
+            depth = 0;
+            startFrom(item);
+            if (item != null) {
+                push(item);
+            }
         }
 
         /**
@@ -855,111 +2954,136 @@ public class GeneralTree<T> implements Tree<T> {
          */
         @Override
         public boolean hasNext() {
-            return !queue.isEmpty();
+            return depth > 0;
         }
 
         /**
          * @see Iterator#next()
          * @return
          */
+        @SuppressWarnings("unchecked")
         @Override
         public T next() {
-            Item<T> curr = queue.pollFirst();
+            checkForComodification();
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
 
-            final List<Item<T>> children = (List<Item<T>>) curr.getChildren();
-            queue.addAll(children);
+            Item<T> item = (Item<T>) items[depth - 1];
+            List<Item<T>> children = childrenOf(item);
+            while (cursors[depth - 1] < children.size()) {
+                item = children.get(cursors[depth - 1]++);
+                push(item);
+                children = childrenOf(item);
+            }
 
-            currentItem = curr;
-            return curr.getValue();
+            items[--depth] = null;
+            currentItem = item;
+            return valueOf(item);
         }
-    }
 
-    /**
-     * @see Tree#hashCode()
-     * @return
-     */
-    @Override
-    public int hashCode() {
-        int hashCode = 1;
-        for (T item : this)
-            hashCode = 31 * hashCode + (item == null ? 0 : item.hashCode());
-        return hashCode;
+        /**
+         * Children of the emitted element are already emitted, only the cursor of its parent
+         * is moved back, since the following siblings are shifted by the removal
+         * @see AbstractTreeIterator#skipChildren()
+         */
+        @Override
+        void skipChildren() {
+            if (depth > 0) {
+                cursors[depth - 1]--;
+            }
+        }
+
+        /**
+         * Pushes a frame for supplied node, growing the stack if needed
+         * @param item node of the frame
+         */
+        private void push(Item<T> item) {
+            if (depth == items.length) {
+                items = Arrays.copyOf(items, depth << 1);
+                cursors = Arrays.copyOf(cursors, depth << 1);
+            }
+            items[depth] = item;
+            cursors[depth++] = 0;
+        }
     }
 
     /**
-     * @see Tree#equals(Object)
-     * @param that
-     * @return
+     * Iterator for traversing the tree according to breath first iteration strategy
      */
-    @Override
-    public boolean equals(Object that) {
-        if (that == this) {
-            return true;
-        }
-        if (!(that instanceof Tree)) {
-            return false;
+    private class BreathFirstIterator extends AbstractTreeIterator {
+
+        /**
+         * internal queue for storing elements during iteration
+         */
+        final Deque<Item<T>> queue = new ArrayDeque<>();
+
+        /**
+         * number of children of the emitted element added to the queue
+         */
+        private int pushed;
+
+        /**
+         * constructor with element from which start an iteration
+         * @param item element from which start an iteration
+         */
+        public BreathFirstIterator(Item<T> item, long version) {
+            super(version);
+            reset(item);
         }
 
-        Iterator<T> it1 = iterator();
-        Iterator<?> it2 = ((Tree<?>) that).iterator();
-        while (it1.hasNext() && it2.hasNext()) {
-            T item1 = it1.next();
-            Object item2 = it2.next();
-            if (!(Objects.equals(item1, item2))) {
-                return false;
+        /**
+         * @see AbstractTreeIterator#reset(Item)
+         * @param item element from which start an iteration
+         */
+        @Override
+        public void reset(Item<T> item) {
+            queue.clear();
+            if (item != null) {
+                queue.add(item);
             }
+            startFrom(item);
         }
-        return !(it1.hasNext() || it2.hasNext());
-    }
 
-    /**
-     * @see Tree#toString()
-     * @return
-     */
-    @Override
-    public String toString() {
-        return toString(defaultIterationStrategy, root);
-    }
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
 
-    /**
-     * @see Tree#toString(Item)
-     * @param parent supplied node
-     * @return
-     */
-    public String toString(Item<T> parent) {
-        return toString(defaultIterationStrategy, parent);
-    }
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public T next() {
+            checkForComodification();
+            Item<T> curr = queue.pollFirst();
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
 
-    /**
-     * @see Tree#toString(IterationStrategy)
-     * @param strategy supplied iteration strategy
-     * @return
-     */
-    public String toString(IterationStrategy strategy) {
-        return toString(strategy, root);
-    }
+            final List<Item<T>> children = childrenOf(curr);
+            for (int i = 0; i < children.size(); i++) {
+                queue.add(children.get(i));
+            }
+            pushed = children.size();
 
-    /**
-     * @see Tree#toString(IterationStrategy, Item)
-     * @param strategy supplied iteration strategy
-     * @param parent supplied node
-     * @return
-     */
-    public String toString(IterationStrategy strategy, Item<T> parent) {
-        Iterator<T> it = iterator(strategy, parent);
-        if (!it.hasNext()) {
-            return "[]";
+            currentItem = curr;
+            return valueOf(curr);
         }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        for (; ; ) {
-            T e = it.next();
-            sb.append(e == this ? "(this Tree)" : e);
-            if (!it.hasNext()) {
-                return sb.append(']').toString();
+        /**
+         * @see AbstractTreeIterator#skipChildren()
+         */
+        @Override
+        void skipChildren() {
+            for (int i = 0; i < pushed; i++) {
+                queue.pollLast();
             }
-            sb.append(',').append(' ');
         }
     }
 }
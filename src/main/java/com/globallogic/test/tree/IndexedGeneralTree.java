@@ -0,0 +1,272 @@
+package com.globallogic.test.tree;
+
+import java.util.*;
+
+/**
+ * Implementation of Tree that keeps an index of values to nodes containing them.
+ * Point lookups by value are answered from the index and scoped to a subtree
+ * by an ancestor check instead of a traversal.
+ * The index is maintained by add, remove, set, setParent and clear
+ * @param <T> the type of elements in this tree
+ */
+public class IndexedGeneralTree<T> extends GeneralTree<T> {
+
+    /**
+     * nodes attached to the root of this tree grouped by value, nodes with equal values are kept by identity
+     */
+    private final Map<T, Set<Item<T>>> index = new HashMap<>();
+
+    /**
+     * Default constructor for IndexedGeneralTree
+     */
+    public IndexedGeneralTree() {
+        super();
+    }
+
+    /**
+     * constructor for IndexedGeneralTree with root value
+     * @param rootValue
+     */
+    public IndexedGeneralTree(T rootValue) {
+        super(rootValue);
+        index(getRoot());
+    }
+
+    /**
+     * constructor for IndexedGeneralTree with default iteration strategy
+     * @param strategy
+     */
+    public IndexedGeneralTree(IterationStrategy strategy) {
+        super(strategy);
+    }
+
+    /**
+     * @see Tree#contains(Object, Item)
+     * @param value element to test
+     * @param parent node from witch start
+     * @return
+     */
+    @Override
+    public boolean contains(T value, Item<T> parent) {
+        Set<Item<T>> items = index.get(value);
+        if (items != null) {
+            for (Item<T> item : items) {
+                if (isAncestorOrSelf(parent, item)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @see Tree#findChild(Object, Item)
+     * If there are several nodes with supplied value in the subtree, the first one according to
+     * default iteration strategy is found by traversal
+     * @param value value that suppose to be find
+     * @param parent node from which start search
+     * @return
+     */
+    @Override
+    public Item<T> findChild(T value, Item<T> parent) {
+        Set<Item<T>> items = index.get(value);
+        if (items == null) {
+            return null;
+        }
+
+        Item<T> result = null;
+        for (Item<T> item : items) {
+            if (isAncestorOrSelf(parent, item)) {
+                if (result != null) {
+                    return super.findChild(value, parent);
+                }
+                result = item;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see Tree#add(Object, Item)
+     * A node added to a detached subtree is not indexed
+     * @param value
+     * @param parent parent to which add
+     * @return
+     */
+    @Override
+    public Item<T> add(T value, Item<T> parent) {
+        int sizeBefore = size();
+        Item<T> added = super.add(value, parent);
+        if (size() > sizeBefore) {
+            index(added);
+        }
+        return added;
+    }
+
+    /**
+     * @see GeneralTree#add(Object, Item, int)
+     * @param value value to add
+     * @param parent parent to which add
+     * @param index position of the new node among children of the parent
+     * @return
+     */
+    @Override
+    public Item<T> add(T value, Item<T> parent, int index) {
+        int sizeBefore = size();
+        Item<T> added = super.add(value, parent, index);
+        if (size() > sizeBefore) {
+            index(added);
+        }
+        return added;
+    }
+
+    /**
+     * @see Tree#remove(Object, Item)
+     * @param value
+     * @param parent removed element
+     * @return
+     */
+    @Override
+    public Item<T> remove(T value, Item<T> parent) {
+        Item<T> removed = super.remove(value, parent);
+        if (removed != null) {
+            unindexSubtree(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * @see Tree#set(Object, Item)
+     * @param value specified value
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public Item<T> set(T value, Item<T> item) {
+        boolean indexed = unindex(item);
+        Item<T> result = super.set(value, item);
+        if (indexed) {
+            index(item);
+        }
+        return result;
+    }
+
+    /**
+     * @see Tree#setParent(Item, Item)
+     * A subtree that is attached to or detached from this tree is added to or removed from the index
+     * @param item node to set parent
+     * @param parent parent to set
+     * @return
+     */
+    @Override
+    public Item<T> setParent(Item<T> item, Item<T> parent) {
+        int sizeBefore = size();
+        Item<T> result = super.setParent(item, parent);
+        if (size() > sizeBefore) {
+            indexSubtree(item);
+        } else if (size() < sizeBefore) {
+            unindexSubtree(item);
+        }
+        return result;
+    }
+
+    /**
+     * @see GeneralTree#setParent(Item, Item, int)
+     * @param item node to set parent
+     * @param parent parent to set
+     * @param index position of the node among children of the parent after the move
+     * @return
+     */
+    @Override
+    public Item<T> setParent(Item<T> item, Item<T> parent, int index) {
+        int sizeBefore = size();
+        Item<T> result = super.setParent(item, parent, index);
+        if (size() > sizeBefore) {
+            indexSubtree(item);
+        } else if (size() < sizeBefore) {
+            unindexSubtree(item);
+        }
+        return result;
+    }
+
+    /**
+     * @see GeneralTree#setRoot(Item)
+     * @param item detached node, <tt>null</tt> to make the tree empty
+     */
+    @Override
+    void setRoot(Item<T> item) {
+        index.clear();
+        super.setRoot(item);
+        if (item != null) {
+            indexSubtree(item);
+        }
+    }
+
+    /**
+     * @see Tree#clear(Item)
+     * @param parent supplied node
+     */
+    @Override
+    public void clear(Item<T> parent) {
+        unindexSubtree(parent);
+        super.clear(parent);
+    }
+
+    /**
+     * Checks whether first node is an ancestor of second node or the same node
+     * @param ancestor supposed ancestor
+     * @param item node to test
+     * @return <tt>true</tt> if second node is in the subtree starting from first node
+     */
+    private boolean isAncestorOrSelf(Item<T> ancestor, Item<T> item) {
+        return item == ancestor || isAncestorOf(ancestor, item);
+    }
+
+    /**
+     * Adds all nodes of the subtree starting from supplied node to the index
+     * @param parent root of subtree
+     */
+    private void indexSubtree(Item<T> parent) {
+        AbstractTreeIterator it = (AbstractTreeIterator) iterator(parent);
+        while (it.hasNext()) {
+            it.next();
+            index(it.getCurrentItem());
+        }
+    }
+
+    /**
+     * Removes all nodes of the subtree starting from supplied node from the index
+     * @param parent root of subtree
+     */
+    private void unindexSubtree(Item<T> parent) {
+        AbstractTreeIterator it = (AbstractTreeIterator) iterator(parent);
+        while (it.hasNext()) {
+            it.next();
+            unindex(it.getCurrentItem());
+        }
+    }
+
+    /**
+     * Adds supplied node to the index
+     * @param item node to add
+     */
+    private void index(Item<T> item) {
+        index.computeIfAbsent(item.getValue(), key -> Collections.newSetFromMap(new IdentityHashMap<>(2))).add(item);
+    }
+
+    /**
+     * Removes supplied node from the index in constant time
+     * @param item node to remove
+     * @return <tt>true</tt> if the node was indexed
+     */
+    private boolean unindex(Item<T> item) {
+        Set<Item<T>> items = index.get(item.getValue());
+        if (items == null || !items.remove(item)) {
+            return false;
+        }
+        if (items.isEmpty()) {
+            index.remove(item.getValue());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,1539 @@
+package com.globallogic.test.tree;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * General tree with a write-ahead journal of its modifications.
+ * <p>
+ * The state of the tree is kept in a directory as the last snapshot in binary format, see {@link TreeFormat},
+ * and segments of the journal written since the snapshot. Every modification of a node reachable from the root
+ * by {@link #add}, {@link #remove}, {@link #set}, {@link #setParent}, {@link #clear} and by <tt>remove()</tt>
+ * of iterators is appended to an in-memory batch as a record with a checksum, nodes are addressed by positions
+ * of children on the path from the root. Batches are written to the current segment through a file channel,
+ * when the file is forced is chosen by {@link SyncPolicy}. Modifications of detached subtrees are not recorded,
+ * a detached subtree is recorded as a whole when it is attached to the tree.
+ * <p>
+ * Modifications are serialized by the lock of the journal, so several threads may modify the tree
+ * and a single force of the file commits records of all of them. Reads are not synchronized with modifications,
+ * like {@link GeneralTree} itself. When the journal grows over the compaction threshold, a new segment
+ * is started and a snapshot of the tree is written by a background thread, which holds the lock of the journal
+ * only for short batches of nodes, older segments are deleted after the snapshot is in place.
+ * {@link #open(Path, ValueCodec, Options)} reads the last snapshot and replays the journal on top of it,
+ * a record torn by a crash at the end of the last segment is dropped.
+ * <p>
+ * Values are written by a {@link ValueCodec}, <tt>null</tt> values are supported. Records of {@link #remove}
+ * find the removed child by its value, so decoded values must be equal to encoded ones.
+ * The root of the tree can not be moved
+ * @param <T> the type of elements in this tree
+ */
+public class JournaledTree<T> extends AbstractTree<T> implements Closeable {
+
+    /**
+     * name of the snapshot file
+     */
+    static final String SNAPSHOT = "snapshot";
+
+    /**
+     * name of the snapshot file being written
+     */
+    static final String SNAPSHOT_TEMPORARY = "snapshot.tmp";
+
+    /**
+     * prefix of names of segment files
+     */
+    static final String SEGMENT_PREFIX = "journal-";
+
+    /**
+     * suffix of names of segment files
+     */
+    static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * number of bytes of the header of a record: the length and the checksum of the payload
+     */
+    private static final int RECORD_HEADER = 8;
+
+    /**
+     * initial capacity of batches of records
+     */
+    private static final int BATCH_SIZE = 1 << 16;
+
+    /**
+     * number of bytes in a batch after which a writer writes the batch instead of waiting for the background thread
+     */
+    private static final int BATCH_FLUSH_SIZE = 1 << 20;
+
+    /**
+     * record of {@link Tree#add(Object, Item)}: path of the parent, value
+     */
+    private static final byte ADD = 1;
+
+    /**
+     * record of {@link Tree#remove(Object, Item)}: path of the parent, value
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * record of {@link Tree#set(Object, Item)}: path of the node, value
+     */
+    private static final byte SET = 3;
+
+    /**
+     * record of {@link Tree#clear(Item)}: path of the node
+     */
+    private static final byte CLEAR = 4;
+
+    /**
+     * record of moving a node within the tree: path of the node, path of the new parent
+     */
+    private static final byte MOVE = 5;
+
+    /**
+     * record of detaching a node from the tree: path of the node
+     */
+    private static final byte DETACH = 6;
+
+    /**
+     * record of attaching a detached subtree: path of the new parent, number of nodes,
+     * number of children and value of every node in deep first pre order
+     */
+    private static final byte GRAFT = 7;
+
+    /**
+     * Policy of forcing the journal to the storage device
+     */
+    public enum SyncPolicy {
+
+        /**
+         * every modification returns after its record is forced, concurrent modifications share a force
+         */
+        ALWAYS,
+
+        /**
+         * records are written and forced by a background thread at the sync interval,
+         * modifications of the last interval may be lost by a crash
+         */
+        PERIODIC,
+
+        /**
+         * records are written by a background thread at the sync interval and forced when the journal is closed
+         * or compacted, the operating system decides when they reach the device
+         */
+        NEVER
+    }
+
+    /**
+     * Options of a journal
+     */
+    public static final class Options {
+
+        /**
+         * policy of forcing the journal
+         */
+        private SyncPolicy syncPolicy = SyncPolicy.ALWAYS;
+
+        /**
+         * interval of the background thread writing the journal in milliseconds
+         */
+        private long syncInterval = 1000;
+
+        /**
+         * number of bytes of the journal after which it is compacted into a snapshot, 0 to compact only on demand
+         */
+        private long compactionThreshold = 64L << 20;
+
+        /**
+         * Sets the policy of forcing the journal, {@link SyncPolicy#ALWAYS} by default
+         * @param syncPolicy policy of forcing the journal
+         * @return this options
+         */
+        public Options syncPolicy(SyncPolicy syncPolicy) {
+            this.syncPolicy = syncPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the interval of the background thread writing the journal, one second by default
+         * @param interval supplied interval
+         * @param unit unit of the interval
+         * @return this options
+         */
+        public Options syncInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException(String.format("Invalid sync interval %d", interval));
+            }
+            this.syncInterval = Math.max(1, unit.toMillis(interval));
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes of the journal after which it is compacted into a snapshot, 64 MB by default
+         * @param compactionThreshold number of bytes, 0 to compact only by {@link JournaledTree#compact()}
+         * @return this options
+         */
+        public Options compactionThreshold(long compactionThreshold) {
+            if (compactionThreshold < 0) {
+                throw new IllegalArgumentException(String.format("Invalid compaction threshold %d", compactionThreshold));
+            }
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+    }
+
+    /**
+     * journaled tree
+     */
+    private final GeneralTree<T> tree;
+
+    /**
+     * directory of the journal
+     */
+    private final Path directory;
+
+    /**
+     * codec of values of records and snapshots
+     */
+    private final ValueCodec<T> codec;
+
+    /**
+     * policy of forcing the journal
+     */
+    private final SyncPolicy syncPolicy;
+
+    /**
+     * number of bytes of the journal after which it is compacted
+     */
+    private final long compactionThreshold;
+
+    /**
+     * lock serializing modifications of the tree and appends to the batch. It is fair, so the compaction
+     * releasing it between batches of nodes lets waiting writers in
+     */
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    /**
+     * monitor serializing writes to the segment and switching of segments, taken before {@link #lock}
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * thread writing the journal at the sync interval and compacting it
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * checksum of records, guarded by {@link #lock}
+     */
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * records not yet written, guarded by {@link #lock}
+     */
+    private ByteBuffer batch = ByteBuffer.allocate(BATCH_SIZE);
+
+    /**
+     * empty buffer swapped with the batch when the batch is written, guarded by {@link #flushLock}
+     */
+    private ByteBuffer spare = ByteBuffer.allocate(BATCH_SIZE);
+
+    /**
+     * number of appended records, guarded by {@link #lock}
+     */
+    private long appended;
+
+    /**
+     * number of records written to segments, guarded by {@link #flushLock}
+     */
+    private long written;
+
+    /**
+     * number of records forced to the device
+     */
+    private volatile long durable;
+
+    /**
+     * number of bytes in the batch
+     */
+    private volatile int batchSize;
+
+    /**
+     * number of bytes appended since the last compaction
+     */
+    private volatile long journalSize;
+
+    /**
+     * number of the current segment, guarded by {@link #flushLock}
+     */
+    private long segment;
+
+    /**
+     * channel of the current segment, guarded by {@link #flushLock}
+     */
+    private FileChannel channel;
+
+    /**
+     * running compaction, <tt>null</tt> if there is none, guarded by {@link #flushLock}
+     */
+    private CompletableFuture<Void> compaction;
+
+    /**
+     * whether the journal is closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * failure of writing the journal, after which modifications are rejected
+     */
+    private volatile IOException failure;
+
+    /**
+     * constructor with recovered tree, starting a new segment
+     * @param directory directory of the journal
+     * @param tree recovered tree
+     * @param codec codec of values of records and snapshots
+     * @param options options of the journal
+     * @param segment number of the new segment
+     * @throws IOException if the segment can not be created
+     */
+    private JournaledTree(Path directory, GeneralTree<T> tree, ValueCodec<T> codec, Options options, long segment)
+            throws IOException {
+        super(tree.defaultIterationStrategy);
+        this.directory = directory;
+        this.tree = tree;
+        this.codec = codec;
+        this.syncPolicy = options.syncPolicy;
+        this.compactionThreshold = options.compactionThreshold;
+        this.segment = segment;
+        this.channel = FileChannel.open(segmentPath(directory, segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        syncDirectory(directory);
+
+        this.executor = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "tree-journal-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (syncPolicy != SyncPolicy.ALWAYS) {
+            executor.scheduleWithFixedDelay(this::flushInBackground,
+                    options.syncInterval, options.syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates a journal of supplied tree in supplied directory. The tree is written as the first snapshot
+     * and must be modified only through the returned instance afterwards
+     * @param directory directory of the journal, created if it does not exist
+     * @param tree tree to journal
+     * @param codec codec of values
+     * @param options options of the journal
+     * @param <T> the type of elements
+     * @return journaled tree
+     * @throws FileAlreadyExistsException if the directory already contains a journal
+     * @throws IOException if the snapshot can not be written
+     */
+    public static <T> JournaledTree<T> create(Path directory, GeneralTree<T> tree, ValueCodec<T> codec,
+                                              Options options) throws IOException {
+        Files.createDirectories(directory);
+        if (Files.exists(directory.resolve(SNAPSHOT))) {
+            throw new FileAlreadyExistsException(directory.toString(), null, "Directory already contains a journal");
+        }
+        final ValueCodec<T> nullable = new NullableCodec<>(codec);
+        writeSnapshot(directory, tree, nullable, 0, null);
+        return new JournaledTree<>(directory, tree, nullable, options, 0);
+    }
+
+    /**
+     * Recovers a tree from the journal in supplied directory. The last snapshot is read, segments written
+     * since the snapshot are replayed in order and a torn record at the end of the last segment is truncated.
+     * Modifications go to a new segment
+     * @param directory directory of the journal
+     * @param codec codec of values, must decode values encoded by the codec the journal was created with
+     * @param options options of the journal
+     * @param <T> the type of elements
+     * @return journaled tree with the recovered state
+     * @throws FileNotFoundException if the directory does not contain a journal
+     * @throws IOException if the snapshot or a segment other than the last one is corrupted
+     */
+    public static <T> JournaledTree<T> open(Path directory, ValueCodec<T> codec, Options options) throws IOException {
+        final Path snapshot = directory.resolve(SNAPSHOT);
+        if (!Files.exists(snapshot)) {
+            throw new FileNotFoundException(String.format("Directory %s does not contain a journal", directory));
+        }
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_TEMPORARY));
+
+        final ValueCodec<T> nullable = new NullableCodec<>(codec);
+        final GeneralTree<T> tree;
+        final long firstSegment;
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            DataInputStream data = new DataInputStream(in);
+            firstSegment = data.readLong();
+            tree = TreeFormat.read(data, nullable);
+        }
+
+        long next = firstSegment;
+        final List<Long> segments = listSegments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            long number = segments.get(i);
+            if (number < firstSegment) {
+                Files.delete(segmentPath(directory, number));
+                continue;
+            }
+            replay(tree, segmentPath(directory, number), nullable, i == segments.size() - 1);
+            next = number + 1;
+        }
+        return new JournaledTree<>(directory, tree, nullable, options, next);
+    }
+
+    /**
+     * Returns the path of supplied segment
+     * @param directory directory of the journal
+     * @param number number of the segment
+     * @return path of the segment file
+     */
+    static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Returns numbers of segments in supplied directory in ascending order
+     * @param directory directory of the journal
+     * @return numbers of segments
+     * @throws IOException if the directory can not be listed
+     */
+    static List<Long> listSegments(Path directory) throws IOException {
+        final List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    result.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not a segment
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Writes a snapshot of supplied tree to a temporary file and moves it over the previous snapshot
+     * once it is forced
+     * @param directory directory of the journal
+     * @param tree tree to write
+     * @param codec codec of values
+     * @param firstSegment number of the first segment that is not a part of the snapshot
+     * @param lock lock guarding the tree, <tt>null</tt> if the tree is not shared
+     * @param <T> the type of elements
+     * @throws IOException if the snapshot can not be written
+     */
+    private static <T> void writeSnapshot(Path directory, Tree<T> tree, ValueCodec<T> codec, long firstSegment,
+                                          ReentrantLock lock) throws IOException {
+        final Path temporary = directory.resolve(SNAPSHOT_TEMPORARY);
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(file);
+            out.write(ByteBuffer.allocate(Long.BYTES).putLong(firstSegment).array());
+            TreeFormat.write(tree, out, codec, lock);
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+    }
+
+    /**
+     * Forces changes of entries of supplied directory, so created and renamed files survive a crash
+     * @param directory supplied directory
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel file = FileChannel.open(directory, StandardOpenOption.READ)) {
+            file.force(true);
+        } catch (IOException e) {
+            // some platforms can not open directories, entries are then as durable as the platform keeps them
+        }
+    }
+
+    /**
+     * Replays records of supplied segment on supplied tree
+     * @param tree tree to modify
+     * @param file segment file
+     * @param codec codec of values
+     * @param last whether the segment is the last one, its torn tail is truncated instead of failing
+     * @param <T> the type of elements
+     * @throws IOException if the segment is corrupted
+     */
+    private static <T> void replay(GeneralTree<T> tree, Path file, ValueCodec<T> codec, boolean last)
+            throws IOException {
+        try (FileChannel segment = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long size = segment.size();
+            final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            final CRC32 checksum = new CRC32();
+            long position = 0;
+            while (position < size) {
+                if (size - position < RECORD_HEADER) {
+                    break;
+                }
+                header.clear();
+                readFully(segment, header, position);
+                int length = header.getInt(0);
+                if (length <= 0 || length > size - position - RECORD_HEADER) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(segment, payload, position + RECORD_HEADER);
+                checksum.reset();
+                checksum.update(payload.array(), 0, length);
+                if ((int) checksum.getValue() != header.getInt(4)) {
+                    break;
+                }
+                try {
+                    apply(tree, payload, codec);
+                } catch (RuntimeException e) {
+                    throw new IOException(String.format("Record at offset %d of %s can not be replayed",
+                            position, file), e);
+                }
+                position += RECORD_HEADER + length;
+            }
+            if (position < size) {
+                if (!last) {
+                    throw new IOException(String.format("Segment %s is corrupted at offset %d", file, position));
+                }
+                segment.truncate(position);
+                segment.force(true);
+            }
+        }
+    }
+
+    /**
+     * Reads supplied buffer from supplied position of supplied channel
+     * @param channel channel to read from
+     * @param buffer buffer to fill
+     * @param position position in the channel
+     * @throws IOException if the channel fails or ends
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Segment ends before the end of a record");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Applies supplied record to supplied tree
+     * @param tree tree to modify
+     * @param payload payload of the record
+     * @param codec codec of values
+     * @param <T> the type of elements
+     */
+    private static <T> void apply(GeneralTree<T> tree, ByteBuffer payload, ValueCodec<T> codec) {
+        final byte type = payload.get();
+        switch (type) {
+            case ADD: {
+                Item<T> parent = resolve(tree, payload);
+                tree.add(getValue(payload, codec), parent);
+                break;
+            }
+            case REMOVE: {
+                Item<T> parent = resolve(tree, payload);
+                tree.remove(getValue(payload, codec), parent);
+                break;
+            }
+            case SET: {
+                Item<T> item = resolve(tree, payload);
+                tree.set(getValue(payload, codec), item);
+                break;
+            }
+            case CLEAR:
+                tree.clear(resolve(tree, payload));
+                break;
+            case MOVE: {
+                Item<T> item = resolve(tree, payload);
+                tree.setParent(item, resolve(tree, payload));
+                break;
+            }
+            case DETACH:
+                tree.setParent(resolve(tree, payload), null);
+                break;
+            case GRAFT: {
+                Item<T> parent = resolve(tree, payload);
+                tree.setParent(readSubtree(tree, payload, codec), parent);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(String.format("Unknown record type %d", type));
+        }
+    }
+
+    /**
+     * Reads the path of a node and finds the node
+     * @param tree tree with the node
+     * @param payload payload positioned at the path
+     * @param <T> the type of elements
+     * @return found node
+     */
+    private static <T> Item<T> resolve(GeneralTree<T> tree, ByteBuffer payload) {
+        final int depth = TreeFormat.getVarint(payload);
+        Item<T> item = tree.getRoot();
+        for (int i = 0; i < depth; i++) {
+            int index = TreeFormat.getVarint(payload);
+            Collection<Item<T>> children = tree.getChildren(item);
+            if (index < 0 || index >= children.size()) {
+                throw new IllegalArgumentException(String.format("Node has no child %d", index));
+            }
+            if (children instanceof List) {
+                item = ((List<Item<T>>) children).get(index);
+            } else {
+                Iterator<Item<T>> it = children.iterator();
+                for (int j = 0; j < index; j++) {
+                    it.next();
+                }
+                item = it.next();
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Reads a value
+     * @param payload payload positioned at the length of the value
+     * @param codec codec of values
+     * @param <T> the type of elements
+     * @return read value
+     */
+    private static <T> T getValue(ByteBuffer payload, ValueCodec<T> codec) {
+        final int size = TreeFormat.getVarint(payload);
+        final ByteBuffer value = payload.duplicate();
+        value.limit(value.position() + size);
+        payload.position(value.limit());
+        return codec.decode(value);
+    }
+
+    /**
+     * Reads a subtree of detached nodes. A node is added to its parent when its last child is added,
+     * while the parent is still detached, so adding does not walk the path to the root
+     * @param tree tree creating the nodes
+     * @param payload payload positioned at the number of nodes
+     * @param codec codec of values
+     * @param <T> the type of elements
+     * @return root of the subtree
+     */
+    private static <T> Item<T> readSubtree(GeneralTree<T> tree, ByteBuffer payload, ValueCodec<T> codec) {
+        final int count = TreeFormat.getVarint(payload);
+        final Deque<Item<T>> open = new ArrayDeque<>();
+        int[] remaining = new int[16];
+        for (int i = 0; i < count; i++) {
+            int childCount = TreeFormat.getVarint(payload);
+            Item<T> node = tree.newNode(getValue(payload, codec));
+            if (childCount > 0) {
+                if (open.size() == remaining.length) {
+                    remaining = Arrays.copyOf(remaining, remaining.length << 1);
+                }
+                remaining[open.size()] = childCount;
+                open.add(node);
+                continue;
+            }
+            while (!open.isEmpty()) {
+                open.peekLast().addChild(node);
+                if (--remaining[open.size() - 1] > 0) {
+                    break;
+                }
+                node = open.pollLast();
+            }
+            if (open.isEmpty()) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("Subtree ends before its last node");
+    }
+
+    /**
+     * Returns positions of children on the path from the root to supplied node. Children are searched
+     * from the end by identity, so recently added nodes are found fast
+     * @param item supplied node
+     * @return positions of children, <tt>null</tt> if the node is not reachable from the root
+     */
+    private int[] pathOf(Item<T> item) {
+        if (item == null) {
+            return null;
+        }
+        int depth = 0;
+        Item<T> curr = item;
+        while (tree.getParent(curr) != null) {
+            curr = tree.getParent(curr);
+            depth++;
+        }
+        if (curr != tree.getRoot()) {
+            return null;
+        }
+
+        final int[] path = new int[depth];
+        curr = item;
+        for (int i = depth - 1; i >= 0; i--) {
+            Item<T> parent = tree.getParent(curr);
+            List<Item<T>> children = (List<Item<T>>) tree.getChildren(parent);
+            ListIterator<Item<T>> it = children.listIterator(children.size());
+            while (it.previous() != curr) {
+                // identity search
+            }
+            path[i] = it.nextIndex();
+            curr = parent;
+        }
+        return path;
+    }
+
+    /**
+     * Checks that the journal accepts modifications
+     * @throws IllegalStateException if the journal is closed or failed
+     */
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("Journal of the tree is closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Journal of the tree failed", failure);
+        }
+    }
+
+    /**
+     * Makes room for supplied number of bytes in the batch
+     * @param size number of bytes
+     */
+    private void reserve(int size) {
+        if (batch.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(batch.capacity() << 1, batch.position() + size));
+            batch.flip();
+            batch = larger.put(batch);
+        }
+    }
+
+    /**
+     * Starts a record of supplied type in the batch
+     * @param type type of the record
+     * @return position of the record in the batch
+     */
+    private int startRecord(byte type) {
+        reserve(RECORD_HEADER + 1);
+        final int mark = batch.position();
+        batch.position(mark + RECORD_HEADER);
+        batch.put(type);
+        return mark;
+    }
+
+    /**
+     * Puts a varint to the batch
+     * @param value non negative number
+     */
+    private void putVarint(int value) {
+        reserve(TreeFormat.MAX_VARINT_SIZE);
+        TreeFormat.putVarint(batch, value);
+    }
+
+    /**
+     * Puts a path to the batch
+     * @param path positions of children on the path from the root
+     */
+    private void putPath(int[] path) {
+        putVarint(path.length);
+        for (int index : path) {
+            putVarint(index);
+        }
+    }
+
+    /**
+     * Puts a value and its length to the batch
+     * @param value supplied value
+     */
+    private void putValue(T value) {
+        final int size = codec.size(value);
+        putVarint(size);
+        reserve(size);
+        codec.encode(value, batch);
+    }
+
+    /**
+     * Performs supplied modification of the tree, the started record is dropped if it fails
+     * @param mark position of the record in the batch
+     * @param modification modification of the tree
+     * @param <R> the type of the result
+     * @return result of the modification
+     */
+    private <R> R apply(int mark, Supplier<R> modification) {
+        try {
+            return modification.get();
+        } catch (RuntimeException e) {
+            batch.position(mark);
+            throw e;
+        }
+    }
+
+    /**
+     * Completes a record by its header
+     * @param mark position of the record in the batch
+     * @return sequence number of the record
+     */
+    private long endRecord(int mark) {
+        final int length = batch.position() - mark - RECORD_HEADER;
+        checksum.reset();
+        checksum.update(batch.array(), mark + RECORD_HEADER, length);
+        batch.putInt(mark, length).putInt(mark + 4, (int) checksum.getValue());
+        batchSize = batch.position();
+        journalSize += RECORD_HEADER + length;
+        return ++appended;
+    }
+
+    /**
+     * Drops supplied record if the modification did not change the tree
+     * @param mark position of the record in the batch
+     */
+    private void dropRecord(int mark) {
+        batch.position(mark);
+    }
+
+    /**
+     * Makes supplied record durable according to the sync policy and starts a compaction if the journal is large
+     * @param sequence sequence number of the record
+     * @throws UncheckedIOException if the journal can not be written
+     */
+    private void commit(long sequence) {
+        try {
+            if (syncPolicy == SyncPolicy.ALWAYS) {
+                flush(sequence, true);
+            } else if (batchSize >= BATCH_FLUSH_SIZE) {
+                flush(sequence, false);
+            }
+            if (compactionThreshold > 0 && journalSize >= compactionThreshold) {
+                compact();
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the batch to the current segment if supplied record is not written yet. Concurrent callers
+     * wait for the monitor and find their records written by the first of them
+     * @param sequence sequence number of the record
+     * @param force whether the record must be forced to the device
+     * @throws IOException if the segment can not be written
+     */
+    private void flush(long sequence, boolean force) throws IOException {
+        synchronized (flushLock) {
+            if ((force ? durable : written) >= sequence || !channel.isOpen()) {
+                return;
+            }
+            final ByteBuffer full;
+            final long last;
+            lock.lock();
+            try {
+                full = batch;
+                batch = spare;
+                batchSize = 0;
+                last = appended;
+            } finally {
+                lock.unlock();
+            }
+            spare = write(channel, full);
+            written = last;
+            if (force && durable < last) {
+                channel.force(false);
+                durable = last;
+            }
+        }
+    }
+
+    /**
+     * Writes supplied batch to supplied segment
+     * @param segment channel of the segment
+     * @param full batch of records
+     * @return cleared batch to be reused
+     * @throws IOException if the segment can not be written
+     */
+    private static ByteBuffer write(FileChannel segment, ByteBuffer full) throws IOException {
+        full.flip();
+        while (full.hasRemaining()) {
+            segment.write(full);
+        }
+        full.clear();
+        return full.capacity() > BATCH_FLUSH_SIZE ? ByteBuffer.allocate(BATCH_SIZE) : full;
+    }
+
+    /**
+     * Writes the batch by the background thread
+     */
+    private void flushInBackground() {
+        try {
+            flush(Long.MAX_VALUE, syncPolicy == SyncPolicy.PERIODIC);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Forces all records appended so far to the device
+     * @throws IOException if the journal can not be written
+     */
+    public void sync() throws IOException {
+        flush(Long.MAX_VALUE, true);
+    }
+
+    /**
+     * Compacts the journal into a new snapshot. Appended records are forced to the current segment,
+     * a new segment is started and a snapshot of the tree is taken in constant time, then the snapshot
+     * is written by a background thread and older segments are deleted. Modifications go on meanwhile
+     * @return future completed when the snapshot is in place, the running one if a compaction is in progress
+     * @throws IOException if the new segment can not be started
+     */
+    public CompletableFuture<Void> compact() throws IOException {
+        synchronized (flushLock) {
+            if (compaction != null) {
+                return compaction;
+            }
+            if (closed) {
+                throw new IllegalStateException("Journal of the tree is closed");
+            }
+            final long next = segment + 1;
+            final FileChannel nextChannel = FileChannel.open(segmentPath(directory, next),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            syncDirectory(directory);
+
+            final ByteBuffer full;
+            final long last;
+            final Tree<T> snapshot;
+            lock.lock();
+            try {
+                full = batch;
+                batch = spare;
+                batchSize = 0;
+                journalSize = 0;
+                last = appended;
+                snapshot = tree.snapshot();
+            } finally {
+                lock.unlock();
+            }
+
+            final FileChannel previous = channel;
+            channel = nextChannel;
+            segment = next;
+            try {
+                spare = write(previous, full);
+                previous.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                previous.close();
+            }
+            written = last;
+            durable = last;
+
+            final CompletableFuture<Void> result = new CompletableFuture<>();
+            compaction = result;
+            executor.execute(() -> {
+                try {
+                    writeSnapshot(directory, snapshot, codec, next, lock);
+                    for (long number : listSegments(directory)) {
+                        if (number < next) {
+                            Files.deleteIfExists(segmentPath(directory, number));
+                        }
+                    }
+                    result.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    synchronized (flushLock) {
+                        compaction = null;
+                    }
+                }
+            });
+            return result;
+        }
+    }
+
+    /**
+     * Closes the journal. A running compaction is awaited, appended records are written and forced.
+     * The tree can be read but not modified afterwards
+     * @throws IOException if the journal can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        final CompletableFuture<Void> running;
+        synchronized (flushLock) {
+            if (closed) {
+                return;
+            }
+            lock.lock();
+            try {
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            running = compaction;
+        }
+        executor.shutdown();
+        if (running != null) {
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                // the previous snapshot and segments are kept, recovery replays them
+            }
+        }
+        synchronized (flushLock) {
+            try {
+                flush(Long.MAX_VALUE, true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * @see Tree#size()
+     * @return
+     */
+    @Override
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * @see Tree#contains(Object, Item)
+     * @param value element to test
+     * @param parent node from witch start
+     * @return
+     */
+    @Override
+    public boolean contains(T value, Item<T> parent) {
+        return tree.contains(value, parent);
+    }
+
+    /**
+     * @see Tree#clear(Item)
+     * @param parent supplied node
+     */
+    @Override
+    public void clear(Item<T> parent) {
+        final long sequence;
+        lock.lock();
+        try {
+            checkWritable();
+            int[] path = pathOf(parent);
+            if (path == null) {
+                tree.clear(parent);
+                return;
+            }
+            int mark = startRecord(CLEAR);
+            putPath(path);
+            apply(mark, () -> {
+                tree.clear(parent);
+                return null;
+            });
+            sequence = endRecord(mark);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+    }
+
+    /**
+     * @see Tree#toArray(Object[], Item, IterationStrategy)
+     * @param typeRef type marker. A new array of the same runtime type is allocated for this purpose
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public T[] toArray(T[] typeRef, Item<T> parent, IterationStrategy strategy) {
+        return tree.toArray(typeRef, parent, strategy);
+    }
+
+    /**
+     * @see Tree#toArray(IntFunction, Item, IterationStrategy)
+     * @param generator function allocating an array of requested length
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public T[] toArray(IntFunction<T[]> generator, Item<T> parent, IterationStrategy strategy) {
+        return tree.toArray(generator, parent, strategy);
+    }
+
+    /**
+     * @see Tree#toArray(Item, IterationStrategy)
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return
+     */
+    @Override
+    public Object[] toArray(Item<T> parent, IterationStrategy strategy) {
+        return tree.toArray(parent, strategy);
+    }
+
+    /**
+     * @see Tree#add(Object, Item)
+     * @param value
+     * @param parent parent to which add
+     * @return
+     */
+    @Override
+    public Item<T> add(T value, Item<T> parent) {
+        final long sequence;
+        final Item<T> added;
+        lock.lock();
+        try {
+            checkWritable();
+            int[] path = pathOf(parent);
+            if (path == null) {
+                return tree.add(value, parent);
+            }
+            int mark = startRecord(ADD);
+            putPath(path);
+            putValue(value);
+            added = apply(mark, () -> tree.add(value, parent));
+            sequence = endRecord(mark);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return added;
+    }
+
+    /**
+     * @see Tree#remove(Object, Item)
+     * @param value
+     * @param parent removed element
+     * @return
+     */
+    @Override
+    public Item<T> remove(T value, Item<T> parent) {
+        final long sequence;
+        final Item<T> removed;
+        lock.lock();
+        try {
+            checkWritable();
+            int[] path = pathOf(parent);
+            if (path == null) {
+                return tree.remove(value, parent);
+            }
+            int mark = startRecord(REMOVE);
+            putPath(path);
+            putValue(value);
+            removed = apply(mark, () -> tree.remove(value, parent));
+            if (removed == null) {
+                dropRecord(mark);
+                return null;
+            }
+            sequence = endRecord(mark);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return removed;
+    }
+
+    /**
+     * @see Tree#getRoot()
+     * @return
+     */
+    @Override
+    public Item<T> getRoot() {
+        return tree.getRoot();
+    }
+
+    /**
+     * @see Tree#getChildren(Item)
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public Collection<Item<T>> getChildren(Item<T> item) {
+        return tree.getChildren(item);
+    }
+
+    /**
+     * @see Tree#get(Item)
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public T get(Item<T> item) {
+        return tree.get(item);
+    }
+
+    /**
+     * @see Tree#set(Object, Item)
+     * @param value specified value
+     * @param item specified node
+     * @return
+     */
+    @Override
+    public Item<T> set(T value, Item<T> item) {
+        final long sequence;
+        final Item<T> result;
+        lock.lock();
+        try {
+            checkWritable();
+            int[] path = pathOf(item);
+            if (path == null) {
+                return tree.set(value, item);
+            }
+            int mark = startRecord(SET);
+            putPath(path);
+            putValue(value);
+            result = apply(mark, () -> tree.set(value, item));
+            sequence = endRecord(mark);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return result;
+    }
+
+    /**
+     * @see Tree#hasChildren(Item)
+     * @param item <tt>true</tt> if root
+     * @return
+     */
+    @Override
+    public boolean hasChildren(Item<T> item) {
+        return tree.hasChildren(item);
+    }
+
+    /**
+     * @see Tree#isRoot(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public boolean isRoot(Item<T> item) {
+        return tree.isRoot(item);
+    }
+
+    /**
+     * @see Tree#getParent(Item)
+     * @param item item to test
+     * @return
+     */
+    @Override
+    public Item<T> getParent(Item<T> item) {
+        return tree.getParent(item);
+    }
+
+    /**
+     * Sets parent of supplied node. Moving a node within the tree, detaching it and attaching a detached
+     * subtree are recorded, the attached subtree is recorded with all its nodes
+     * @see Tree#setParent(Item, Item)
+     * @param item node to set parent
+     * @param parent parent to set
+     * @return
+     * @throws UnsupportedOperationException if the node is the root of the tree
+     */
+    @Override
+    public Item<T> setParent(Item<T> item, Item<T> parent) {
+        final long sequence;
+        final Item<T> result;
+        lock.lock();
+        try {
+            checkWritable();
+            if (tree.getParent(item) == parent) {
+                return parent;
+            }
+            if (item == tree.getRoot()) {
+                throw new UnsupportedOperationException("Root of a journaled tree can not be moved");
+            }
+            int[] path = pathOf(item);
+            int[] target = pathOf(parent);
+            if (path == null && target == null) {
+                return tree.setParent(item, parent);
+            }
+
+            int mark;
+            if (path != null && target != null) {
+                mark = startRecord(MOVE);
+                putPath(path);
+                putPath(target);
+            } else if (path != null) {
+                mark = startRecord(DETACH);
+                putPath(path);
+            } else {
+                mark = startRecord(GRAFT);
+                putPath(target);
+                putVarint(item.size());
+                TreeFormat.forEachPreOrder(tree, item, node -> {
+                    putVarint(tree.getChildren(node).size());
+                    putValue(tree.get(node));
+                }, null);
+            }
+            result = apply(mark, () -> tree.setParent(item, parent));
+            sequence = endRecord(mark);
+        } finally {
+            lock.unlock();
+        }
+        commit(sequence);
+        return result;
+    }
+
+    /**
+     * @see Tree#isAncestorOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return
+     */
+    @Override
+    public boolean isAncestorOf(Item<T> first, Item<T> second) {
+        return tree.isAncestorOf(first, second);
+    }
+
+    /**
+     * @see Tree#depth(Item)
+     * @param item supplied node
+     * @return
+     */
+    @Override
+    public int depth(Item<T> item) {
+        return tree.depth(item);
+    }
+
+    /**
+     * @see GeneralTree#hashCode()
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        return tree.hashCode();
+    }
+
+    /**
+     * @see GeneralTree#equals(Object)
+     * @param that
+     * @return
+     */
+    @Override
+    public boolean equals(Object that) {
+        return that == this || tree.equals(that instanceof JournaledTree ? ((JournaledTree<?>) that).tree : that);
+    }
+
+    /**
+     * @see Tree#findChild(Object, Item)
+     * @param value value that suppose to be find
+     * @param parent node from which start search
+     * @return
+     */
+    @Override
+    public Item<T> findChild(T value, Item<T> parent) {
+        return tree.findChild(value, parent);
+    }
+
+    /**
+     * Returns a copy of the subtree, which is not journaled
+     * @see Tree#subTree(Item)
+     * @param parent root node of subtree
+     * @return
+     */
+    @Override
+    public Tree<T> subTree(Item<T> parent) {
+        return tree.subTree(parent);
+    }
+
+    /**
+     * @see Tree#parallelFilterFrom(IterationStrategy, Item, Predicate)
+     * @param strategy iteration strategy according to which a tree will be traversed
+     * @param parent starting from this node
+     * @param predicate predicate to test elements
+     * @return
+     */
+    @Override
+    public Collection<T> parallelFilterFrom(IterationStrategy strategy, Item<T> parent,
+                                            Predicate<? super T> predicate) {
+        return tree.parallelFilterFrom(strategy, parent, predicate);
+    }
+
+    /**
+     * @see Tree#aggregate(Item, Object, Function, BinaryOperator)
+     * @param parent starting from this node
+     * @param identity identity value of the combiner
+     * @param mapper function mapping an element to a partial result
+     * @param combiner function combining partial results
+     * @param <U> the type of the result
+     * @return
+     */
+    @Override
+    public <U> U aggregate(Item<T> parent, U identity, Function<? super T, ? extends U> mapper,
+                           BinaryOperator<U> combiner) {
+        return tree.aggregate(parent, identity, mapper, combiner);
+    }
+
+    /**
+     * Returns iterator of the tree, whose <tt>remove()</tt> is journaled
+     * @see Tree#iterator(IterationStrategy, Item)
+     * @param strategy iteration strategy
+     * @param item starting from this node
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Iterator<T> iterator(IterationStrategy strategy, Item<T> item) {
+        return new JournaledIterator((GeneralTree<T>.AbstractTreeIterator) tree.iterator(strategy, item));
+    }
+
+    /**
+     * @see Tree#spliterator(Item)
+     * @param parent starting from this node
+     * @return
+     */
+    @Override
+    public Spliterator<T> spliterator(Item<T> parent) {
+        return tree.spliterator(parent);
+    }
+
+    /**
+     * Iterator of the tree recording removal of the subtree starting from the last returned element
+     */
+    private class JournaledIterator implements Iterator<T> {
+
+        /**
+         * iterator of the tree
+         */
+        private final GeneralTree<T>.AbstractTreeIterator it;
+
+        /**
+         * constructor with iterator of the tree
+         * @param it iterator of the tree
+         */
+        JournaledIterator(GeneralTree<T>.AbstractTreeIterator it) {
+            this.it = it;
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public T next() {
+            return it.next();
+        }
+
+        /**
+         * @see Iterator#remove()
+         */
+        @Override
+        public void remove() {
+            final long sequence;
+            lock.lock();
+            try {
+                checkWritable();
+                int[] path = pathOf(it.getCurrentItem());
+                if (path == null) {
+                    it.remove();
+                    return;
+                }
+                int mark = startRecord(DETACH);
+                putPath(path);
+                apply(mark, () -> {
+                    it.remove();
+                    return null;
+                });
+                sequence = endRecord(mark);
+            } finally {
+                lock.unlock();
+            }
+            commit(sequence);
+        }
+    }
+
+    /**
+     * Codec of values which may be <tt>null</tt>, a value is preceded by a byte telling whether it is present
+     * @param <T> the type of values
+     */
+    private static final class NullableCodec<T> implements ValueCodec<T> {
+
+        /**
+         * codec of present values
+         */
+        private final ValueCodec<T> codec;
+
+        /**
+         * constructor with codec of present values
+         * @param codec codec of present values
+         */
+        NullableCodec(ValueCodec<T> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public int width() {
+            return VARIABLE;
+        }
+
+        @Override
+        public int size(T value) {
+            return value == null ? 1 : 1 + codec.size(value);
+        }
+
+        @Override
+        public void encode(T value, ByteBuffer buffer) {
+            buffer.put((byte) (value == null ? 0 : 1));
+            if (value != null) {
+                codec.encode(value, buffer);
+            }
+        }
+
+        @Override
+        public T decode(ByteBuffer buffer) {
+            return buffer.get() == 0 ? null : codec.decode(buffer);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.globallogic.test.tree;
+
+import com.globallogic.test.tree.Tree.IterationStrategy;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Tree of <tt>long</tt> values. Values are kept in nodes as primitives and are read by
+ * primitive iterators, predicates and arrays, so traversals, searches and filters do not box
+ */
+public class LongTree extends PrimitiveTree<LongTree.Node> {
+
+    /**
+     * Node of LongTree
+     */
+    public static final class Node extends PrimitiveTree.Item<Node> {
+
+        /**
+         * Node value
+         */
+        private long value;
+
+        /**
+         * constructor with node value
+         * @param value node value
+         */
+        Node(long value) {
+            this.value = value;
+        }
+
+        /**
+         * @see Object#toString()
+         * @return
+         */
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * constructor with root value and deep first pre order as default iteration strategy
+     * @param rootValue value of the root
+     */
+    public LongTree(long rootValue) {
+        this(rootValue, IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    /**
+     * constructor with root value and default iteration strategy
+     * @param rootValue value of the root
+     * @param strategy default iteration strategy
+     */
+    public LongTree(long rootValue, IterationStrategy strategy) {
+        super(new Node(rootValue), strategy);
+    }
+
+    /**
+     * Add child of particular parent
+     * @param value element to be added
+     * @param parent parent to which add
+     * @return added node
+     */
+    public Node add(long value, Node parent) {
+        return attach(new Node(value), parent);
+    }
+
+    /**
+     * Remove child of particular parent
+     * @param value element to be removed
+     * @param parent parent from which remove
+     * @return removed node, <tt>null</tt> if parent has no child with supplied value
+     */
+    public Node remove(long value, Node parent) {
+        for (Node child : parent.children) {
+            if (child.value == value) {
+                return detach(child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get node value
+     * @param item specified node
+     * @return specified node value
+     */
+    public long get(Node item) {
+        return item.value;
+    }
+
+    /**
+     * set node value
+     * @param value specified value
+     * @param item specified node
+     * @return node that has been updated
+     */
+    public Node set(long value, Node item) {
+        item.value = value;
+        return item;
+    }
+
+    /**
+     * Returns <tt>true</tt> if tree contains the specified element
+     * @param value element to test
+     * @return <tt>true</tt> if tree contains the specified element
+     */
+    public boolean contains(long value) {
+        return contains(value, root);
+    }
+
+    /**
+     * Returns <tt>true</tt> if tree contains the specified element starting from supplied node
+     * @param value element to test
+     * @param parent node from witch start
+     * @return <tt>true</tt> if tree contains the specified element starting from supplied node
+     */
+    public boolean contains(long value, Node parent) {
+        return findChild(value, parent) != null;
+    }
+
+    /**
+     * Finds node with supplied value according to default iteration strategy
+     * @param value value that suppose to be find
+     * @param parent node from which start search
+     * @return found node, <tt>null</tt> if there is no such node
+     */
+    public Node findChild(long value, Node parent) {
+        Iterator<Node> it = nodes(defaultIterationStrategy, parent);
+        while (it.hasNext()) {
+            Node curr = it.next();
+            if (curr.value == value) {
+                return curr;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this tree according to default iteration strategy
+     * @return an array containing the elements of this tree
+     */
+    public long[] toArray() {
+        return toArray(root, defaultIterationStrategy);
+    }
+
+    /**
+     * Returns an array containing all of the elements in this tree according to supplied iteration strategy
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return an array containing the elements of this tree
+     */
+    public long[] toArray(IterationStrategy strategy) {
+        return toArray(root, strategy);
+    }
+
+    /**
+     * Returns an array containing all of the elements starting from supplied node
+     * according to supplied iteration strategy
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return an array containing the elements
+     */
+    public long[] toArray(Node parent, IterationStrategy strategy) {
+        final long[] result = new long[parent.count];
+        Iterator<Node> it = nodes(strategy, parent);
+        for (int i = 0; it.hasNext(); i++) {
+            result[i] = it.next().value;
+        }
+        return result;
+    }
+
+    /**
+     * Returns elements of this tree matching supplied predicate according to default iteration strategy
+     * @param predicate predicate to test
+     * @return an array containing matching elements
+     */
+    public long[] filter(LongPredicate predicate) {
+        return filterFrom(root, predicate);
+    }
+
+    /**
+     * Returns elements starting from supplied node matching supplied predicate
+     * according to default iteration strategy
+     * @param parent node from which to start
+     * @param predicate predicate to test
+     * @return an array containing matching elements
+     */
+    public long[] filterFrom(Node parent, LongPredicate predicate) {
+        long[] result = new long[Math.min(parent.count, 16)];
+        int size = 0;
+        Iterator<Node> it = nodes(defaultIterationStrategy, parent);
+        while (it.hasNext()) {
+            long curr = it.next().value;
+            if (predicate.test(curr)) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, Math.min(parent.count, size << 1));
+                }
+                result[size++] = curr;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Returns an iterator over elements of this tree according to default iteration strategy
+     * @return an iterator over elements
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return iterator(defaultIterationStrategy, root);
+    }
+
+    /**
+     * Returns an iterator over elements of this tree according to supplied iteration strategy
+     * @param strategy supplied strategy
+     * @return an iterator over elements
+     */
+    public PrimitiveIterator.OfLong iterator(IterationStrategy strategy) {
+        return iterator(strategy, root);
+    }
+
+    /**
+     * Returns an iterator over elements starting from supplied node according to supplied iteration strategy
+     * @param strategy supplied strategy
+     * @param item supplied node
+     * @return an iterator over elements
+     */
+    public PrimitiveIterator.OfLong iterator(IterationStrategy strategy, Node item) {
+        final Iterator<Node> nodes = nodes(strategy, item);
+        return new PrimitiveIterator.OfLong() {
+
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                return nodes.next().value;
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream over elements of this tree according to default iteration strategy
+     * @return a stream over elements
+     */
+    public LongStream stream() {
+        return StreamSupport.longStream(
+                Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED), false);
+    }
+
+    /**
+     * @see Object#toString()
+     * @return
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,596 @@
+package com.globallogic.test.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of Tree that keeps nodes in a memory-mapped file, so the tree may be larger than the heap.
+ * Nodes are laid out in deep first pre order, see {@link AbstractPreOrderTree}, and every traversal reads
+ * columns of the mapping directly. Values are stored through a {@link ValueCodec} and decoded on access.
+ * <p>
+ * The file consists of a header, a column of parent positions, a column of subtree sizes,
+ * a column of value offsets for codecs of variable width, and the values. Opening a file only checks
+ * the header and maps the columns. The tree is read only, the mapping is released when the tree is garbage collected
+ * @param <T> the type of elements in this tree
+ */
+public class MappedTree<T> extends AbstractPreOrderTree<T> {
+
+    /**
+     * first bytes of a file of mapped tree
+     */
+    private static final int MAGIC = 0x54524545;
+
+    /**
+     * version of file layout
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * number of bytes of the header
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * number of bytes of a chunk of staged values written to the file at once
+     */
+    private static final int STAGE_SIZE = 1 << 16;
+
+    /**
+     * number of nodes
+     */
+    private final int count;
+
+    /**
+     * codec of values
+     */
+    private final ValueCodec<T> codec;
+
+    /**
+     * width of encoded values, {@link ValueCodec#VARIABLE} if offsets of values are stored
+     */
+    private final int width;
+
+    /**
+     * positions of parents, 4 bytes each
+     */
+    private final Region parents;
+
+    /**
+     * subtree sizes, 4 bytes each
+     */
+    private final Region sizes;
+
+    /**
+     * offsets of values in the value region, 8 bytes each, one more than nodes; <tt>null</tt> for fixed width
+     */
+    private final Region offsets;
+
+    /**
+     * encoded values
+     */
+    private final Region values;
+
+    /**
+     * Region of a file mapped by chunks, since a single mapping can not exceed 2GB.
+     * Chunks are aligned to 8 bytes, so a column entry never crosses a chunk boundary
+     */
+    private static final class Region {
+
+        /**
+         * binary logarithm of the chunk size
+         */
+        private static final int CHUNK_SHIFT = 30;
+
+        /**
+         * mask of position inside a chunk
+         */
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+        /**
+         * mapped chunks
+         */
+        private final MappedByteBuffer[] chunks;
+
+        /**
+         * constructor mapping supplied range of the file
+         * @param channel channel of the file
+         * @param mode mapping mode
+         * @param start position of the region in the file
+         * @param length number of bytes of the region
+         * @throws IOException if the file can not be mapped
+         */
+        Region(FileChannel channel, FileChannel.MapMode mode, long start, long length) throws IOException {
+            chunks = new MappedByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(mode, start + offset, Math.min(length - offset, CHUNK_MASK + 1));
+            }
+        }
+
+        /**
+         * Returns the chunk containing supplied position
+         * @param position position in the region
+         * @return chunk containing the position
+         */
+        private MappedByteBuffer chunk(long position) {
+            return chunks[(int) (position >>> CHUNK_SHIFT)];
+        }
+
+        /**
+         * Reads an int at supplied position
+         * @param position position in the region
+         * @return the int
+         */
+        int getInt(long position) {
+            return chunk(position).getInt((int) (position & CHUNK_MASK));
+        }
+
+        /**
+         * Writes an int at supplied position
+         * @param position position in the region
+         * @param value the int
+         */
+        void putInt(long position, int value) {
+            chunk(position).putInt((int) (position & CHUNK_MASK), value);
+        }
+
+        /**
+         * Reads a long at supplied position
+         * @param position position in the region
+         * @return the long
+         */
+        long getLong(long position) {
+            return chunk(position).getLong((int) (position & CHUNK_MASK));
+        }
+
+        /**
+         * Writes a long at supplied position
+         * @param position position in the region
+         * @param value the long
+         */
+        void putLong(long position, long value) {
+            chunk(position).putLong((int) (position & CHUNK_MASK), value);
+        }
+
+        /**
+         * Returns a buffer positioned at supplied range and limited by its end.
+         * The buffer shares the mapping, unless the range crosses a chunk boundary and has to be copied
+         * @param position position of the range in the region
+         * @param length number of bytes of the range
+         * @return buffer over the range
+         */
+        ByteBuffer slice(long position, int length) {
+            int offset = (int) (position & CHUNK_MASK);
+            ByteBuffer chunk = chunk(position);
+            if (offset + length <= chunk.capacity()) {
+                ByteBuffer result = chunk.duplicate();
+                result.limit(offset + length);
+                result.position(offset);
+                return result;
+            }
+
+            ByteBuffer result = ByteBuffer.allocate(length);
+            while (result.hasRemaining()) {
+                ByteBuffer part = chunk(position).duplicate();
+                part.position((int) (position & CHUNK_MASK));
+                part.limit(Math.min(part.capacity(), part.position() + result.remaining()));
+                position += part.remaining();
+                result.put(part);
+            }
+            result.flip();
+            return result;
+        }
+
+        /**
+         * Forces changes of the region to the storage
+         */
+        void force() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+    }
+
+    /**
+     * constructor mapping columns of an opened file
+     * @param channel channel of the file
+     * @param codec codec of values
+     * @param strategy default iteration strategy
+     * @throws IOException if the file is not a file of mapped tree or can not be mapped
+     */
+    private MappedTree(FileChannel channel, ValueCodec<T> codec, IterationStrategy strategy) throws IOException {
+        super(strategy);
+        this.codec = codec;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // read till the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            throw new IOException("File is not a file of mapped tree");
+        }
+        if (header.getInt(4) != FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported format version %d", header.getInt(4)));
+        }
+        count = header.getInt(8);
+        width = header.getInt(12);
+        if (width != codec.width()) {
+            throw new IllegalArgumentException(String.format("Values of width %d can not be read by codec of width %d",
+                    width, codec.width()));
+        }
+        long valuesLength = header.getLong(16);
+
+        long position = HEADER_SIZE;
+        parents = new Region(channel, FileChannel.MapMode.READ_ONLY, position, (long) count << 2);
+        position += (long) count << 2;
+        sizes = new Region(channel, FileChannel.MapMode.READ_ONLY, position, (long) count << 2);
+        position = align(position + ((long) count << 2));
+        if (width == ValueCodec.VARIABLE) {
+            offsets = new Region(channel, FileChannel.MapMode.READ_ONLY, position, (long) (count + 1) << 3);
+            position += (long) (count + 1) << 3;
+        } else {
+            offsets = null;
+        }
+        if (channel.size() != position + valuesLength) {
+            throw new IOException(String.format("File of mapped tree has %d bytes instead of %d",
+                    channel.size(), position + valuesLength));
+        }
+        values = new Region(channel, FileChannel.MapMode.READ_ONLY, position, valuesLength);
+    }
+
+    /**
+     * Opens a file of mapped tree with deep first pre order as default iteration strategy
+     * @see #open(Path, ValueCodec, IterationStrategy)
+     * @param file file of mapped tree
+     * @param codec codec of values
+     * @param <T> the type of elements
+     * @return tree over the file
+     * @throws IOException if the file is not a file of mapped tree or can not be mapped
+     */
+    public static <T> MappedTree<T> open(Path file, ValueCodec<T> codec) throws IOException {
+        return open(file, codec, IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    /**
+     * Opens a file of mapped tree. Only the header is read, the rest of the file is mapped
+     * and paged in by traversals
+     * @param file file of mapped tree
+     * @param codec codec of values, must have the width of the codec the file was written with
+     * @param strategy default iteration strategy
+     * @param <T> the type of elements
+     * @return tree over the file
+     * @throws IOException if the file is not a file of mapped tree or can not be mapped
+     */
+    public static <T> MappedTree<T> open(Path file, ValueCodec<T> codec, IterationStrategy strategy)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedTree<>(channel, codec, strategy);
+        }
+    }
+
+    /**
+     * Writes supplied tree to a file of mapped tree and opens it.
+     * Columns are written through a writable mapping, values are staged and appended to the file,
+     * the header is written last, so an interrupted write leaves a file that can not be opened
+     * @param file file to write, replaced if exists
+     * @param source tree to write, must not be modified while being written
+     * @param codec codec of values
+     * @param <T> the type of elements
+     * @return tree over the written file
+     * @throws IOException if the file can not be written
+     */
+    public static <T> MappedTree<T> create(Path file, Tree<T> source, ValueCodec<T> codec) throws IOException {
+        final int count = source.getRoot() == null ? 0 : source.size();
+        try (Writer<T> writer = new Writer<>(file, count, codec)) {
+            final int written = layout(source, (index, parent, value) -> {
+                if (index == count) {
+                    throw new ConcurrentModificationException();
+                }
+                writer.putParent(index, parent);
+                writer.putValue(index, value);
+            });
+            if (written != count) {
+                throw new ConcurrentModificationException();
+            }
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return open(file, codec);
+    }
+
+    /**
+     * Writes a tree of supplied number of nodes laid out in deep first pre order to a file of mapped tree
+     * and opens it. Numbers of children of all of the nodes are taken first and values are taken after them
+     * in the same order, like by {@link GeneralTree#fromPreOrder(int, IntSupplier, Supplier)}. Parents are written
+     * to the column as numbers of children arrive and values are staged to the file, so neither a tree
+     * nor an intermediate collection is built
+     * @param file file to write, replaced if exists
+     * @param n number of nodes
+     * @param childCounts supplier of the number of children of the next node
+     * @param values supplier of the value of the next node
+     * @param codec codec of values
+     * @param <T> the type of elements
+     * @return tree over the written file
+     * @throws IOException if the file can not be written
+     * @throws IllegalArgumentException if the numbers of children do not describe a single tree of n nodes
+     */
+    public static <T> MappedTree<T> create(Path file, int n, IntSupplier childCounts, Supplier<? extends T> values,
+                                           ValueCodec<T> codec) throws IOException {
+        try (Writer<T> writer = new Writer<>(file, n, codec)) {
+            int[] open = new int[16];
+            int[] remaining = new int[16];
+            int depth = 0;
+            for (int i = 0; i < n; i++) {
+                int childCount = childCounts.getAsInt();
+                if (childCount < 0) {
+                    throw new IllegalArgumentException(String.format("Node %d has %d children", i, childCount));
+                }
+                if (i == 0) {
+                    writer.putParent(i, NO_NODE);
+                } else if (depth == 0) {
+                    throw new IllegalArgumentException(String.format("Node %d follows the last node of the tree", i));
+                } else {
+                    writer.putParent(i, open[depth - 1]);
+                    remaining[depth - 1]--;
+                }
+
+                if (childCount > 0) {
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth << 1);
+                        remaining = Arrays.copyOf(remaining, depth << 1);
+                    }
+                    open[depth] = i;
+                    remaining[depth++] = childCount;
+                } else {
+                    while (depth > 0 && remaining[depth - 1] == 0) {
+                        depth--;
+                    }
+                }
+            }
+            if (depth != 0) {
+                throw new IllegalArgumentException(String.format("%d nodes still expect children", depth));
+            }
+
+            for (int i = 0; i < n; i++) {
+                writer.putValue(i, values.get());
+            }
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return open(file, codec);
+    }
+
+    /**
+     * Writer of a file of mapped tree. Parents and values of nodes are put in pre order, the columns of
+     * parents, sizes and offsets are written through a writable mapping, values are staged and appended
+     * to the file. Subtree sizes are summed and the header is written when the writer is finished
+     * @param <T> the type of elements
+     */
+    private static final class Writer<T> implements Closeable {
+
+        /**
+         * channel of the file
+         */
+        private final FileChannel channel;
+
+        /**
+         * codec of values
+         */
+        private final ValueCodec<T> codec;
+
+        /**
+         * number of nodes
+         */
+        private final int count;
+
+        /**
+         * position of the column of sizes in the file
+         */
+        private final long sizesStart;
+
+        /**
+         * position of the column of offsets in the file
+         */
+        private final long offsetsStart;
+
+        /**
+         * position of values in the file
+         */
+        private final long valuesStart;
+
+        /**
+         * writable mapping of the header and the columns
+         */
+        private final Region columns;
+
+        /**
+         * number of bytes of values written or staged
+         */
+        private long valuesLength;
+
+        /**
+         * staged values
+         */
+        private ByteBuffer stage = ByteBuffer.allocate(STAGE_SIZE);
+
+        /**
+         * constructor creating the file and mapping its columns
+         * @param file file to write, replaced if exists
+         * @param count number of nodes
+         * @param codec codec of values
+         * @throws IOException if the file can not be created or mapped
+         */
+        Writer(Path file, int count, ValueCodec<T> codec) throws IOException {
+            this.codec = codec;
+            this.count = count;
+            sizesStart = HEADER_SIZE + ((long) count << 2);
+            offsetsStart = align(sizesStart + ((long) count << 2));
+            valuesStart = codec.width() == ValueCodec.VARIABLE ? offsetsStart + ((long) (count + 1) << 3) : offsetsStart;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                columns = new Region(channel, FileChannel.MapMode.READ_WRITE, 0, valuesStart);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Writes position of the parent of the node at supplied position, the size of the node is set to one
+         * @param index position of the node
+         * @param parent position of the parent, {@link #NO_NODE} for the root
+         */
+        void putParent(int index, int parent) {
+            columns.putInt(HEADER_SIZE + ((long) index << 2), parent);
+            columns.putInt(sizesStart + ((long) index << 2), 1);
+        }
+
+        /**
+         * Stages value of the node at supplied position, values are put in the order of positions
+         * @param index position of the node
+         * @param value value of the node
+         * @throws UncheckedIOException if staged values can not be written
+         */
+        void putValue(int index, T value) {
+            if (codec.width() == ValueCodec.VARIABLE) {
+                columns.putLong(offsetsStart + ((long) index << 3), valuesLength);
+            }
+
+            int size = codec.size(value);
+            if (stage.remaining() < size) {
+                flush(channel, stage, valuesStart + valuesLength - stage.position());
+                if (stage.capacity() < size) {
+                    stage = ByteBuffer.allocate(size);
+                }
+            }
+            codec.encode(value, stage);
+            valuesLength += size;
+        }
+
+        /**
+         * Writes the rest of staged values, sums subtree sizes from the last node to the first,
+         * forces the columns and writes the header
+         * @throws IOException if the file can not be written
+         */
+        void finish() throws IOException {
+            flush(channel, stage, valuesStart + valuesLength - stage.position());
+            if (codec.width() == ValueCodec.VARIABLE) {
+                columns.putLong(offsetsStart + ((long) count << 3), valuesLength);
+            }
+            for (int i = count - 1; i > 0; i--) {
+                long parentSize = sizesStart + ((long) columns.getInt(HEADER_SIZE + ((long) i << 2)) << 2);
+                columns.putInt(parentSize, columns.getInt(parentSize) + columns.getInt(sizesStart + ((long) i << 2)));
+            }
+            columns.force();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(count).putInt(codec.width()).putLong(valuesLength);
+            header.clear();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        /**
+         * Closes the file, the columns stay mapped until they are garbage collected
+         * @throws IOException if the file can not be closed
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes staged values to supplied position of the file and clears the stage
+     * @param channel channel of the file
+     * @param stage staged values
+     * @param position position of the first staged value in the file
+     */
+    private static void flush(FileChannel channel, ByteBuffer stage, long position) {
+        stage.flip();
+        try {
+            while (stage.hasRemaining()) {
+                position += channel.write(stage, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        stage.clear();
+    }
+
+    /**
+     * Rounds supplied position up to 8 bytes
+     * @param position position in the file
+     * @return aligned position
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * @see Tree#size()
+     * @return
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @see AbstractPreOrderTree#parentAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    int parentAt(int index) {
+        return parents.getInt((long) index << 2);
+    }
+
+    /**
+     * @see AbstractPreOrderTree#sizeAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    int sizeAt(int index) {
+        return sizes.getInt((long) index << 2);
+    }
+
+    /**
+     * @see AbstractPreOrderTree#valueAt(int)
+     * @param index position of the node
+     * @return
+     */
+    @Override
+    T valueAt(int index) {
+        if (width == ValueCodec.VARIABLE) {
+            long offset = offsets.getLong((long) index << 3);
+            return codec.decode(values.slice(offset, (int) (offsets.getLong((long) (index + 1) << 3) - offset)));
+        }
+        return codec.decode(values.slice((long) index * width, width));
+    }
+
+    /**
+     * @see AbstractPreOrderTree#setValueAt(int, Object)
+     * @param index position of the node
+     * @param value new value
+     */
+    @Override
+    void setValueAt(int index, T value) {
+        throw new UnsupportedOperationException("Memory-mapped tree can not be modified");
+    }
+}
@@ -0,0 +1,331 @@
+package com.globallogic.test.tree;
+
+import com.globallogic.test.tree.Tree.IterationStrategy;
+
+import java.util.*;
+
+/**
+ * Skeleton of trees that keep primitive values in their nodes.
+ * The structure of nodes and the traversals over nodes are shared, subclasses add a value field to nodes
+ * and expose values through primitive iterators, predicates and arrays, so values are never boxed
+ * @param <N> the type of nodes of this tree
+ */
+public abstract class PrimitiveTree<N extends PrimitiveTree.Item<N>> {
+
+    /**
+     * Node of a tree with a primitive value
+     * @param <N> the type of nodes of the tree
+     */
+    public abstract static class Item<N extends Item<N>> {
+
+        /**
+         * List of children
+         */
+        final List<N> children = new ArrayList<>();
+
+        /**
+         * Parent of this node
+         */
+        N parent;
+
+        /**
+         * Number of nodes in the subtree starting from this node, including this node.
+         * Kept up to date along the ancestor path by structural modifications
+         */
+        int count = 1;
+
+        /**
+         * Adds supplied delta to the count of this node and its ancestors
+         * @param delta number of added or removed nodes
+         */
+        void adjustCount(int delta) {
+            for (Item<N> node = this; node != null; node = node.parent) {
+                node.count += delta;
+            }
+        }
+    }
+
+    /**
+     * root of this tree
+     */
+    final N root;
+
+    /**
+     * default iteration strategy
+     */
+    protected final IterationStrategy defaultIterationStrategy;
+
+    /**
+     * constructor with root and default iteration strategy
+     * @param root root of this tree
+     * @param strategy default iteration strategy
+     */
+    protected PrimitiveTree(N root, IterationStrategy strategy) {
+        this.root = root;
+        this.defaultIterationStrategy = strategy;
+    }
+
+    /**
+     * Returns the number of elements in tree
+     * @return the number of elements in tree
+     */
+    public int size() {
+        return root.count;
+    }
+
+    /**
+     * Returns the number of elements in the subtree starting from supplied node
+     * @param item supplied node
+     * @return the number of elements starting from supplied node
+     */
+    public int size(N item) {
+        return item.count;
+    }
+
+    /**
+     * Get the root of this tree
+     * @return root of this tree
+     */
+    public N getRoot() {
+        return root;
+    }
+
+    /**
+     * Get children of supplied node
+     * @param item supplied node
+     * @return unmodifiable list of children of supplied node
+     */
+    public List<N> getChildren(N item) {
+        return Collections.unmodifiableList(item.children);
+    }
+
+    /**
+     * Returns parent node of specified node in tree
+     * @param item item to test
+     * @return parent node of specified node, <tt>null</tt> for the root
+     */
+    public N getParent(N item) {
+        return item.parent;
+    }
+
+    /**
+     * Checks whether node is a root node in tree
+     * @param item item to test
+     * @return <tt>true</tt> if root
+     */
+    public boolean isRoot(N item) {
+        return item.parent == null;
+    }
+
+    /**
+     * Checks whether node has children
+     * @param item item to test
+     * @return <tt>true</tt> if node has children
+     */
+    public boolean hasChildren(N item) {
+        return !item.children.isEmpty();
+    }
+
+    /**
+     * Removes all of the descendants of supplied node
+     * @param parent supplied node
+     */
+    public void clear(N parent) {
+        for (N child : parent.children) {
+            child.parent = null;
+        }
+        parent.children.clear();
+        parent.adjustCount(1 - parent.count);
+    }
+
+    /**
+     * Adds supplied node as the last child of supplied parent
+     * @param item node to add
+     * @param parent parent to which add
+     * @return added node
+     */
+    N attach(N item, N parent) {
+        item.parent = parent;
+        parent.children.add(item);
+        parent.adjustCount(item.count);
+        return item;
+    }
+
+    /**
+     * Removes supplied node with its subtree from its parent
+     * @param item node to remove
+     * @return removed node
+     */
+    N detach(N item) {
+        N parent = item.parent;
+        parent.children.remove(item);
+        parent.adjustCount(-item.count);
+        item.parent = null;
+        return item;
+    }
+
+    /**
+     * Returns an iterator over the nodes of the subtree starting from supplied node
+     * @param strategy supplied strategy
+     * @param item supplied node
+     * @return iterator over nodes
+     */
+    Iterator<N> nodes(IterationStrategy strategy, N item) {
+        if (IterationStrategy.DEPTH_FIRST_PRE.equals(strategy)) {
+            return new PreOrderIterator(item);
+        } else if (IterationStrategy.DEPTH_FIRST_POST.equals(strategy)) {
+            return new PostOrderIterator(item);
+        } else if (IterationStrategy.BREATH_FIRST.equals(strategy)) {
+            return new BreathFirstIterator(item);
+        } else {
+            throw new IllegalArgumentException(String.format("%s: no such enum constant for enum %s",
+                    strategy, IterationStrategy.class.getName()));
+        }
+    }
+
+    /**
+     * Iterator over nodes according to deep first pre order iteration strategy
+     */
+    private class PreOrderIterator implements Iterator<N> {
+
+        /**
+         * stack for storing nodes during iteration
+         */
+        private final Deque<N> stack = new ArrayDeque<>();
+
+        /**
+         * constructor with node from which start an iteration
+         * @param item node from which start an iteration
+         */
+        PreOrderIterator(N item) {
+            stack.add(item);
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public N next() {
+            N curr = stack.pollLast();
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            for (int i = curr.children.size() - 1; i >= 0; i--) {
+                stack.add(curr.children.get(i));
+            }
+            return curr;
+        }
+    }
+
+    /**
+     * Iterator over nodes according to deep first post order iteration strategy.
+     * The path from the start node is kept with the index of the next child to visit at every level
+     */
+    private class PostOrderIterator implements Iterator<N> {
+
+        /**
+         * nodes of the current path
+         */
+        private final Deque<N> path = new ArrayDeque<>();
+
+        /**
+         * index of the next child to visit for every node of the path
+         */
+        private int[] cursors = new int[16];
+
+        /**
+         * constructor with node from which start an iteration
+         * @param item node from which start an iteration
+         */
+        PostOrderIterator(N item) {
+            path.add(item);
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public N next() {
+            N curr = path.peekLast();
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            int depth = path.size() - 1;
+            while (cursors[depth] < curr.children.size()) {
+                curr = curr.children.get(cursors[depth]++);
+                path.add(curr);
+                if (++depth == cursors.length) {
+                    cursors = Arrays.copyOf(cursors, depth << 1);
+                }
+                cursors[depth] = 0;
+            }
+            path.pollLast();
+            return curr;
+        }
+    }
+
+    /**
+     * Iterator over nodes according to breath first iteration strategy
+     */
+    private class BreathFirstIterator implements Iterator<N> {
+
+        /**
+         * queue for storing nodes during iteration
+         */
+        private final Queue<N> queue = new ArrayDeque<>();
+
+        /**
+         * constructor with node from which start an iteration
+         * @param item node from which start an iteration
+         */
+        BreathFirstIterator(N item) {
+            queue.add(item);
+        }
+
+        /**
+         * @see Iterator#hasNext()
+         * @return
+         */
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        /**
+         * @see Iterator#next()
+         * @return
+         */
+        @Override
+        public N next() {
+            N curr = queue.poll();
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            queue.addAll(curr.children);
+            return curr;
+        }
+    }
+}
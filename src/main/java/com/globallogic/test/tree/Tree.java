@@ -2,7 +2,13 @@ package com.globallogic.test.tree;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Hierarchical tree structure, with a root value and subtrees
@@ -62,12 +68,22 @@ public interface Tree<T> extends Iterable<T> {
         /**
          * Returns an array containing all of the elements in this list in
          * proper sequence according to supplied iteration strategy
-         * @param typeRef type marker. A new array of the same runtime type is allocated for this purpose
+         * @param typeRef the array into which the elements are stored, if it is big enough.
+         * Otherwise a new array of the same runtime type is allocated for this purpose
          * @param strategy iteration strategy according to which a tree will be traversed when creating an array
          * @return an array containing the elements of this tree
          */
         abstract T[] toArray(T[] typeRef, IterationStrategy strategy);
 
+        /**
+         * Returns an array containing all of the elements in this list in
+         * proper sequence according to supplied iteration strategy
+         * @param generator function allocating an array of requested length
+         * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+         * @return an array containing the elements of this tree
+         */
+        abstract T[] toArray(IntFunction<T[]> generator, IterationStrategy strategy);
+
         /**
          * Returns an array containing all of the elements in this list in
          * proper sequence according to supplied iteration strategy
@@ -211,14 +227,26 @@ public interface Tree<T> extends Iterable<T> {
 
     /**
      * Returns an array containing all of the elements in this tree in
-     * proper sequence according to supplied iteration strategy
-     * @param typeRef type marker. A new array of the same runtime type is allocated for this purpose
+     * proper sequence according to supplied iteration strategy.
+     * If the supplied array has more room than needed, the element following the last one is set to <tt>null</tt>
+     * @param typeRef the array into which the elements are stored, if it is big enough.
+     * Otherwise a new array of the same runtime type is allocated for this purpose
      * @param parent starting from this node
      * @param strategy iteration strategy according to which a tree will be traversed when creating an array
      * @return an array containing the elements of this tree
      */
     T[] toArray(T[] typeRef, Item<T> parent, IterationStrategy strategy);
 
+    /**
+     * Returns an array containing all of the elements in this tree in
+     * proper sequence according to supplied iteration strategy
+     * @param generator function allocating an array of requested length, e.g. <tt>String[]::new</tt>
+     * @param parent starting from this node
+     * @param strategy iteration strategy according to which a tree will be traversed when creating an array
+     * @return an array containing the elements of this tree
+     */
+    T[] toArray(IntFunction<T[]> generator, Item<T> parent, IterationStrategy strategy);
+
     /**
      * Returns an array containing all of the elements in this tree in
      * proper sequence according to supplied iteration strategy
@@ -325,6 +353,31 @@ public interface Tree<T> extends Iterable<T> {
      */
     boolean isChildOf(Item<T> first, Item<T> second);
 
+    /**
+     * Check whether first node is an ancestor of second, that is second node is in the subtree
+     * starting from first node and is not first node itself
+     * @param first first
+     * @param second second
+     * @return <tt>true</tt> if first node is an ancestor of second. <tt>false</tt> otherwise
+     */
+    boolean isAncestorOf(Item<T> first, Item<T> second);
+
+    /**
+     * Check whether first node is a descendant of second
+     * @see #isAncestorOf(Item, Item)
+     * @param first first
+     * @param second second
+     * @return <tt>true</tt> if first node is a descendant of second. <tt>false</tt> otherwise
+     */
+    boolean isDescendantOf(Item<T> first, Item<T> second);
+
+    /**
+     * Returns number of edges on the path to supplied node from the topmost node above it
+     * @param item supplied node
+     * @return depth of the node, 0 for the root
+     */
+    int depth(Item<T> item);
+
     /**
      * Creates a deep copy of tree starting from supplied node
      * @param parent root node of subtree
@@ -347,6 +400,66 @@ public interface Tree<T> extends Iterable<T> {
      */
     Collection<T> filterFrom(Item<T> parent, Predicate<? super T> predicate);
 
+    /**
+     * Returns a collection of elements that matches supplied predicate starting from specified parent.
+     * A node whose value does not match supplied subtree predicate is skipped together with its descendants
+     * without reading them, so the work is proportional to the visited part of the subtree
+     * @param parent node from which to start
+     * @param predicate predicate to test
+     * @param subtreePredicate predicate telling whether the subtree starting from a node may contain matching elements
+     * @return a collection of elements that matches supplied predicate in the order of default iteration strategy
+     */
+    Collection<T> filterFrom(Item<T> parent, Predicate<? super T> predicate, Predicate<? super T> subtreePredicate);
+
+    /**
+     * Walks the subtree starting from specified parent in the order of default iteration strategy
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return <tt>false</tt> if the visitor terminated the walk, <tt>true</tt> otherwise
+     */
+    boolean walk(Item<T> parent, TreeVisitor<T> visitor);
+
+    /**
+     * Walks the subtree starting from specified parent in the order of supplied iteration strategy.
+     * Results of the visitor skip subtrees or terminate the walk, see {@link TreeVisitor}
+     * @param strategy iteration strategy
+     * @param parent node from which to start
+     * @param visitor visitor of nodes
+     * @return <tt>false</tt> if the visitor terminated the walk, <tt>true</tt> otherwise
+     */
+    boolean walk(IterationStrategy strategy, Item<T> parent, TreeVisitor<T> visitor);
+
+    /**
+     * Returns a collection of elements that matches supplied predicate starting from specified parent.
+     * Subtrees are tested in parallel, the result is ordered according to default iteration strategy
+     * @param parent node from which to start
+     * @param predicate predicate to test, must be safe to call from several threads
+     * @return a collection of elements that matches supplied predicate starting from specified parent
+     */
+    Collection<T> parallelFilterFrom(Item<T> parent, Predicate<? super T> predicate);
+
+    /**
+     * Returns a collection of elements that matches supplied predicate starting from specified parent.
+     * Subtrees are tested in parallel, the result is ordered according to supplied iteration strategy
+     * @param strategy iteration strategy that defines order of the result
+     * @param parent node from which to start
+     * @param predicate predicate to test, must be safe to call from several threads
+     * @return a collection of elements that matches supplied predicate starting from specified parent
+     */
+    Collection<T> parallelFilterFrom(IterationStrategy strategy, Item<T> parent, Predicate<? super T> predicate);
+
+    /**
+     * Maps every element starting from specified parent and combines the results, subtrees are processed in parallel.
+     * Results are combined in deep first pre order, so combiner has to be associative but need not be commutative
+     * @param parent node from which to start
+     * @param identity identity value for combiner
+     * @param mapper function applied to every element
+     * @param combiner associative function combining two results
+     * @param <U> the type of the result
+     * @return combined result
+     */
+    <U> U aggregate(Item<T> parent, U identity, Function<? super T, ? extends U> mapper, BinaryOperator<U> combiner);
+
     /**
      * Returns an iterator over the elements in this tree in proper sequence
      * according to default iteration strategy starting from root
@@ -384,6 +497,37 @@ public interface Tree<T> extends Iterable<T> {
      */
     Iterator<T> iterator(IterationStrategy strategy, Item<T> item);
 
+    /**
+     * Creates a spliterator over the elements in this tree starting from root
+     * @return a spliterator over the elements in this tree
+     */
+    @Override
+    Spliterator<T> spliterator();
+
+    /**
+     * Creates a spliterator over the elements in this tree starting from specified node.
+     * Elements are encountered in the order of default iteration strategy
+     * @param parent supplied node
+     * @return a spliterator over the elements in this tree starting from specified node
+     */
+    Spliterator<T> spliterator(Item<T> parent);
+
+    /**
+     * Returns a sequential stream of the elements in this tree starting from root
+     * @return a sequential stream of the elements in this tree
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel stream of the elements in this tree starting from root
+     * @return a possibly parallel stream of the elements in this tree
+     */
+    default Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     /**
      * @see Object#equals(Object)
      * @param o object to be compared
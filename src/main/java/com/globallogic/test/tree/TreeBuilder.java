@@ -0,0 +1,160 @@
+package com.globallogic.test.tree;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Builder of GeneralTree from (id, parentId, value) records supplied in any order.
+ * Records are buffered in primitive arrays, ids are resolved to positions by sorting,
+ * so children of a node are ordered by their ids regardless of the order of records
+ * @param <T> the type of elements in the tree
+ */
+public class TreeBuilder<T> {
+
+    /**
+     * parent id of the root record
+     */
+    public static final long NO_PARENT = Long.MIN_VALUE;
+
+    /**
+     * default number of records the builder has room for
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * ids of records
+     */
+    private long[] ids;
+
+    /**
+     * parent ids of records
+     */
+    private long[] parentIds;
+
+    /**
+     * values of records
+     */
+    private Object[] values;
+
+    /**
+     * number of records
+     */
+    private int size;
+
+    /**
+     * Default constructor for TreeBuilder
+     */
+    public TreeBuilder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * constructor for TreeBuilder with expected number of records
+     * @param expectedSize expected number of records
+     */
+    public TreeBuilder(int expectedSize) {
+        int capacity = Math.max(1, expectedSize);
+        ids = new long[capacity];
+        parentIds = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Adds a record of a node
+     * @param id id of the node
+     * @param parentId id of the parent, {@link #NO_PARENT} for the root
+     * @param value value of the node
+     * @return this builder
+     */
+    public TreeBuilder<T> add(long id, long parentId, T value) {
+        if (size == ids.length) {
+            int capacity = size + (size >> 1) + 1;
+            ids = Arrays.copyOf(ids, capacity);
+            parentIds = Arrays.copyOf(parentIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        ids[size] = id;
+        parentIds[size] = parentId;
+        values[size] = value;
+        size++;
+        return this;
+    }
+
+    /**
+     * Builds a tree from added records
+     * @see #build(boolean)
+     * @return new tree instance
+     */
+    public GeneralTree<T> build() {
+        return build(false);
+    }
+
+    /**
+     * Builds a tree from added records. Ids are sorted, a node is placed at the position of its id
+     * in sorted ids and its parent is found by binary search
+     * @param parallel <tt>true</tt> if ids should be sorted and resolved and nodes allocated in parallel
+     * @return new tree instance
+     * @throws IllegalArgumentException if an id is duplicated, a parent id is unknown
+     * or records do not describe a single tree
+     */
+    @SuppressWarnings("unchecked")
+    public GeneralTree<T> build(boolean parallel) {
+        final Object[] orderedValues = new Object[size];
+        final int[] parentIdx = resolve(orderedValues, parallel);
+        return GeneralTree.fromParentArray((T[]) orderedValues, parentIdx, parallel);
+    }
+
+    /**
+     * Builds a compact tree from added records. The columns of the tree are filled from resolved
+     * positions directly, no node objects are created
+     * @see #build(boolean)
+     * @return new tree instance
+     * @throws IllegalArgumentException if an id is duplicated, a parent id is unknown
+     * or records do not describe a single tree
+     */
+    @SuppressWarnings("unchecked")
+    public CompactTree<T> buildCompact() {
+        final Object[] orderedValues = new Object[size];
+        final int[] parentIdx = resolve(orderedValues, false);
+        return CompactTree.fromParentArray((T[]) orderedValues, parentIdx);
+    }
+
+    /**
+     * Sorts ids and places values of records at the positions of their ids
+     * @param orderedValues array receiving values by position
+     * @param parallel <tt>true</tt> if ids should be sorted and resolved in parallel
+     * @return position of the parent of every position, <tt>-1</tt> for the root
+     * @throws IllegalArgumentException if an id is duplicated or a parent id is unknown
+     */
+    private int[] resolve(Object[] orderedValues, boolean parallel) {
+        final long[] sorted = Arrays.copyOf(ids, size);
+        if (parallel) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+        for (int i = 1; i < size; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException(String.format("Duplicate id %d", sorted[i]));
+            }
+        }
+
+        final int[] parentIdx = new int[size];
+        IntStream records = IntStream.range(0, size);
+        (parallel ? records.parallel() : records).forEach(i -> {
+            int position = Arrays.binarySearch(sorted, ids[i]);
+            orderedValues[position] = values[i];
+            if (parentIds[i] == NO_PARENT) {
+                parentIdx[position] = -1;
+            } else {
+                int parentPosition = Arrays.binarySearch(sorted, parentIds[i]);
+                if (parentPosition < 0) {
+                    throw new IllegalArgumentException(String.format("Node %d has unknown parent id %d",
+                            ids[i], parentIds[i]));
+                }
+                parentIdx[position] = parentPosition;
+            }
+        });
+        return parentIdx;
+    }
+}
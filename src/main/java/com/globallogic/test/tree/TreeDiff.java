@@ -0,0 +1,894 @@
+package com.globallogic.test.tree;
+
+import com.globallogic.test.tree.Tree.Item;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Difference of two trees as an edit script.
+ * <p>
+ * The script turns the source tree into the target tree by inserting leaves, deleting subtrees, moving subtrees
+ * and relabeling nodes, see {@link Edit}. Nodes are addressed by paths, positions of children on the way
+ * from the root, which are resolved against the tree as it is after the preceding edits, so a script
+ * can be shipped to and applied to any copy of the source tree. Subtrees are compared by 64 bit structural hashes,
+ * see {@link GeneralTree#subtreeHash(Item)}, and subtrees with equal hashes, sizes and values of their roots
+ * are not entered. Hashes of general trees are cached in nodes, so diffing a general tree against its modified
+ * copy visits only the modified paths, their siblings and the inserted and deleted subtrees. Hashes of other trees
+ * are computed once per diff. Values enter hashes by their hash codes, so subtrees that differ only
+ * by values with equal hash codes below their roots are considered equal.
+ * <p>
+ * Children of a pair of matched nodes are matched in order by equal hashes and then by equal values.
+ * A subtree left unmatched at one place and an equal subtree left unmatched at another place become a move,
+ * remaining children are paired by position and relabeled, the rest is deleted or inserted.
+ * The script is not guaranteed to be the shortest one, finding it takes quadratic time
+ */
+public final class TreeDiff {
+
+    private TreeDiff() {
+    }
+
+    /**
+     * Operation of an edit script. Paths are resolved against the tree as it is after the preceding edits.
+     * Paths are not copied and must not be modified
+     * @param <T> the type of elements
+     */
+    public static final class Edit<T> {
+
+        /**
+         * Type of an edit
+         */
+        public enum Type {
+
+            /**
+             * inserts a leaf with the value at the index among children of the node at the parent path,
+             * creates the root of an empty tree if the parent path is <tt>null</tt>
+             */
+            INSERT,
+
+            /**
+             * deletes the subtree starting from the node at the path
+             */
+            DELETE,
+
+            /**
+             * moves the subtree starting from the node at the path to the index among children of the node
+             * at the parent path, both paths are resolved before the move
+             */
+            MOVE,
+
+            /**
+             * sets the value of the node at the path
+             */
+            RELABEL
+        }
+
+        /**
+         * type of this edit
+         */
+        private final Type type;
+
+        /**
+         * path of the edited node, <tt>null</tt> for insertion
+         */
+        private final int[] path;
+
+        /**
+         * path of the new parent for insertion and move, <tt>null</tt> otherwise
+         */
+        private final int[] parentPath;
+
+        /**
+         * position among children of the new parent after insertion and move
+         */
+        private final int index;
+
+        /**
+         * value for insertion and relabeling
+         */
+        private final T value;
+
+        /**
+         * all arguments constructor
+         * @param type type of the edit
+         * @param path path of the edited node
+         * @param parentPath path of the new parent
+         * @param index position among children of the new parent
+         * @param value new value
+         */
+        private Edit(Type type, int[] path, int[] parentPath, int index, T value) {
+            this.type = type;
+            this.path = path;
+            this.parentPath = parentPath;
+            this.index = index;
+            this.value = value;
+        }
+
+        /**
+         * Creates an insertion of a leaf
+         * @param parentPath path of the parent, <tt>null</tt> to create the root of an empty tree
+         * @param index position of the leaf among children of the parent
+         * @param value value of the leaf
+         * @param <T> the type of elements
+         * @return new edit
+         */
+        public static <T> Edit<T> insert(int[] parentPath, int index, T value) {
+            return new Edit<>(Type.INSERT, null, parentPath, index, value);
+        }
+
+        /**
+         * Creates a deletion of a subtree
+         * @param path path of the root of the subtree, empty to make the tree empty
+         * @param <T> the type of elements
+         * @return new edit
+         */
+        public static <T> Edit<T> delete(int[] path) {
+            return new Edit<>(Type.DELETE, path, null, 0, null);
+        }
+
+        /**
+         * Creates a move of a subtree
+         * @param path path of the root of the subtree
+         * @param parentPath path of the new parent
+         * @param index position of the subtree among children of the new parent after the move
+         * @param <T> the type of elements
+         * @return new edit
+         */
+        public static <T> Edit<T> move(int[] path, int[] parentPath, int index) {
+            return new Edit<>(Type.MOVE, path, parentPath, index, null);
+        }
+
+        /**
+         * Creates a relabeling of a node
+         * @param path path of the node
+         * @param value new value
+         * @param <T> the type of elements
+         * @return new edit
+         */
+        public static <T> Edit<T> relabel(int[] path, T value) {
+            return new Edit<>(Type.RELABEL, path, null, 0, value);
+        }
+
+        /**
+         * Returns type of this edit
+         * @return type of this edit
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Returns path of the edited node
+         * @return path of the edited node, <tt>null</tt> for insertion
+         */
+        public int[] getPath() {
+            return path;
+        }
+
+        /**
+         * Returns path of the new parent
+         * @return path of the new parent for insertion and move, <tt>null</tt> otherwise
+         * and for insertion of the root
+         */
+        public int[] getParentPath() {
+            return parentPath;
+        }
+
+        /**
+         * Returns position among children of the new parent
+         * @return position after insertion and move
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the new value
+         * @return value for insertion and relabeling
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @see Object#equals(Object)
+         * @param o
+         * @return
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Edit<?> edit = (Edit<?>) o;
+            return type == edit.type && index == edit.index && Arrays.equals(path, edit.path)
+                    && Arrays.equals(parentPath, edit.parentPath) && Objects.equals(value, edit.value);
+        }
+
+        /**
+         * @see Object#hashCode()
+         * @return
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, Arrays.hashCode(path), Arrays.hashCode(parentPath), index, value);
+        }
+
+        /**
+         * @see Object#toString()
+         * @return
+         */
+        @Override
+        public String toString() {
+            switch (type) {
+                case INSERT:
+                    return String.format("INSERT %s to %s at %d", value, Arrays.toString(parentPath), index);
+                case DELETE:
+                    return String.format("DELETE %s", Arrays.toString(path));
+                case MOVE:
+                    return String.format("MOVE %s to %s at %d", Arrays.toString(path), Arrays.toString(parentPath), index);
+                default:
+                    return String.format("RELABEL %s to %s", Arrays.toString(path), value);
+            }
+        }
+    }
+
+    /**
+     * Returns an edit script turning supplied source tree into supplied target tree
+     * @param source source tree
+     * @param target target tree
+     * @param <T> the type of elements
+     * @return edits in the order of application, empty if the trees have equal values in equal shape
+     */
+    public static <T> List<Edit<T>> diff(Tree<T> source, Tree<T> target) {
+        final Item<T> sourceRoot = source.getRoot() == null || source.isEmpty() ? null : source.getRoot();
+        final Item<T> targetRoot = target.getRoot() == null || target.isEmpty() ? null : target.getRoot();
+        if (sourceRoot == null && targetRoot == null) {
+            return Collections.emptyList();
+        }
+        if (targetRoot == null) {
+            return Collections.singletonList(Edit.delete(new int[0]));
+        }
+        return new Differ<>(source, target).diff(sourceRoot, targetRoot);
+    }
+
+    /**
+     * Applies supplied edit script to supplied tree. Edits are applied one by one, if an edit fails
+     * the preceding edits stay applied
+     * @see #diff(Tree, Tree)
+     * @param tree tree to modify, the source tree of the script or its copy
+     * @param script edits in the order of application
+     * @param <T> the type of elements
+     * @throws IllegalArgumentException if a path does not lead to a node or the tree does not match the script
+     */
+    public static <T> void apply(GeneralTree<T> tree, List<Edit<T>> script) {
+        for (Edit<T> edit : script) {
+            switch (edit.getType()) {
+                case INSERT:
+                    if (edit.getParentPath() == null) {
+                        if (tree.getRoot() != null && !tree.isEmpty()) {
+                            throw new IllegalArgumentException("Root can not be inserted to a tree that is not empty");
+                        }
+                        tree.setRoot(tree.newNode(edit.getValue()));
+                    } else {
+                        Item<T> parent = resolve(tree, edit.getParentPath());
+                        checkIndex(edit, edit.getIndex() <= parent.getChildren().size());
+                        tree.add(edit.getValue(), parent, edit.getIndex());
+                    }
+                    break;
+                case DELETE:
+                    Item<T> deleted = resolve(tree, edit.getPath());
+                    if (deleted == tree.getRoot()) {
+                        tree.setRoot(null);
+                    } else {
+                        tree.clear(deleted);
+                    }
+                    break;
+                case MOVE:
+                    Item<T> moved = resolve(tree, edit.getPath());
+                    Item<T> parent = resolve(tree, edit.getParentPath());
+                    int bound = parent.getChildren().size() - (moved.getParent() == parent ? 1 : 0);
+                    checkIndex(edit, edit.getIndex() <= bound);
+                    tree.setParent(moved, parent, edit.getIndex());
+                    break;
+                case RELABEL:
+                    tree.set(edit.getValue(), resolve(tree, edit.getPath()));
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown edit %s", edit));
+            }
+        }
+    }
+
+    /**
+     * Returns the node of supplied tree at supplied path
+     * @param tree supplied tree
+     * @param path positions of children on the way from the root
+     * @param <T> the type of elements
+     * @return node at the path
+     * @throws IllegalArgumentException if there is no node at the path
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Item<T> resolve(GeneralTree<T> tree, int[] path) {
+        if (tree.getRoot() == null || tree.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No node at path %s of an empty tree",
+                    Arrays.toString(path)));
+        }
+        Item<T> item = tree.getRoot();
+        for (int position : path) {
+            final List<Item<T>> children = (List<Item<T>>) item.getChildren();
+            if (position < 0 || position >= children.size()) {
+                throw new IllegalArgumentException(String.format("No node at path %s", Arrays.toString(path)));
+            }
+            item = children.get(position);
+        }
+        return item;
+    }
+
+    /**
+     * Checks the position of an insertion or a move
+     * @param edit checked edit
+     * @param inRange whether the position is not greater than its bound
+     * @throws IllegalArgumentException if the position is out of range
+     */
+    private static void checkIndex(Edit<?> edit, boolean inRange) {
+        if (edit.getIndex() < 0 || !inRange) {
+            throw new IllegalArgumentException(String.format("Position out of range in %s", edit));
+        }
+    }
+
+    /**
+     * 64 bit structural hashes and sizes of subtrees of a tree. Hashes of a general tree are taken from its
+     * cache, hashes of other trees are computed for all nodes at once in deep first post order
+     * @see GeneralTree#subtreeHash(Item)
+     * @param <T> the type of elements
+     */
+    private static final class Subtrees<T> {
+
+        /**
+         * general tree with cached hashes, <tt>null</tt> for other trees
+         */
+        private final GeneralTree<T> general;
+
+        /**
+         * hash and size of every subtree of other trees
+         */
+        private final Map<Item<T>, long[]> computed = new HashMap<>();
+
+        /**
+         * constructor computing hashes of trees other than general trees
+         * @param tree supplied tree
+         */
+        Subtrees(Tree<T> tree) {
+            if (tree instanceof GeneralTree) {
+                general = (GeneralTree<T>) tree;
+                return;
+            }
+
+            // combined like in GeneralTree
+            general = null;
+            final Deque<Item<T>> stack = new ArrayDeque<>();
+            stack.add(tree.getRoot());
+            while (!stack.isEmpty()) {
+                final Item<T> item = stack.peekLast();
+                final Collection<Item<T>> children = tree.getChildren(item);
+                boolean ready = true;
+                for (Item<T> child : children) {
+                    if (!computed.containsKey(child)) {
+                        stack.add(child);
+                        ready = false;
+                    }
+                }
+                if (!ready) {
+                    continue;
+                }
+                stack.pollLast();
+
+                final T value = tree.get(item);
+                long hash = value == null ? 0 : value.hashCode();
+                long count = 1;
+                for (Item<T> child : children) {
+                    long[] subtree = computed.get(child);
+                    hash = 31 * hash + subtree[0];
+                    count += subtree[1];
+                }
+                computed.put(item, new long[] {GeneralTree.mixHash(31 * hash + count), count});
+            }
+        }
+
+        /**
+         * Returns structural hash of the subtree starting from supplied node
+         * @param item supplied node
+         * @return hash of the subtree
+         */
+        long hash(Item<T> item) {
+            return general != null ? general.wideSubtreeHash(item) : computed.get(item)[0];
+        }
+
+        /**
+         * Returns number of nodes in the subtree starting from supplied node
+         * @param item supplied node
+         * @return size of the subtree
+         */
+        int size(Item<T> item) {
+            return general != null ? item.size() : (int) computed.get(item)[1];
+        }
+    }
+
+    /**
+     * Children of a pair of matched nodes left unmatched
+     * @param <T> the type of elements
+     */
+    private static final class Leftovers<T> {
+
+        /**
+         * unmatched children of the source node in their order
+         */
+        final List<Item<T>> sources;
+
+        /**
+         * unmatched children of the target node in their order
+         */
+        final List<Item<T>> targets;
+
+        /**
+         * constructor with unmatched children
+         * @param sources unmatched children of the source node
+         * @param targets unmatched children of the target node
+         */
+        Leftovers(List<Item<T>> sources, List<Item<T>> targets) {
+            this.sources = sources;
+            this.targets = targets;
+        }
+    }
+
+    /**
+     * Position of a node while the script is being built. Positions of source nodes are created when they
+     * are first needed, so only the edited part of the source tree is mirrored
+     * @param <T> the type of elements
+     */
+    private static final class Slot<T> {
+
+        /**
+         * source node, <tt>null</tt> for an inserted node
+         */
+        final Item<T> item;
+
+        /**
+         * current parent
+         */
+        Slot<T> parent;
+
+        /**
+         * current children, <tt>null</tt> while they are the children of the source node
+         */
+        List<Slot<T>> children;
+
+        /**
+         * constructor with source node
+         * @param item source node, <tt>null</tt> for an inserted node
+         * @param parent current parent
+         */
+        Slot(Item<T> item, Slot<T> parent) {
+            this.item = item;
+            this.parent = parent;
+            if (item == null) {
+                children = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * State of a single diff
+     * @param <T> the type of elements
+     */
+    private static final class Differ<T> {
+
+        /**
+         * source tree
+         */
+        private final Tree<T> source;
+
+        /**
+         * target tree
+         */
+        private final Tree<T> target;
+
+        /**
+         * structural hashes of subtrees of the source tree
+         */
+        private final Subtrees<T> sourceSubtrees;
+
+        /**
+         * structural hashes of subtrees of the target tree
+         */
+        private final Subtrees<T> targetSubtrees;
+
+        /**
+         * source nodes matched to target nodes, descendants of matched equal subtrees are not included
+         */
+        private final Map<Item<T>, Item<T>> matches = new HashMap<>();
+
+        /**
+         * unmatched children of matched nodes
+         */
+        private final List<Leftovers<T>> leftovers = new ArrayList<>();
+
+        /**
+         * positions of source nodes
+         */
+        private final Map<Item<T>, Slot<T>> slots = new HashMap<>();
+
+        /**
+         * positions of inserted target nodes
+         */
+        private final Map<Item<T>, Slot<T>> inserted = new HashMap<>();
+
+        /**
+         * built script
+         */
+        private final List<Edit<T>> script = new ArrayList<>();
+
+        /**
+         * constructor with compared trees
+         * @param source source tree
+         * @param target target tree
+         */
+        Differ(Tree<T> source, Tree<T> target) {
+            this.source = source;
+            this.target = target;
+            this.sourceSubtrees = source.getRoot() == null || source.isEmpty() ? null : new Subtrees<>(source);
+            this.targetSubtrees = new Subtrees<>(target);
+        }
+
+        /**
+         * Matches the trees and builds the script
+         * @param sourceRoot root of the source tree, <tt>null</tt> if the source tree is empty
+         * @param targetRoot root of the target tree
+         * @return built script
+         */
+        List<Edit<T>> diff(Item<T> sourceRoot, Item<T> targetRoot) {
+            if (sourceRoot == null) {
+                script.add(Edit.insert(null, 0, target.get(targetRoot)));
+                inserted.put(targetRoot, new Slot<>(null, null));
+            } else {
+                matches.put(targetRoot, sourceRoot);
+                if (identical(sourceRoot, targetRoot)) {
+                    return script;
+                }
+                match(sourceRoot, targetRoot, false);
+                matchMoves();
+                final List<Leftovers<T>> unpaired = new ArrayList<>(leftovers);
+                leftovers.clear();
+                for (Leftovers<T> children : unpaired) {
+                    final int paired = Math.min(children.sources.size(), children.targets.size());
+                    for (int i = 0; i < paired; i++) {
+                        matches.put(children.targets.get(i), children.sources.get(i));
+                        match(children.sources.get(i), children.targets.get(i), true);
+                    }
+                    children.sources.subList(0, paired).clear();
+                    children.targets.subList(0, paired).clear();
+                    leftovers.add(children);
+                }
+                matchMoves();
+            }
+            emit(targetRoot);
+            return script;
+        }
+
+        /**
+         * Checks whether supplied subtrees have equal hashes, a match of hashes is confirmed by equal sizes
+         * of the subtrees and equal values of their roots
+         * @param sourceItem source node
+         * @param targetItem target node
+         * @return <tt>true</tt> if the subtrees are considered equal
+         */
+        private boolean identical(Item<T> sourceItem, Item<T> targetItem) {
+            return sourceSubtrees.hash(sourceItem) == targetSubtrees.hash(targetItem)
+                    && sourceSubtrees.size(sourceItem) == targetSubtrees.size(targetItem)
+                    && Objects.equals(source.get(sourceItem), target.get(targetItem));
+        }
+
+        /**
+         * Removes and returns the first of supplied source candidates with the hash of supplied target node
+         * that is identical to the node
+         * @param candidates source nodes with the hash of the target node, may be <tt>null</tt>
+         * @param targetItem target node
+         * @return identical source node, <tt>null</tt> if there is none
+         */
+        private Item<T> takeIdentical(Deque<Item<T>> candidates, Item<T> targetItem) {
+            if (candidates == null) {
+                return null;
+            }
+            for (Iterator<Item<T>> it = candidates.iterator(); it.hasNext(); ) {
+                final Item<T> candidate = it.next();
+                if (identical(candidate, targetItem)) {
+                    it.remove();
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Matches descendants of supplied matched nodes. Children are matched by equal hashes, then by equal values,
+         * matched children with different hashes are matched further. Children left unmatched are collected
+         * to {@link #leftovers} or, if requested, paired by position first
+         * @param sourceFrom matched source node
+         * @param targetFrom matched target node
+         * @param positional whether unmatched children are paired by position
+         */
+        private void match(Item<T> sourceFrom, Item<T> targetFrom, boolean positional) {
+            final Deque<Item<T>> pending = new ArrayDeque<>();
+            pending.add(sourceFrom);
+            pending.add(targetFrom);
+            while (!pending.isEmpty()) {
+                final Item<T> sourceParent = pending.poll();
+                final Item<T> targetParent = pending.poll();
+                final List<Item<T>> sources = new ArrayList<>(source.getChildren(sourceParent));
+                final Set<Item<T>> used = new HashSet<>();
+
+                final Map<Long, Deque<Item<T>>> byHash = new HashMap<>();
+                for (Item<T> child : sources) {
+                    byHash.computeIfAbsent(sourceSubtrees.hash(child), key -> new ArrayDeque<>()).add(child);
+                }
+                final List<Item<T>> targets = new ArrayList<>();
+                for (Item<T> child : target.getChildren(targetParent)) {
+                    Item<T> matched = takeIdentical(byHash.get(targetSubtrees.hash(child)), child);
+                    if (matched != null) {
+                        used.add(matched);
+                        matches.put(child, matched);
+                    } else {
+                        targets.add(child);
+                    }
+                }
+                if (targets.isEmpty() && used.size() == sources.size()) {
+                    continue;
+                }
+
+                final Map<T, Deque<Item<T>>> byValue = new HashMap<>();
+                for (Item<T> child : sources) {
+                    if (!used.contains(child)) {
+                        byValue.computeIfAbsent(source.get(child), key -> new ArrayDeque<>()).add(child);
+                    }
+                }
+                final List<Item<T>> unmatchedTargets = new ArrayList<>();
+                for (Item<T> child : targets) {
+                    Deque<Item<T>> candidates = byValue.get(target.get(child));
+                    if (candidates != null && !candidates.isEmpty()) {
+                        Item<T> matched = candidates.poll();
+                        used.add(matched);
+                        matches.put(child, matched);
+                        pending.add(matched);
+                        pending.add(child);
+                    } else {
+                        unmatchedTargets.add(child);
+                    }
+                }
+                final List<Item<T>> unmatchedSources = new ArrayList<>();
+                for (Item<T> child : sources) {
+                    if (!used.contains(child)) {
+                        unmatchedSources.add(child);
+                    }
+                }
+
+                int paired = 0;
+                if (positional) {
+                    paired = Math.min(unmatchedSources.size(), unmatchedTargets.size());
+                    for (int i = 0; i < paired; i++) {
+                        matches.put(unmatchedTargets.get(i), unmatchedSources.get(i));
+                        pending.add(unmatchedSources.get(i));
+                        pending.add(unmatchedTargets.get(i));
+                    }
+                }
+                if (unmatchedSources.size() > paired || unmatchedTargets.size() > paired) {
+                    leftovers.add(new Leftovers<>(
+                            new ArrayList<>(unmatchedSources.subList(paired, unmatchedSources.size())),
+                            new ArrayList<>(unmatchedTargets.subList(paired, unmatchedTargets.size()))));
+                }
+            }
+        }
+
+        /**
+         * Matches unmatched target children to identical unmatched source children under other parents
+         */
+        private void matchMoves() {
+            final Map<Long, Deque<Item<T>>> byHash = new HashMap<>();
+            for (Leftovers<T> children : leftovers) {
+                for (Item<T> child : children.sources) {
+                    byHash.computeIfAbsent(sourceSubtrees.hash(child), key -> new ArrayDeque<>()).add(child);
+                }
+            }
+            if (byHash.isEmpty()) {
+                return;
+            }
+            final Set<Item<T>> moved = new HashSet<>();
+            for (Leftovers<T> children : leftovers) {
+                children.targets.removeIf(child -> {
+                    Item<T> matched = takeIdentical(byHash.get(targetSubtrees.hash(child)), child);
+                    if (matched == null) {
+                        return false;
+                    }
+                    moved.add(matched);
+                    matches.put(child, matched);
+                    return true;
+                });
+            }
+            for (Leftovers<T> children : leftovers) {
+                children.sources.removeIf(moved::contains);
+            }
+        }
+
+        /**
+         * Builds the script. Unmatched source subtrees are deleted first, they contain no matched nodes.
+         * Then target nodes are visited in deep first pre order, values of matched nodes are relabeled
+         * and children are placed in target order by moves and insertions. Children that are going to be moved
+         * to other parents are stepped over, so they do not shift the children that stay in place
+         * @param targetRoot root of the target tree
+         */
+        private void emit(Item<T> targetRoot) {
+            for (Leftovers<T> children : leftovers) {
+                for (Item<T> deleted : children.sources) {
+                    Slot<T> slot = slot(deleted);
+                    script.add(Edit.delete(path(slot)));
+                    detach(slot);
+                }
+            }
+
+            final Deque<Item<T>> stack = new ArrayDeque<>();
+            stack.add(targetRoot);
+            while (!stack.isEmpty()) {
+                final Item<T> curr = stack.pollLast();
+                final Item<T> matched = matches.get(curr);
+                final Slot<T> slot;
+                if (matched != null) {
+                    if (identical(matched, curr)) {
+                        continue;
+                    }
+                    slot = slot(matched);
+                    if (!Objects.equals(source.get(matched), target.get(curr))) {
+                        script.add(Edit.relabel(path(slot), target.get(curr)));
+                    }
+                } else {
+                    slot = inserted.get(curr);
+                }
+
+                final List<Item<T>> children = new ArrayList<>(target.getChildren(curr));
+                final Set<Slot<T>> staying = new HashSet<>();
+                for (Item<T> child : children) {
+                    Item<T> childMatched = matches.get(child);
+                    if (childMatched != null) {
+                        staying.add(slot(childMatched));
+                    }
+                }
+                final List<Slot<T>> placed = children(slot);
+                int at = 0;
+                for (Item<T> child : children) {
+                    final Item<T> childMatched = matches.get(child);
+                    if (childMatched == null) {
+                        script.add(Edit.insert(path(slot), at, target.get(child)));
+                        Slot<T> created = new Slot<>(null, slot);
+                        placed.add(at++, created);
+                        inserted.put(child, created);
+                        continue;
+                    }
+                    final Slot<T> childSlot = slot(childMatched);
+                    while (at < placed.size() && placed.get(at) != childSlot && !staying.contains(placed.get(at))) {
+                        at++;
+                    }
+                    if (at < placed.size() && placed.get(at) == childSlot) {
+                        at++;
+                        continue;
+                    }
+                    script.add(Edit.move(path(childSlot), path(slot), at));
+                    detach(childSlot);
+                    childSlot.parent = slot;
+                    placed.add(at++, childSlot);
+                }
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.add(children.get(i));
+                }
+            }
+        }
+
+        /**
+         * Returns the position of supplied source node, creating positions of the node and of its ancestors
+         * that have none yet
+         * @param item source node
+         * @return position of the node
+         */
+        private Slot<T> slot(Item<T> item) {
+            Slot<T> result = slots.get(item);
+            if (result != null) {
+                return result;
+            }
+            final Deque<Item<T>> missing = new ArrayDeque<>();
+            Slot<T> parent = null;
+            for (Item<T> curr = item; curr != null; curr = source.getParent(curr)) {
+                parent = slots.get(curr);
+                if (parent != null) {
+                    break;
+                }
+                missing.add(curr);
+            }
+            while (!missing.isEmpty()) {
+                Item<T> curr = missing.pollLast();
+                parent = new Slot<>(curr, parent);
+                slots.put(curr, parent);
+            }
+            return parent;
+        }
+
+        /**
+         * Returns current children of supplied position, taking children of its source node on the first call
+         * @param slot supplied position
+         * @return modifiable list of children
+         */
+        private List<Slot<T>> children(Slot<T> slot) {
+            if (slot.children == null) {
+                final Collection<Item<T>> children = source.getChildren(slot.item);
+                slot.children = new ArrayList<>(children.size());
+                for (Item<T> child : children) {
+                    Slot<T> childSlot = slots.get(child);
+                    if (childSlot == null) {
+                        childSlot = new Slot<>(child, slot);
+                        slots.put(child, childSlot);
+                    }
+                    slot.children.add(childSlot);
+                }
+            }
+            return slot.children;
+        }
+
+        /**
+         * Removes supplied position from children of its current parent
+         * @param slot supplied position
+         */
+        private void detach(Slot<T> slot) {
+            children(slot.parent).remove(indexOf(slot));
+            slot.parent = null;
+        }
+
+        /**
+         * Returns the current index of supplied position among children of its parent
+         * @param slot supplied position, not the root
+         * @return index among children
+         */
+        private int indexOf(Slot<T> slot) {
+            final List<Slot<T>> siblings = children(slot.parent);
+            for (int i = 0; i < siblings.size(); i++) {
+                if (siblings.get(i) == slot) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Position is not a child of its parent");
+        }
+
+        /**
+         * Returns the current path of supplied position
+         * @param slot supplied position
+         * @return positions of children on the way from the root
+         */
+        private int[] path(Slot<T> slot) {
+            int depth = 0;
+            for (Slot<T> curr = slot; curr.parent != null; curr = curr.parent) {
+                depth++;
+            }
+            final int[] result = new int[depth];
+            for (Slot<T> curr = slot; curr.parent != null; curr = curr.parent) {
+                result[--depth] = indexOf(curr);
+            }
+            return result;
+        }
+    }
+}
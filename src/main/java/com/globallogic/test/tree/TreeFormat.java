@@ -0,0 +1,399 @@
+package com.globallogic.test.tree;
+
+import com.globallogic.test.tree.Tree.Item;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary format of trees.
+ * <p>
+ * A tree is written as a header, the structure section and the value section. The header consists of
+ * the magic int, the version byte, the width of the value codec as an int and the number of nodes as a varint.
+ * The structure section keeps the number of children of every node in deep first pre order as a varint.
+ * The value section keeps values in the same order encoded by a {@link ValueCodec}, values of variable width
+ * are preceded by their length as a varint. Varints are little endian groups of 7 bits, other numbers are big endian
+ */
+public final class TreeFormat {
+
+    /**
+     * first bytes of a tree in binary format
+     */
+    static final int MAGIC = 0x54524246;
+
+    /**
+     * version of the format
+     */
+    static final byte FORMAT_VERSION = 1;
+
+    /**
+     * number of bytes buffered by streaming writer and reader
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * maximal number of bytes of a varint of an int
+     */
+    static final int MAX_VARINT_SIZE = 5;
+
+    /**
+     * number of nodes visited between releasing and acquiring again the lock guarding a tree being written
+     */
+    private static final int LOCK_BATCH = 1024;
+
+    private TreeFormat() {
+    }
+
+    /**
+     * Writes supplied tree to supplied stream. The tree is traversed twice, for the structure and for the values,
+     * and is never copied. The stream is not closed
+     * @param tree tree to write, must not be modified while being written
+     * @param out stream to write to
+     * @param codec codec of values
+     * @param <T> the type of elements
+     * @throws IOException if the stream fails
+     */
+    public static <T> void write(Tree<T> tree, OutputStream out, ValueCodec<T> codec) throws IOException {
+        write(tree, out, codec, null);
+    }
+
+    /**
+     * Writes supplied tree to supplied stream reading the tree under supplied lock. The lock is released
+     * and acquired again after every {@value #LOCK_BATCH} nodes, so threads modifying the tree under the same lock
+     * wait for a batch of nodes instead of the whole tree. The tree must be a view that does not change,
+     * like a snapshot of {@link GeneralTree}, the lock only makes its state visible to the writing thread
+     * @see #write(Tree, OutputStream, ValueCodec)
+     * @param tree tree to write
+     * @param out stream to write to
+     * @param codec codec of values
+     * @param lock lock guarding the tree, <tt>null</tt> if the tree is not shared
+     * @param <T> the type of elements
+     * @throws IOException if the stream fails
+     */
+    static <T> void write(Tree<T> tree, OutputStream out, ValueCodec<T> codec, Lock lock) throws IOException {
+        final int width = codec.width();
+        final Output output = new Output(out);
+
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            final int count = tree.getRoot() == null ? 0 : tree.size();
+            output.reserve(4 + 1 + 4 + MAX_VARINT_SIZE);
+            output.buffer.putInt(MAGIC).put(FORMAT_VERSION).putInt(width);
+            output.putVarint(count);
+            if (count > 0) {
+                forEachPreOrder(tree, tree.getRoot(), item -> {
+                    output.reserve(MAX_VARINT_SIZE);
+                    output.putVarint(tree.getChildren(item).size());
+                }, lock);
+                forEachPreOrder(tree, tree.getRoot(), item -> {
+                    T value = tree.get(item);
+                    int size = codec.size(value);
+                    output.reserve(MAX_VARINT_SIZE + size);
+                    if (width == ValueCodec.VARIABLE) {
+                        output.putVarint(size);
+                    }
+                    codec.encode(value, output.buffer);
+                }, lock);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+        try {
+            output.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads a tree from supplied stream. Nodes are allocated while the structure section is read
+     * and values are set while the value section is read, without intermediate collections.
+     * The stream is read by blocks, bytes following the tree may be consumed. The stream is not closed
+     * @param in stream to read from
+     * @param codec codec of values, must have the width of the codec the tree was written with
+     * @param <T> the type of elements
+     * @return new tree instance
+     * @throws IOException if the stream fails or does not contain a tree in binary format readable by the codec
+     */
+    public static <T> GeneralTree<T> read(InputStream in, ValueCodec<T> codec) throws IOException {
+        final Input input = new Input(in);
+        final int width = codec.width();
+
+        try {
+            input.require(4 + 1 + 4);
+            checkHeader(input.buffer, codec);
+            final int count = input.getVarint();
+            if (count < 0) {
+                throw new IOException(String.format("Invalid number of nodes %d", count));
+            }
+            return GeneralTree.fromPreOrder(count, input::getVarint, () -> {
+                int size = width == ValueCodec.VARIABLE ? input.getVarint() : width;
+                return codec.decode(input.slice(size));
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a tree over supplied buffer. The structure section is indexed once,
+     * values are decoded from the buffer on access. The content of the buffer must not be changed
+     * @param buffer buffer positioned at the tree
+     * @param codec codec of values, must have the width of the codec the tree was written with
+     * @param <T> the type of elements
+     * @return tree over the buffer
+     * @throws IllegalArgumentException if the buffer does not contain a tree in binary format
+     */
+    public static <T> ByteBufferTree<T> wrap(ByteBuffer buffer, ValueCodec<T> codec) {
+        return new ByteBufferTree<>(buffer, codec, Tree.IterationStrategy.DEPTH_FIRST_PRE);
+    }
+
+    /**
+     * Reads and checks the header of a tree up to the number of nodes
+     * @param buffer buffer positioned at the header
+     * @param codec codec of values
+     * @throws IllegalArgumentException if the header does not match the format or the codec
+     */
+    static void checkHeader(ByteBuffer buffer, ValueCodec<?> codec) {
+        if (buffer.remaining() < 4 + 1 + 4 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Data is not a tree in binary format");
+        }
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported format version %d", version));
+        }
+        int width = buffer.getInt();
+        if (width != codec.width()) {
+            throw new IllegalArgumentException(String.format("Values of width %d can not be read by codec of width %d",
+                    width, codec.width()));
+        }
+    }
+
+    /**
+     * Reads a varint from supplied buffer
+     * @param buffer buffer positioned at the varint
+     * @return read number
+     * @throws IllegalArgumentException if the varint is longer than 5 bytes
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the varint
+     */
+    static int getVarint(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+            byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    /**
+     * Puts a varint to supplied buffer
+     * @param buffer buffer with room for the varint
+     * @param value non negative number
+     */
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Passes nodes of the subtree of supplied tree starting from supplied node in deep first pre order
+     * to supplied action
+     * @param tree supplied tree
+     * @param from node from which to start
+     * @param action action to perform
+     * @param lock lock held by the caller, released and acquired again after every batch of nodes,
+     *             <tt>null</tt> if there is no lock
+     * @param <T> the type of elements
+     */
+    static <T> void forEachPreOrder(Tree<T> tree, Item<T> from, Consumer<Item<T>> action, Lock lock) {
+        final Deque<Iterator<Item<T>>> stack = new ArrayDeque<>();
+        int visited = 0;
+        action.accept(from);
+        stack.add(tree.getChildren(from).iterator());
+        while (!stack.isEmpty()) {
+            if (lock != null && ++visited % LOCK_BATCH == 0) {
+                lock.unlock();
+                lock.lock();
+            }
+            Iterator<Item<T>> children = stack.peekLast();
+            if (!children.hasNext()) {
+                stack.pollLast();
+                continue;
+            }
+            Item<T> item = children.next();
+            action.accept(item);
+            Collection<Item<T>> grandChildren = tree.getChildren(item);
+            if (!grandChildren.isEmpty()) {
+                stack.add(grandChildren.iterator());
+            }
+        }
+    }
+
+    /**
+     * Buffered output, which fails with UncheckedIOException, so it can be used by lambdas
+     */
+    private static final class Output {
+
+        /**
+         * underlying stream
+         */
+        private final OutputStream out;
+
+        /**
+         * buffered bytes
+         */
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * constructor with underlying stream
+         * @param out underlying stream
+         */
+        Output(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Makes room for supplied number of bytes in the buffer
+         * @param size number of bytes
+         */
+        void reserve(int size) {
+            if (buffer.remaining() < size) {
+                flush();
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+            }
+        }
+
+        /**
+         * Puts a varint to the buffer
+         * @param value non negative number
+         */
+        void putVarint(int value) {
+            TreeFormat.putVarint(buffer, value);
+        }
+
+        /**
+         * Writes buffered bytes to the stream
+         */
+        void flush() {
+            try {
+                out.write(buffer.array(), 0, buffer.position());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Buffered input, which fails with UncheckedIOException, so it can be used by lambdas
+     */
+    private static final class Input {
+
+        /**
+         * underlying stream
+         */
+        private final InputStream in;
+
+        /**
+         * buffered bytes, the position is at the next byte to read
+         */
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * constructor with underlying stream
+         * @param in underlying stream
+         */
+        Input(InputStream in) {
+            this.in = in;
+            buffer.limit(0);
+        }
+
+        /**
+         * Reads from the stream till the buffer contains supplied number of bytes
+         * @param size number of bytes
+         */
+        void require(int size) {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            try {
+                while (buffer.position() < size) {
+                    int read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+                    if (read < 0) {
+                        buffer.flip();
+                        throw new EOFException("Stream ends before the end of a tree");
+                    }
+                    buffer.position(buffer.position() + read);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.flip();
+        }
+
+        /**
+         * Reads a varint
+         * @return read number
+         */
+        int getVarint() {
+            if (buffer.remaining() < MAX_VARINT_SIZE) {
+                try {
+                    require(MAX_VARINT_SIZE);
+                } catch (UncheckedIOException e) {
+                    // a short varint may be the last bytes of the stream
+                    if (!(e.getCause() instanceof EOFException) || !buffer.hasRemaining()) {
+                        throw e;
+                    }
+                }
+            }
+            try {
+                return TreeFormat.getVarint(buffer);
+            } catch (RuntimeException e) {
+                throw new UncheckedIOException(new IOException("Malformed varint", e));
+            }
+        }
+
+        /**
+         * Returns a buffer over supplied number of next bytes and skips them
+         * @param size number of bytes
+         * @return buffer positioned at the bytes and limited by their end
+         */
+        ByteBuffer slice(int size) {
+            require(size);
+            ByteBuffer result = ByteBuffer.wrap(buffer.array(), buffer.position(), size);
+            buffer.position(buffer.position() + size);
+            return result;
+        }
+    }
+}
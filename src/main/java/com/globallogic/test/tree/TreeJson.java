@@ -0,0 +1,454 @@
+package com.globallogic.test.tree;
+
+import com.globallogic.test.tree.Tree.Item;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
+
+/**
+ * Streaming export and import of trees as nested JSON.
+ * <p>
+ * A node is written as an object with the <tt>value</tt> member and, if the node has children,
+ * the <tt>children</tt> member with an array of nodes, e.g. <tt>{"value":"h","children":[{"value":"d"}]}</tt>.
+ * Values are written as JSON strings, <tt>null</tt> values as JSON null, an empty tree as JSON null.
+ * Export writes nodes while the tree is traversed and import adds nodes while the text is tokenized,
+ * both keep only the path from the root to the current node, no intermediate object graph is built
+ */
+public final class TreeJson {
+
+    private TreeJson() {
+    }
+
+    /**
+     * Writes supplied tree as nested JSON
+     * @see #write(GeneralTree, Item, Writer, Function)
+     * @param tree tree to write
+     * @param out writer to write to
+     * @param encoder function converting values to strings
+     * @param <T> the type of elements
+     * @throws IOException if the writer fails
+     */
+    public static <T> void write(GeneralTree<T> tree, Writer out, Function<? super T, String> encoder)
+            throws IOException {
+        if (tree.getRoot() == null || tree.isEmpty()) {
+            out.write("null");
+            return;
+        }
+        write(tree, tree.getRoot(), out, encoder);
+    }
+
+    /**
+     * Writes the subtree starting from supplied node as nested JSON. Nodes are taken from the deep first
+     * pre order iterator of the tree, open nodes of the current path are kept on a stack and closed
+     * when the iterator leaves their subtrees. The writer is neither buffered nor closed
+     * @param tree tree to write
+     * @param from node from which to start
+     * @param out writer to write to
+     * @param encoder function converting values to strings
+     * @param <T> the type of elements
+     * @throws IOException if the writer fails
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void write(GeneralTree<T> tree, Item<T> from, Writer out, Function<? super T, String> encoder)
+            throws IOException {
+        final GeneralTree<T>.AbstractTreeIterator it =
+                (GeneralTree<T>.AbstractTreeIterator) tree.iterator(Tree.IterationStrategy.DEPTH_FIRST_PRE, from);
+        final Deque<Item<T>> open = new ArrayDeque<>();
+        boolean needComma = false;
+        while (it.hasNext()) {
+            T value = it.next();
+            Item<T> item = it.getCurrentItem();
+            if (!open.isEmpty()) {
+                Item<T> parent = tree.getParent(item);
+                while (open.peekLast() != parent) {
+                    open.pollLast();
+                    out.write("]}");
+                }
+            }
+            if (needComma) {
+                out.write(',');
+            }
+
+            out.write("{\"value\":");
+            if (value == null) {
+                out.write("null");
+            } else {
+                writeString(encoder.apply(value), out);
+            }
+            if (tree.hasChildren(item)) {
+                out.write(",\"children\":[");
+                open.add(item);
+                needComma = false;
+            } else {
+                out.write('}');
+                needComma = true;
+            }
+        }
+        for (int i = open.size(); i > 0; i--) {
+            out.write("]}");
+        }
+    }
+
+    /**
+     * Reads a tree from nested JSON. A node is created when its object starts and its value is set
+     * when the member is read, so members may come in any order. The node is attached to its parent
+     * when its object ends, so attaching does not walk the path to the root. Unknown members are skipped.
+     * String values are passed to the decoder unescaped, numbers and <tt>true</tt>/<tt>false</tt> as their text,
+     * <tt>null</tt> values are kept as <tt>null</tt>
+     * @param in reader to read from, the whole content must be a single tree
+     * @param decoder function converting strings to values
+     * @param <T> the type of elements
+     * @return new tree instance, empty if the content is JSON null
+     * @throws IOException if the reader fails or the content is not a tree in nested JSON
+     */
+    public static <T> GeneralTree<T> read(Reader in, Function<String, ? extends T> decoder) throws IOException {
+        final Tokenizer tokens = new Tokenizer(in);
+        final GeneralTree<T> tree = new GeneralTree<>();
+        if (tokens.peek() == 'n') {
+            tokens.literal("null");
+            tokens.end();
+            return tree;
+        }
+
+        tokens.expect('{');
+        final Deque<Item<T>> open = new ArrayDeque<>();
+        Item<T> current = tree.newNode(null);
+        boolean inChildren = false;
+        boolean first = true;
+        while (true) {
+            if (inChildren) {
+                if (tokens.peek() == ']') {
+                    tokens.expect(']');
+                    inChildren = false;
+                    first = false;
+                    continue;
+                }
+                if (!first) {
+                    tokens.expect(',');
+                }
+                tokens.expect('{');
+                open.add(current);
+                current = tree.newNode(null);
+                inChildren = false;
+                first = true;
+                continue;
+            }
+
+            if (tokens.peek() == '}') {
+                tokens.expect('}');
+                Item<T> parent = open.pollLast();
+                if (parent == null) {
+                    break;
+                }
+                parent.addChild(current);
+                current = parent;
+                inChildren = true;
+                first = false;
+                continue;
+            }
+            if (!first) {
+                tokens.expect(',');
+            }
+            first = false;
+            String member = tokens.string();
+            tokens.expect(':');
+            if ("value".equals(member)) {
+                current.setValue(tokens.scalar(decoder));
+            } else if ("children".equals(member)) {
+                tokens.expect('[');
+                inChildren = true;
+                first = true;
+            } else {
+                tokens.skipValue();
+            }
+        }
+        tokens.end();
+        tree.setRoot(current);
+        return tree;
+    }
+
+    /**
+     * Writes supplied string as JSON string
+     * @param value string to write
+     * @param out writer to write to
+     * @throws IOException if the writer fails
+     */
+    private static void writeString(String value, Writer out) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                out.write(value, start, i - start);
+                if (c == '"' || c == '\\') {
+                    out.write('\\');
+                    out.write(c);
+                } else {
+                    out.write(String.format("\\u%04x", (int) c));
+                }
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+
+    /**
+     * Hand written tokenizer of JSON reading by blocks. Only the current block is kept in memory
+     */
+    private static final class Tokenizer {
+
+        /**
+         * marker of the end of the input
+         */
+        private static final int EOF = -1;
+
+        /**
+         * underlying reader
+         */
+        private final Reader in;
+
+        /**
+         * current block
+         */
+        private final char[] buffer = new char[8192];
+
+        /**
+         * position of the next char in the block
+         */
+        private int position;
+
+        /**
+         * number of chars in the block
+         */
+        private int limit;
+
+        /**
+         * number of chars of previous blocks
+         */
+        private long offset;
+
+        /**
+         * constructor with underlying reader
+         * @param in underlying reader
+         */
+        Tokenizer(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Returns the next char without consuming it
+         * @return the next char, {@link #EOF} at the end of the input
+         * @throws IOException if the reader fails
+         */
+        private int peekChar() throws IOException {
+            if (position == limit) {
+                offset += limit;
+                position = 0;
+                limit = Math.max(in.read(buffer), 0);
+                if (limit == 0) {
+                    return EOF;
+                }
+            }
+            return buffer[position];
+        }
+
+        /**
+         * Consumes and returns the next char
+         * @return the next char
+         * @throws IOException if the reader fails or the input ends
+         */
+        private char nextChar() throws IOException {
+            if (peekChar() == EOF) {
+                throw error("Unexpected end of input");
+            }
+            return buffer[position++];
+        }
+
+        /**
+         * Returns the next char that is not a whitespace without consuming it
+         * @return the next char, {@link #EOF} at the end of the input
+         * @throws IOException if the reader fails
+         */
+        int peek() throws IOException {
+            int c = peekChar();
+            while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                position++;
+                c = peekChar();
+            }
+            return c;
+        }
+
+        /**
+         * Consumes supplied structural char
+         * @param expected expected char
+         * @throws IOException if the reader fails or the next char differs
+         */
+        void expect(char expected) throws IOException {
+            int c = peek();
+            if (c != expected) {
+                throw error(String.format("Expected '%s' but found %s", expected, describe(c)));
+            }
+            position++;
+        }
+
+        /**
+         * Consumes supplied literal
+         * @param expected literal
+         * @throws IOException if the reader fails or the next chars differ
+         */
+        void literal(String expected) throws IOException {
+            String actual = word();
+            if (!expected.equals(actual)) {
+                throw error(String.format("Expected %s but found '%s'", expected, actual));
+            }
+        }
+
+        /**
+         * Checks that nothing but whitespace follows
+         * @throws IOException if the reader fails or there are more chars
+         */
+        void end() throws IOException {
+            int c = peek();
+            if (c != EOF) {
+                throw error(String.format("Expected end of input but found %s", describe(c)));
+            }
+        }
+
+        /**
+         * Consumes a string and returns its unescaped content
+         * @return content of the string
+         * @throws IOException if the reader fails or the next token is not a string
+         */
+        String string() throws IOException {
+            expect('"');
+            StringBuilder result = new StringBuilder();
+            for (char c = nextChar(); c != '"'; c = nextChar()) {
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                c = nextChar();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        result.append(c);
+                        break;
+                    case 'b':
+                        result.append('\b');
+                        break;
+                    case 'f':
+                        result.append('\f');
+                        break;
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(nextChar(), 16);
+                            if (digit < 0) {
+                                throw error("Invalid unicode escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        result.append((char) code);
+                        break;
+                    default:
+                        throw error(String.format("Invalid escape '\\%s'", c));
+                }
+            }
+            return result.toString();
+        }
+
+        /**
+         * Consumes a string, a number or a literal and converts it to a value
+         * @param decoder function converting strings to values
+         * @param <T> the type of values
+         * @return decoded value, <tt>null</tt> for JSON null
+         * @throws IOException if the reader fails or the next token is not a scalar
+         */
+        <T> T scalar(Function<String, ? extends T> decoder) throws IOException {
+            int c = peek();
+            if (c == '"') {
+                return decoder.apply(string());
+            }
+            if (c == '{' || c == '[' || c == EOF) {
+                throw error(String.format("Expected a string, a number or a literal but found %s", describe(c)));
+            }
+            String word = word();
+            return "null".equals(word) ? null : decoder.apply(word);
+        }
+
+        /**
+         * Consumes a value of any type, nested values are skipped by counting brackets
+         * @throws IOException if the reader fails or the value is malformed
+         */
+        void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                int c = peek();
+                if (c == '{' || c == '[') {
+                    position++;
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    position++;
+                    depth--;
+                } else if (c == '"') {
+                    string();
+                } else if (c == ',' || c == ':') {
+                    position++;
+                } else {
+                    word();
+                }
+            } while (depth > 0);
+        }
+
+        /**
+         * Consumes a number or a literal
+         * @return text of the number or the literal
+         * @throws IOException if the reader fails or there is no number or literal
+         */
+        private String word() throws IOException {
+            peek();
+            StringBuilder result = new StringBuilder();
+            for (int c = peekChar(); Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.'; c = peekChar()) {
+                result.append((char) c);
+                position++;
+            }
+            if (result.length() == 0) {
+                throw error(String.format("Unexpected %s", describe(peekChar())));
+            }
+            return result.toString();
+        }
+
+        /**
+         * Describes supplied char for an error message
+         * @param c supplied char
+         * @return description of the char
+         */
+        private static String describe(int c) {
+            return c == EOF ? "end of input" : "'" + (char) c + "'";
+        }
+
+        /**
+         * Creates an exception with supplied message and the current offset
+         * @param message description of the problem
+         * @return exception to throw
+         */
+        private IOException error(String message) {
+            return new IOException(String.format("%s at offset %d", message, offset + position));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.globallogic.test.tree;
+
+import com.globallogic.test.tree.Tree.Item;
+
+/**
+ * Visitor of nodes of a tree, see {@link Tree#walk(Tree.IterationStrategy, Item, TreeVisitor)}.
+ * <p>
+ * Every reached node is passed to {@link #preVisit(Item, Object)} first, which may skip the node together
+ * with its subtree, and then to {@link #visit(Item, Object)} in the order of the iteration strategy.
+ * In deep first pre order and breadth first order both are called one after another, in deep first post order
+ * {@link #preVisit(Item, Object)} is called when the node is reached and {@link #visit(Item, Object)}
+ * after its descendants. Skipped subtrees are not read at all
+ * @param <T> the type of elements
+ */
+@FunctionalInterface
+public interface TreeVisitor<T> {
+
+    /**
+     * Result of a visit
+     */
+    enum Result {
+
+        /**
+         * continue the walk
+         */
+        CONTINUE,
+
+        /**
+         * do not visit descendants of the node, continue the walk with the next node
+         */
+        SKIP_SUBTREE,
+
+        /**
+         * stop the walk
+         */
+        TERMINATE
+    }
+
+    /**
+     * Called when a node is reached, before its descendants. Returning {@link Result#SKIP_SUBTREE} skips
+     * the node and its descendants, so neither of them is passed to {@link #visit(Item, Object)}
+     * @param item reached node
+     * @param value value of the node
+     * @return result of the visit, {@link Result#CONTINUE} by default
+     */
+    default Result preVisit(Item<T> item, T value) {
+        return Result.CONTINUE;
+    }
+
+    /**
+     * Called for every node that is not skipped in the order of the iteration strategy. Returning
+     * {@link Result#SKIP_SUBTREE} skips descendants of the node in deep first pre order and breadth first order,
+     * in deep first post order the descendants are already visited and it means {@link Result#CONTINUE}
+     * @param item visited node
+     * @param value value of the node
+     * @return result of the visit
+     */
+    Result visit(Item<T> item, T value);
+}
@@ -0,0 +1,137 @@
+package com.globallogic.test.tree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec of values of a tree kept outside of the heap.
+ * A codec either encodes every value in the same number of bytes, or declares {@link #VARIABLE} width
+ * and reports the size of every value, in which case the store keeps boundaries of values
+ * @param <T> the type of values
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * width of codecs which encode values in different number of bytes
+     */
+    int VARIABLE = -1;
+
+    /**
+     * Codec of <tt>Integer</tt> values, 4 bytes each
+     */
+    ValueCodec<Integer> INT = new ValueCodec<Integer>() {
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    /**
+     * Codec of <tt>Long</tt> values, 8 bytes each
+     */
+    ValueCodec<Long> LONG = new ValueCodec<Long>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    /**
+     * Codec of <tt>Double</tt> values, 8 bytes each
+     */
+    ValueCodec<Double> DOUBLE = new ValueCodec<Double>() {
+        @Override
+        public int width() {
+            return Double.BYTES;
+        }
+
+        @Override
+        public void encode(Double value, ByteBuffer buffer) {
+            buffer.putDouble(value);
+        }
+
+        @Override
+        public Double decode(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+    };
+
+    /**
+     * Codec of <tt>String</tt> values in UTF-8
+     */
+    ValueCodec<String> UTF8 = new ValueCodec<String>() {
+        @Override
+        public int width() {
+            return VARIABLE;
+        }
+
+        @Override
+        public int size(String value) {
+            return value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer buffer) {
+            buffer.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+                        StandardCharsets.UTF_8);
+            }
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    };
+
+    /**
+     * Returns number of bytes of every encoded value
+     * @return number of bytes of every encoded value, {@link #VARIABLE} if values differ in size
+     */
+    int width();
+
+    /**
+     * Returns number of bytes of supplied value when encoded
+     * @param value supplied value
+     * @return number of bytes of encoded value
+     */
+    default int size(T value) {
+        return width();
+    }
+
+    /**
+     * Encodes supplied value to the position of supplied buffer, the position is advanced by the size of the value
+     * @param value value to encode
+     * @param buffer buffer with room for the value
+     */
+    void encode(T value, ByteBuffer buffer);
+
+    /**
+     * Decodes a value from supplied buffer. The buffer is positioned at the value,
+     * a buffer of variable width value is limited by the end of the value
+     * @param buffer buffer positioned at the value
+     * @return decoded value
+     */
+    T decode(ByteBuffer buffer);
+}
@@ -0,0 +1,75 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+@Subject(AppendOnlyTree)
+class AppendOnlyTreeSpecification extends Specification {
+
+    Tree.Item<Character> a, b, c, d, e, f, g, h
+    AppendOnlyTree<Character> tree
+
+    def setup() {
+        tree = new AppendOnlyTree<>('h')
+        (a, b, c, d, e, f, g, h) = TreeFixture.fill(tree)
+    }
+
+    def "Iteration follows insertion order"() {
+        given:
+        final item = tree.findChild(value, tree.getRoot())
+
+        expect:
+        tree.size() == 8
+        tree.toString(strategy, item) == result
+
+        where:
+        strategy                                | value | result
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | 'h'   | "[h, d, a, b, c, e, g, f]"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | 'h'   | "[a, b, c, d, e, f, g, h]"
+        Tree.IterationStrategy.BREATH_FIRST     | 'h'   | "[h, d, e, g, a, b, c, f]"
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | 'd'   | "[d, a, b, c]"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | 'g'   | "[f, g]"
+    }
+
+    def "Nodes can not be removed or moved"() {
+        when:
+        operation(tree)
+        then:
+        thrown(UnsupportedOperationException)
+
+        where:
+        operation << [
+                { it.remove('d', it.getRoot()) },
+                { it.clear(it.getRoot()) },
+                { it.setParent(it.findChild('f', it.getRoot()), it.getRoot()) }
+        ]
+    }
+
+    def "Concurrent additions to the same parent are all kept"() {
+        given:
+        final AppendOnlyTree<Integer> tree = new AppendOnlyTree<>(0)
+        final executor = Executors.newFixedThreadPool(threads)
+
+        when:
+        final futures = (1..threads).collect {
+            executor.submit({
+                for (int i = 0; i < perThread; i++) {
+                    tree.add(i, tree.getRoot())
+                }
+            } as Callable)
+        }
+        futures*.get()
+        executor.shutdown()
+
+        then:
+        tree.size() == 1 + threads * perThread
+        tree.getChildren(tree.getRoot()).size() == threads * perThread
+        tree.iterator(Tree.IterationStrategy.DEPTH_FIRST_POST).size() == tree.size()
+
+        where:
+        threads | perThread
+        8       | 10000
+    }
+}
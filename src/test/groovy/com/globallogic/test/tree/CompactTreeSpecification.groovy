@@ -0,0 +1,95 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+import java.util.stream.Collectors
+
+@Subject(CompactTree)
+class CompactTreeSpecification extends Specification {
+
+    GeneralTree<Character> source
+
+    def setup() {
+        source = new GeneralTree<>('h')
+        TreeFixture.fill(source)
+    }
+
+    def "Compact copy keeps iteration order"() {
+        given:
+        final tree = CompactTree.of(source, strategy)
+
+        expect:
+        tree.size() == 8
+        tree.toString() == source.toString(strategy)
+        tree.toString(tree.findChild(item, tree.getRoot())) == result
+        tree.stream().collect(Collectors.toList()) == source.toArray(source.getRoot(), strategy) as List
+        tree.parallelStream().count() == 8
+
+        where:
+        strategy                               | item | result
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | 'd'  | "[d, a, b, c]"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | 'd'  | "[a, b, c, d]"
+        Tree.IterationStrategy.BREATH_FIRST     | 'h'  | "[h, d, e, g, a, b, c, f]"
+    }
+
+    def "Compact tree operations"() {
+        given:
+        final tree = CompactTree.of(source)
+        final d = tree.findChild('d', tree.getRoot())
+
+        expect:
+        d.size() == 4
+        tree.getChildren(tree.getRoot()).toString() == "[d, e, g]"
+        tree.getParent(d) == tree.getRoot()
+        tree.isParentOf(tree.getRoot(), d)
+        tree.isChildOf(d, tree.getRoot())
+        tree.contains('b', d)
+        !tree.contains('e', d)
+        tree.filterFrom(d, { it > 'a' } ) == ['d', 'b', 'c']
+        tree.subTree(d).toString() == "[d, a, b, c]"
+        tree.set('D', d).getValue() == 'D'
+        tree.toString() == "[h, D, a, b, c, e, g, f]"
+    }
+
+    def "Compact tree is built from parent array in any order"() {
+        when:
+        final CompactTree<String> built = CompactTree.fromParentArray(
+                ['a', 'h', 'd', 'b', 'e', 'c', 'g', 'f'] as String[], [2, -1, 1, 2, 1, 2, 1, 6] as int[], strategy)
+        then:
+        built.size() == 8
+        built.toString() == source.toString(strategy)
+        built.findChild('d', built.getRoot()).size() == 4
+        built.getParent(built.findChild('f', built.getRoot())).getValue() == 'g'
+
+        where:
+        strategy << Tree.IterationStrategy.values()
+    }
+
+    def "Parent array of compact tree must describe a single tree"() {
+        when:
+        CompactTree.fromParentArray(new Character[parentIdx.size()], parentIdx as int[])
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        parentIdx << [[-1, -1], [1, 0], [-1, 2, 1], [-1, 5], [0]]
+    }
+
+    def "Structure of compact tree can not be modified"() {
+        given:
+        final tree = CompactTree.of(source)
+
+        when:
+        operation(tree)
+        then:
+        thrown(UnsupportedOperationException)
+
+        where:
+        operation << [
+                { it.add('x', it.getRoot()) },
+                { it.remove('d', it.getRoot()) },
+                { it.clear(it.getRoot()) },
+                { it.setParent(it.findChild('f', it.getRoot()), it.getRoot()) }
+        ]
+    }
+}
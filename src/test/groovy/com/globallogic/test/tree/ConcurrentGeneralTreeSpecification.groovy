@@ -0,0 +1,169 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+
+@Subject(ConcurrentGeneralTree)
+class ConcurrentGeneralTreeSpecification extends Specification {
+
+    Tree.Item<Character> a, b, c, d, e, f, g, h
+    ConcurrentGeneralTree<Character> tree
+
+    def setup() {
+        tree = new ConcurrentGeneralTree<>('h')
+        (a, b, c, d, e, f, g, h) = TreeFixture.fill(tree)
+    }
+
+    def "Tree operations behave like in general tree"() {
+        expect:
+        tree.size() == 8
+        tree.toString() == "[h, d, a, b, c, e, g, f]"
+        tree.toString(Tree.IterationStrategy.DEPTH_FIRST_POST) == "[a, b, c, d, e, f, g, h]"
+        tree.toString(Tree.IterationStrategy.BREATH_FIRST) == "[h, d, e, g, a, b, c, f]"
+        c == tree.findChild('c', h)
+        !tree.contains('f', d)
+        tree.subTree(d).toString() == "[d, a, b, c]"
+
+        when:
+        tree.remove('g', h)
+        tree.setParent(d, e)
+        then:
+        tree.size() == 6
+        e.size() == 5
+        tree.toString() == "[h, e, d, a, b, c]"
+    }
+
+    def "Children can be iterated while they are modified"() {
+        when:
+        final Collection<Tree.Item<Character>> children = tree.getChildren(d)
+        for (Tree.Item<Character> child : children) {
+            tree.add('x', d)
+            tree.remove(child.getValue(), d)
+        }
+        then:
+        children.size() == 3
+        tree.getChildren(d)*.getValue() == ['x', 'x', 'x']
+        tree.size() == 8
+    }
+
+    def "Size is exact after concurrent writers on disjoint subtrees"() {
+        given:
+        final ConcurrentGeneralTree<Integer> tree = new ConcurrentGeneralTree<>(0)
+        final List<Tree.Item<Integer>> parents = (1..writers).collect { tree.add(it, tree.getRoot()) }
+        final AtomicBoolean done = new AtomicBoolean()
+        final executor = Executors.newFixedThreadPool(writers + 1)
+
+        when:
+        final reader = executor.submit({
+            while (!done.get()) {
+                tree.iterator().each {}
+            }
+        } as Runnable)
+        final futures = parents.collect { parent ->
+            executor.submit({
+                Tree.Item<Integer> curr = parent
+                for (int i = 0; i < perWriter; i++) {
+                    curr = i % 2 == 0 ? tree.add(i, curr) : tree.add(i, parent)
+                }
+            } as Callable)
+        }
+        futures*.get()
+        done.set(true)
+        reader.get()
+        executor.shutdown()
+
+        then:
+        tree.size() == 1 + writers + writers * perWriter
+        tree.iterator().size() == tree.size()
+        tree.getRoot().size() == tree.size()
+
+        where:
+        writers | perWriter
+        4       | 10000
+    }
+
+    def "Sizes are exact after concurrent removes and moves on disjoint subtrees"() {
+        given: "every writer owns two children of the root"
+        final ConcurrentGeneralTree<Integer> tree = new ConcurrentGeneralTree<>(0)
+        final List<Tree.Item<Integer>> sources = (1..writers).collect { tree.add(it, tree.getRoot()) }
+        final List<Tree.Item<Integer>> targets = (1..writers).collect { tree.add(-it, tree.getRoot()) }
+        final AtomicBoolean done = new AtomicBoolean()
+        final executor = Executors.newFixedThreadPool(writers + 1)
+
+        when: "writers add pairs of nodes, move every second pair and remove every fourth one"
+        final reader = executor.submit({
+            while (!done.get()) {
+                tree.subTree(tree.getRoot()).iterator().each {}
+            }
+        } as Runnable)
+        final futures = (0..<writers).collect { w ->
+            executor.submit({
+                for (int i = 0; i < perWriter; i++) {
+                    final Tree.Item<Integer> item = tree.add(i, sources[w])
+                    tree.add(-1, item)
+                    if (i % 2 == 0) {
+                        tree.setParent(item, targets[w])
+                    }
+                    if (i % 4 == 0) {
+                        assert tree.remove(i, targets[w]).is(item)
+                    }
+                }
+            } as Callable)
+        }
+        futures*.get()
+        done.set(true)
+        reader.get()
+        executor.shutdown()
+
+        then:
+        tree.size() == 1 + 2 * writers + writers * 2 * (perWriter - perWriter.intdiv(4))
+        tree.iterator().size() == tree.size()
+        tree.getRoot().size() == tree.size()
+        sources.every { it.size() == 1 + perWriter && it.size() == tree.toArray(it, Tree.IterationStrategy.DEPTH_FIRST_PRE).length }
+        targets.every { it.size() == 1 + perWriter.intdiv(2) && it.size() == tree.toArray(it, Tree.IterationStrategy.DEPTH_FIRST_PRE).length }
+
+        where:
+        writers | perWriter
+        4       | 4000
+    }
+
+    def "Clear and remove keep sizes of concurrently growing subtrees"() {
+        given:
+        final ConcurrentGeneralTree<Integer> tree = new ConcurrentGeneralTree<>(0)
+        final Tree.Item<Integer> grown = tree.add(1, tree.getRoot())
+        final Tree.Item<Integer> cleared = tree.add(2, tree.getRoot())
+        final executor = Executors.newFixedThreadPool(2)
+
+        when: "one thread grows a subtree while the other repeatedly fills and clears another one"
+        final grower = executor.submit({
+            for (int i = 0; i < count; i++) {
+                tree.add(i, grown)
+            }
+        } as Callable)
+        final clearer = executor.submit({
+            for (int i = 0; i < count; i++) {
+                final Tree.Item<Integer> child = tree.add(i, cleared)
+                tree.add(i, child)
+                if (i % 2 == 0) {
+                    tree.remove(i, cleared)
+                } else {
+                    tree.clear(child)
+                }
+            }
+        } as Callable)
+        grower.get()
+        clearer.get()
+        executor.shutdown()
+
+        then:
+        tree.size() == 3 + count
+        grown.size() == 1 + count
+        cleared.size() == 1
+
+        where:
+        count << [20000]
+    }
+}
@@ -2,7 +2,10 @@ package com.globallogic.test.tree
 
 import spock.lang.*
 
+import java.util.function.IntFunction
 import java.util.function.Predicate
+import java.util.stream.Collectors
+import java.util.stream.StreamSupport
 
 @Subject(GeneralTree)
 class GeneralTreeSpecification extends Specification {
@@ -11,31 +14,8 @@ class GeneralTreeSpecification extends Specification {
     GeneralTree<Character> tree
 
     def setup() {
-
-//         Tree for testing
-//
-//                   h
-//                 / | \
-//                /  e  \
-//               d        g
-//             / | \      |
-//            /  |  \     f
-//           a   b   c
-//
-//          tree iteration:
-//             - deep first pre order: hdabcegf
-//             - deep first post order: abcdefgh
-//             - breath first post order: hdegabcf
-
         tree = new GeneralTree<>('h')
-        h = tree.getRoot()
-        d = tree.add('d', tree.getRoot())
-        a = tree.add('a', d)
-        b = tree.add('b', d)
-        c = tree.add('c', d)
-        e = tree.add('e', tree.getRoot())
-        g = tree.add('g', tree.getRoot())
-        f = tree.add('f', g)
+        (a, b, c, d, e, f, g, h) = TreeFixture.fill(tree)
     }
 
     def "General methods works correctly"() {
@@ -72,6 +52,34 @@ class GeneralTreeSpecification extends Specification {
         6 == tree.size()
     }
 
+    def "Subtree sizes are maintained on structural modifications"() {
+        expect:
+        8 == h.size()
+        4 == d.size()
+        2 == g.size()
+
+        when: "a node is added"
+        tree.add('x', a)
+        then: "sizes along the ancestor path are updated"
+        2 == a.size()
+        5 == d.size()
+        9 == h.size()
+
+        when: "a subtree is moved to another parent"
+        tree.setParent(d, e)
+        then:
+        6 == e.size()
+        9 == h.size()
+        9 == tree.size()
+
+        when: "a subtree is removed"
+        tree.remove('d', e)
+        then:
+        1 == e.size()
+        4 == h.size()
+        4 == tree.size()
+    }
+
     def "Adding a node works correctly"() {
         when: "A node added"
         final Tree.Item<Character> x = tree.add('x', a)
@@ -81,6 +89,152 @@ class GeneralTreeSpecification extends Specification {
         tree.isChildOf(x, a)
     }
 
+    def "Nodes are added and moved to positions among children"() {
+        when:
+        tree.add('x' as Character, d, 1)
+        tree.setParent(c, d, 0)
+        tree.setParent(e, d, 2)
+        then:
+        tree.toString() == "[h, d, c, a, e, x, b, g, f]"
+        tree.size() == 9
+        d.size() == 6
+        tree.isAncestorOf(d, e)
+
+        when:
+        tree.add('y' as Character, d, 7)
+        then:
+        thrown(IndexOutOfBoundsException)
+        tree.toString() == "[h, d, c, a, e, x, b, g, f]"
+    }
+
+    def "Parent and child checks compare nodes, not values"() {
+        given:
+        final x = tree.add('a', g)
+
+        expect:
+        tree.isChildOf(x, g)
+        !tree.isChildOf(a, g)
+        !tree.isParentOf(g, a)
+        !tree.isChildOf(f, h)
+    }
+
+    def "Ancestor and depth queries follow structural modifications"() {
+        expect:
+        tree.isAncestorOf(h, a)
+        tree.isAncestorOf(d, c)
+        !tree.isAncestorOf(d, f)
+        !tree.isAncestorOf(a, a)
+        tree.isDescendantOf(f, h)
+        tree.depth(h) == 0
+        tree.depth(b) == 2
+
+        when: "a leaf is appended"
+        final x = tree.add('x', f)
+        then:
+        tree.isAncestorOf(g, x)
+        !tree.isAncestorOf(d, x)
+        tree.depth(x) == 3
+
+        when: "a subtree is moved"
+        tree.setParent(g, a)
+        then:
+        tree.isAncestorOf(d, x)
+        tree.depth(x) == 5
+
+        when: "a subtree is detached"
+        tree.setParent(d, null)
+        then:
+        !tree.isAncestorOf(h, x)
+        tree.isAncestorOf(d, x)
+        tree.depth(x) == 4
+    }
+
+    def "Ancestor and depth queries do not trust labels of nodes of another tree"() {
+        given: "two trees r -> x -> y labeled for equal versions"
+        final GeneralTree<String> t1 = new GeneralTree<>('r')
+        final x1 = t1.add('x', t1.getRoot())
+        final y1 = t1.add('y', x1)
+        final GeneralTree<String> t2 = new GeneralTree<>('r')
+        final x2 = t2.add('x', t2.getRoot())
+        final y2 = t2.add('y', x2)
+        3.times {
+            t1.depth(y1)
+            t2.depth(y2)
+        }
+
+        expect:
+        !t1.isAncestorOf(t1.getRoot(), y2)
+        !t1.isAncestorOf(x1, y2)
+        !t1.isDescendantOf(y2, x1)
+        t1.isAncestorOf(x2, y2)
+        t1.depth(y2) == 2
+        t1.isAncestorOf(t1.getRoot(), y1)
+    }
+
+    def "Lowest common ancestor and distance are found"() {
+        given:
+        final node = { String name -> tree.findChild(name, tree.getRoot()) }
+
+        expect:
+        tree.lca(node(first), node(second)) == node(ancestor)
+        tree.distance(node(first), node(second)) == distance
+
+        where:
+        first | second | ancestor | distance
+        'a'   | 'c'    | 'd'      | 2
+        'b'   | 'f'    | 'h'      | 4
+        'd'   | 'b'    | 'd'      | 1
+        'h'   | 'h'    | 'h'      | 0
+    }
+
+    def "Nodes of different trees have no common ancestor"() {
+        given: "two trees r -> x -> y labeled for equal versions"
+        final GeneralTree<String> t1 = new GeneralTree<>('r')
+        final x1 = t1.add('x', t1.getRoot())
+        final y1 = t1.add('y', x1)
+        final GeneralTree<String> t2 = new GeneralTree<>('r')
+        final y2 = t2.add('y', t2.add('x', t2.getRoot()))
+        3.times {
+            t1.depth(y1)
+            t2.depth(y2)
+        }
+
+        expect:
+        t1.lca(y1, y2) == null
+        t1.lca(t1.getRoot(), y2) == null
+        t1.distance(y1, y2) == -1
+        t1.lca(y1, x1) == x1
+    }
+
+    def "Common ancestor of a null node is rejected"() {
+        when:
+        tree.distance(a, null)
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        tree.lca(null, a)
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Common ancestor follows appended leaves and detached subtrees"() {
+        when:
+        final x = tree.add('x', f)
+        final y = tree.add('y', g)
+        then:
+        tree.lca(x, y) == g
+        tree.pathToRoot(x) == [x, f, g, h]
+
+        when:
+        tree.setParent(g, null)
+        then:
+        tree.lca(x, a) == null
+        tree.distance(x, a) == -1
+        tree.lca(x, y) == g
+        tree.pathToRoot(x) == [x, f, g]
+    }
+
     def "Iterating over a tree works correctly"() {
         char[] chars = new char[8]
         int index = 0
@@ -111,6 +265,107 @@ class GeneralTreeSpecification extends Specification {
         "hdegabcf" == new String(chars)
     };
 
+    def "Post order iteration works on a deep chain"() {
+        given: "a chain of nodes"
+        GeneralTree<Integer> chain = new GeneralTree<>(0)
+        Tree.Item<Integer> last = chain.getRoot()
+        for (int i = 1; i < 10000; i++) {
+            last = chain.add(i, last)
+        }
+
+        when:
+        def it = chain.iterator(Tree.IterationStrategy.DEPTH_FIRST_POST)
+        List<Integer> values = []
+        while (it.hasNext()) {
+            values << it.next()
+        }
+        then: "the deepest node comes first and the root comes last"
+        (9999..0) == values
+
+        when: "the iterator is exhausted"
+        it.next()
+        then:
+        thrown(NoSuchElementException)
+    }
+
+    def "Iterator can be reset and reused"() {
+        given:
+        GeneralTree.AbstractTreeIterator it = (GeneralTree.AbstractTreeIterator) tree.iterator(strategy)
+
+        when: "the iterator is exhausted and reset to another node"
+        while (it.hasNext()) {
+            it.next()
+        }
+        it.reset(d)
+        List<Character> values = []
+        while (it.hasNext()) {
+            values << (Character) it.next()
+        }
+        then:
+        expected == values.join('')
+
+        where:
+        strategy                                | expected
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | "dabc"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | "abcd"
+        Tree.IterationStrategy.BREATH_FIRST     | "dabc"
+    }
+
+    def "Streams over a tree work correctly"() {
+        expect:
+        "hdabcegf" == tree.stream().map { it.toString() }.collect(Collectors.joining())
+        "hdabcegf" == tree.parallelStream().map { it.toString() }.collect(Collectors.joining())
+        "dabc" == StreamSupport.stream(tree.spliterator(d), true).map { it.toString() }.collect(Collectors.joining())
+    }
+
+    def "Spliterator splits by child subtrees"() {
+        given:
+        Spliterator<Character> spliterator = tree.spliterator()
+
+        when:
+        Spliterator<Character> prefix = spliterator.trySplit()
+        then: "the prefix holds the root and the first subtree"
+        5 == prefix.estimateSize()
+        3 == spliterator.estimateSize()
+        spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.ORDERED)
+    }
+
+    def "Streams follow default iteration strategy"() {
+        given: "a tree with three children for every inner node"
+        GeneralTree<Integer> large = new GeneralTree<>(strategy)
+        large.setRoot(large.newNode(0))
+        List<Tree.Item<Integer>> items = [large.getRoot()]
+        for (int i = 1; i < 1000; i++) {
+            items << large.add(i, items[(i - 1).intdiv(3)])
+        }
+        def expected = large.toArray(large.getRoot(), strategy) as List
+
+        expect:
+        expected == large.stream().collect(Collectors.toList())
+        expected == large.parallelStream().collect(Collectors.toList())
+        expected == splitAll(large.spliterator())
+        large.toArray(items[1], strategy) as List == StreamSupport.stream(large.spliterator(items[1]), false).collect(Collectors.toList())
+
+        where:
+        strategy << Tree.IterationStrategy.values()
+    }
+
+    /**
+     * Splits supplied spliterator while it splits and concatenates elements of the parts in encounter order
+     */
+    static <T> List<T> splitAll(Spliterator<T> spliterator) {
+        final Spliterator<T> prefix = spliterator.trySplit()
+        final List<T> result = prefix == null ? [] : splitAll(prefix)
+        final long size = spliterator.estimateSize()
+        if (prefix != null) {
+            result.addAll(splitAll(spliterator))
+        } else {
+            spliterator.forEachRemaining { result << it }
+            assert size == result.size()
+        }
+        return result
+    }
+
     def "Tree transformed into array correctly"() {
         def result
 
@@ -130,6 +385,25 @@ class GeneralTreeSpecification extends Specification {
         "[h, d, e, g, a, b, c, f]" == result.toString()
     }
 
+    def "Subtree transformed into array of its size"() {
+        expect:
+        4 == tree.toArray(d, Tree.IterationStrategy.DEPTH_FIRST_PRE).length
+        ['d', 'a', 'b', 'c'] as String[] == tree.toArray(new String[0], d, Tree.IterationStrategy.DEPTH_FIRST_PRE)
+        ['a', 'b', 'c', 'd'] as String[] == tree.toArray({ int n -> new String[n] } as IntFunction, d,
+                Tree.IterationStrategy.DEPTH_FIRST_POST)
+    }
+
+    def "Subtree transformed into supplied array when it is big enough"() {
+        given:
+        String[] array = ['x', 'x', 'x', 'x'] as String[]
+
+        when:
+        String[] result = tree.toArray(array, g, Tree.IterationStrategy.DEPTH_FIRST_PRE)
+        then:
+        result.is(array)
+        ['g', 'f', null, 'x'] as String[] == result
+    }
+
     def "Filters works correctly"() {
         Predicate<Character> predicate = { ch -> (ch > 'g') }
 
@@ -144,6 +418,94 @@ class GeneralTreeSpecification extends Specification {
         "[]" == filteredFrom.toString()
     }
 
+    def "Filter skips subtrees which do not match the subtree predicate"() {
+        given:
+        Predicate<Character> predicate = { ch -> (ch != 'e') }
+        Predicate<Character> subtreePredicate = { ch -> (ch != 'd') }
+        final CompactTree<Character> compact = CompactTree.of(tree)
+
+        expect:
+        "hgf" == tree.filterFrom(h, predicate, subtreePredicate).join('')
+        "hgf" == compact.filterFrom(compact.getRoot(), predicate, subtreePredicate).join('')
+        "" == tree.filterFrom(d, predicate, subtreePredicate).join('')
+        tree.filterFrom(h, predicate) == tree.filterFrom(h, predicate, { true })
+
+        when: "a node of another tree is passed"
+        compact.filterFrom(h, predicate, subtreePredicate)
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Walk skips subtrees and terminates"() {
+        given:
+        StringBuilder preVisited = new StringBuilder()
+        StringBuilder visited = new StringBuilder()
+        final Object skipFromPreVisit = pruned
+        final Object skipFromVisit = skipped
+        final Object terminateAt = stopped
+        final CompactTree<Character> compact = CompactTree.of(tree)
+        TreeVisitor visitor = new TreeVisitor() {
+            @Override
+            TreeVisitor.Result preVisit(Tree.Item item, Object value) {
+                preVisited.append(value)
+                value == skipFromPreVisit ? TreeVisitor.Result.SKIP_SUBTREE : TreeVisitor.Result.CONTINUE
+            }
+
+            @Override
+            TreeVisitor.Result visit(Tree.Item item, Object value) {
+                visited.append(value)
+                value == skipFromVisit ? TreeVisitor.Result.SKIP_SUBTREE :
+                        value == terminateAt ? TreeVisitor.Result.TERMINATE : TreeVisitor.Result.CONTINUE
+            }
+        }
+
+        expect:
+        completed == tree.walk(strategy, h, visitor)
+        expected == visited.toString()
+        expectedPreVisited == preVisited.toString()
+        completed == compact.walk(strategy, compact.getRoot(), visitor)
+
+        where:
+        strategy                                | pruned | skipped | stopped | completed | expected  | expectedPreVisited
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | 'd'    | null    | null    | true      | "hegf"    | "hdegf"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | 'd'    | null    | null    | true      | "efgh"    | "hdegf"
+        Tree.IterationStrategy.BREATH_FIRST     | 'd'    | null    | null    | true      | "hegf"    | "hdegf"
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | null   | 'd'     | 'g'     | false     | "hdeg"    | "hdeg"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | null   | 'd'     | 'g'     | false     | "abcdefg" | "hdabcegf"
+        Tree.IterationStrategy.BREATH_FIRST     | null   | 'd'     | 'g'     | false     | "hdeg"    | "hdeg"
+    }
+
+    def "Parallel filter keeps order of iteration strategy"() {
+        given:
+        Predicate<Character> predicate = { ch -> (ch != 'e') }
+
+        expect:
+        expected == tree.parallelFilterFrom(strategy, h, predicate).join('')
+
+        where:
+        strategy                                | expected
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | "hdabcgf"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | "abcdfgh"
+        Tree.IterationStrategy.BREATH_FIRST     | "hdgabcf"
+    }
+
+    def "Parallel filter and aggregate work on large trees"() {
+        given: "a tree with three children for every inner node"
+        GeneralTree<Integer> large = new GeneralTree<>(0)
+        List<Tree.Item<Integer>> items = [large.getRoot()]
+        for (int i = 1; i < 100000; i++) {
+            items << large.add(i, items[(i - 1).intdiv(3)])
+        }
+        Predicate<Integer> predicate = { value -> value % 7 == 0 }
+
+        expect:
+        large.filter(predicate) == large.parallelFilterFrom(large.getRoot(), predicate)
+        large.filterFrom(items[1], predicate) == large.parallelFilterFrom(items[1], predicate)
+        4999950000L == large.aggregate(large.getRoot(), 0L, { value -> (long) value }, { x, y -> x + y })
+        large.filterFrom(items[1], { true }).join('') ==
+                large.aggregate(items[1], "", { value -> value.toString() }, { x, y -> x + y })
+    }
+
     def "Deep copy of tree works correctly"() {
         when: "creating subtree"
         Tree<Character> copy = tree.subTree(d)
@@ -158,6 +520,235 @@ class GeneralTreeSpecification extends Specification {
         }
     }
 
+    def "Copy of subtree carries its size and is independent of original"() {
+        when:
+        Tree<Character> copy = tree.subTree(d, parallel)
+        then:
+        4 == copy.size()
+        "[d, a, b, c]" == copy.toString()
+        !copy.getRoot().is(d)
+
+        when: "the copy is modified"
+        copy.add('x', copy.getRoot())
+        then: "the original is not affected"
+        5 == copy.size()
+        4 == d.size()
+
+        where:
+        parallel << [false, true]
+    }
+
+    def "Parallel copy of a large subtree keeps its structure and parent links"() {
+        given: "a tree with three children for every inner node"
+        GeneralTree<Integer> large = new GeneralTree<>(0)
+        List<Tree.Item<Integer>> items = [large.getRoot()]
+        for (int i = 1; i < 100000; i++) {
+            items << large.add(i, items[(i - 1).intdiv(3)])
+        }
+
+        when:
+        GeneralTree<Integer> copy = (GeneralTree<Integer>) large.subTree(items[1], true)
+        then:
+        items[1].size() == copy.size()
+        copy == large.subTree(items[1], false)
+        large.subtreeHash(items[1]) == copy.subtreeHash(copy.getRoot())
+        null == copy.getRoot().getParent()
+        linked(copy)
+    }
+
+    /**
+     * Checks that every node of supplied tree is the parent of its children and knows the size of its subtree
+     */
+    static boolean linked(GeneralTree<Integer> tree) {
+        GeneralTree.AbstractTreeIterator it = tree.iterator(Tree.IterationStrategy.DEPTH_FIRST_PRE, tree.getRoot())
+        while (it.hasNext()) {
+            it.next()
+            Tree.Item<Integer> item = it.getCurrentItem()
+            if (!item.getChildren().every { child -> child.getParent().is(item) } ||
+                    item.size() != tree.toArray(item, Tree.IterationStrategy.DEPTH_FIRST_PRE).length) {
+                return false
+            }
+        }
+        return true
+    }
+
+    def "Deep copy of a deep chain does not overflow the stack"() {
+        given:
+        GeneralTree<Integer> chain = new GeneralTree<>(0)
+        Tree.Item<Integer> last = chain.getRoot()
+        for (int i = 1; i < 20000; i++) {
+            last = chain.add(i, last)
+        }
+
+        when:
+        Tree<Integer> copy = chain.subTree(chain.getRoot())
+        then:
+        20000 == copy.size()
+        chain == copy
+    }
+
+    def "Nodes are hashed by identity"() {
+        given:
+        final Tree.Item<Character> first = tree.add('x', a)
+        final Tree.Item<Character> second = tree.add('x', b)
+
+        expect:
+        first != second
+        ([first, second, first] as Set).size() == 2
+    }
+
+    def "Cached hash code follows modifications"() {
+        given:
+        final Tree<Character> copy = tree.subTree(h)
+        final int gHash = tree.subtreeHash(g)
+
+        expect:
+        copy == tree
+        copy.hashCode() == tree.hashCode()
+        tree.hashCode() == (tree.toArray(h, Tree.IterationStrategy.DEPTH_FIRST_PRE) as List).hashCode()
+
+        when:
+        modification(tree)
+        then:
+        copy != tree
+        tree.hashCode() == (tree.toArray(h, Tree.IterationStrategy.DEPTH_FIRST_PRE) as List).hashCode()
+        (tree.subtreeHash(g) == gHash) == gUnchanged
+
+        where:
+        modification                                                                                   | gUnchanged
+        { GeneralTree t -> t.set('x', t.findChild('f', t.getRoot())) }                                 | false
+        { GeneralTree t -> t.add('x', t.findChild('a', t.getRoot())) }                                 | true
+        { GeneralTree t -> t.remove('b', t.findChild('d', t.getRoot())) }                              | true
+        { GeneralTree t -> t.setParent(t.findChild('f', t.getRoot()), t.findChild('d', t.getRoot())) } | false
+        { GeneralTree t -> t.clear(t.findChild('d', t.getRoot())) }                                    | true
+    }
+
+    def "Subtree hash depends on the shape, tree equality on the order of elements"() {
+        given: "a chain with the same elements in deep first pre order as the subtree of d"
+        final GeneralTree<String> chain = new GeneralTree<>('d')
+        chain.add('c', chain.add('b', chain.add('a', chain.getRoot())))
+
+        expect:
+        chain == tree.subTree(d)
+        chain.hashCode() == tree.subTree(d).hashCode()
+        chain.subtreeHash(chain.getRoot()) != tree.subtreeHash(d)
+        tree.subTree(d).subtreeHash(tree.subTree(d).getRoot()) == tree.subtreeHash(d)
+    }
+
+    def "Snapshot is not affected by modifications of the tree"() {
+        given:
+        Tree<Character> snapshot = tree.snapshot()
+        Tree<Character> snapshotOfD = tree.snapshot(d)
+
+        when:
+        tree.add('x', a)
+        tree.set('y', d)
+        tree.remove('g', h)
+        tree.setParent(e, d)
+        then: "the tree is modified"
+        "[h, y, a, x, b, c, e]" == tree.toString()
+        and: "snapshots keep the state at the moment they were taken"
+        8 == snapshot.size()
+        "[h, d, a, b, c, e, g, f]" == snapshot.toString()
+        "[a, b, c, d, e, f, g, h]" == snapshot.toString(Tree.IterationStrategy.DEPTH_FIRST_POST)
+        "[h, d, e, g, a, b, c, f]" == snapshot.toString(Tree.IterationStrategy.BREATH_FIRST)
+        "[d, a, b, c]" == snapshotOfD.toString()
+        h == snapshot.getParent(e)
+        f == snapshot.findChild('f', h)
+        "[h, d, a, b, c, e, g, f]" == snapshot.subTree(h).toString()
+    }
+
+    def "Iterators and streams of a snapshot keep it alive"() {
+        given:
+        Iterator<Character> iterator = tree.snapshot().iterator()
+        def stream = tree.snapshot(d).stream()
+        System.gc()
+
+        when:
+        tree.set('y', d)
+        tree.remove('g', h)
+        then:
+        "[h, d, a, b, c, e, g, f]" == iterator.collect().toString()
+        "[d, a, b, c]" == stream.collect(Collectors.toList()).toString()
+    }
+
+    def "Snapshot can not be modified"() {
+        when:
+        tree.snapshot().add('x', h)
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "Iterator fails fast when the iterated subtree is modified"() {
+        given:
+        final Iterator<Character> it = tree.iterator(strategy, d)
+        it.next()
+
+        when: "a node outside of the subtree is modified"
+        tree.add('x', g)
+        it.next()
+        then:
+        notThrown(ConcurrentModificationException)
+
+        when: "a node of the subtree is modified"
+        tree.add('y', a)
+        it.next()
+        then:
+        thrown(ConcurrentModificationException)
+
+        where:
+        strategy << Tree.IterationStrategy.values()
+    }
+
+    def "Iterator removes subtree of the current element"() {
+        given:
+        final Iterator<Character> it = tree.iterator(strategy)
+        final List<Character> visited = []
+
+        when:
+        while (it.hasNext()) {
+            final Character curr = it.next()
+            visited << curr
+            if (curr == removed) {
+                it.remove()
+            }
+        }
+        then:
+        visited.join() == expectedVisited
+        tree.toString() == expectedTree
+        tree.size() == expectedSize
+
+        where:
+        strategy                                | removed | expectedVisited | expectedTree                | expectedSize
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | 'd'     | "hdegf"         | "[h, e, g, f]"              | 4
+        Tree.IterationStrategy.BREATH_FIRST     | 'd'     | "hdegf"         | "[h, e, g, f]"              | 4
+        Tree.IterationStrategy.DEPTH_FIRST_POST | 'a'     | "abcdefgh"      | "[h, d, b, c, e, g, f]"     | 7
+        Tree.IterationStrategy.DEPTH_FIRST_POST | 'd'     | "abcdefgh"      | "[h, e, g, f]"              | 4
+    }
+
+    def "Tree is built from parent array"() {
+        when:
+        final GeneralTree<String> built = GeneralTree.fromParentArray(
+                ['h', 'd', 'a', 'b', 'c', 'e', 'g', 'f'] as String[], [-1, 0, 1, 1, 1, 0, 0, 6] as int[], parallel)
+        then:
+        built == tree
+        built.size() == 8
+        built.findChild('d', built.getRoot()).size() == 4
+
+        where:
+        parallel << [false, true]
+    }
+
+    def "Parent array must describe a single tree"() {
+        when:
+        GeneralTree.fromParentArray(new Character[parentIdx.size()], parentIdx as int[])
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        parentIdx << [[-1, -1], [1, 0], [-1, 2, 1], [-1, 5], [0]]
+    }
+
     def "toString() method of tree works correctly"() {
         expect:
         "[h, d, a, b, c, e, g, f]" == tree.toString()
@@ -0,0 +1,83 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+@Subject(IndexedGeneralTree)
+class IndexedGeneralTreeSpecification extends Specification {
+
+    Tree.Item<Character> a, b, c, d, e, f, g, h
+    IndexedGeneralTree<Character> tree
+
+    def setup() {
+        tree = new IndexedGeneralTree<>('h')
+        (a, b, c, d, e, f, g, h) = TreeFixture.fill(tree)
+    }
+
+    def "Lookups are scoped to a subtree"() {
+        expect:
+        tree.contains('a', h)
+        tree.contains('a', d)
+        !tree.contains('a', g)
+        !tree.contains('x', h)
+        f == tree.findChild('f', h)
+        null == tree.findChild('f', d)
+    }
+
+    def "Duplicate values are resolved in default iteration order"() {
+        when:
+        final Tree.Item<Character> other = tree.add('a', g)
+        then:
+        a == tree.findChild('a', h)
+        other == tree.findChild('a', g)
+    }
+
+    def "Index is maintained on modifications"() {
+        when: "a value is replaced"
+        tree.set('z', a)
+        then:
+        !tree.contains('a', h)
+        a == tree.findChild('z', h)
+
+        when: "a subtree is removed"
+        tree.remove('g', h)
+        then:
+        !tree.contains('f', h)
+
+        when: "a subtree is cleared"
+        tree.clear(d)
+        then:
+        !tree.contains('b', h)
+        !tree.contains('z', h)
+        2 == tree.size()
+
+        when: "a removed subtree is attached again"
+        tree.setParent(g, e)
+        then:
+        g == tree.findChild('g', e)
+        f == tree.findChild('f', h)
+    }
+
+    def "Nodes of a detached subtree are indexed when the subtree is attached"() {
+        when: "a detached subtree is modified"
+        tree.setParent(g, null)
+        final x = tree.add('x', g)
+        tree.set('y', f)
+        then:
+        !tree.contains('x', h)
+        !tree.contains('y', h)
+        6 == tree.size()
+
+        when: "the subtree is attached again"
+        tree.setParent(g, e)
+        then:
+        x == tree.findChild('x', h)
+        f == tree.findChild('y', h)
+        !tree.contains('f', h)
+
+        when: "the subtree is detached again"
+        tree.setParent(g, null)
+        then:
+        !tree.contains('x', h)
+        !tree.contains('g', h)
+    }
+}
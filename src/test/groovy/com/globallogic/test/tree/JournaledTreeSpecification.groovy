@@ -0,0 +1,143 @@
+package com.globallogic.test.tree
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.*
+
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.TimeUnit
+
+@Subject(JournaledTree)
+class JournaledTreeSpecification extends Specification {
+
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    GeneralTree<String> source
+
+    def setup() {
+        source = new GeneralTree<>('h')
+        TreeFixture.fill(source)
+    }
+
+    def "Modifications are replayed on top of the snapshot"() {
+        given:
+        final directory = folder.newFolder().toPath()
+        def tree = JournaledTree.create(directory, source, ValueCodec.UTF8,
+                new JournaledTree.Options().syncPolicy(policy))
+        final d = tree.findChild('d', tree.getRoot())
+        final g = tree.findChild('g', tree.getRoot())
+
+        when:
+        tree.add('i', d)
+        tree.remove('b', d)
+        tree.set(null, tree.findChild('e', tree.getRoot()))
+        tree.setParent(g, d)
+        tree.clear(tree.findChild('a', d))
+        tree.close()
+        final recovered = JournaledTree.open(directory, ValueCodec.UTF8, new JournaledTree.Options())
+        then:
+        recovered.size() == 7
+        recovered.toString() == "[h, d, c, i, g, f, null]"
+
+        cleanup:
+        recovered?.close()
+
+        where:
+        policy << JournaledTree.SyncPolicy.values()
+    }
+
+    def "Detached subtree is journaled when it is attached"() {
+        given:
+        final directory = folder.newFolder().toPath()
+        def tree = JournaledTree.create(directory, source, ValueCodec.UTF8, new JournaledTree.Options())
+        final d = tree.findChild('d', tree.getRoot())
+
+        when:
+        tree.setParent(d, null)
+        tree.add('x', d)
+        tree.setParent(d, tree.findChild('f', tree.getRoot()))
+        final it = tree.iterator(Tree.IterationStrategy.DEPTH_FIRST_PRE, d)
+        it.next()
+        it.next()
+        it.remove()
+        tree.close()
+        final recovered = JournaledTree.open(directory, ValueCodec.UTF8, new JournaledTree.Options())
+        then:
+        recovered.size() == 8
+        recovered.toString() == "[h, e, g, f, d, b, c, x]"
+
+        cleanup:
+        recovered?.close()
+    }
+
+    def "Torn record at the end of the journal is dropped"() {
+        given:
+        final directory = folder.newFolder().toPath()
+        def tree = JournaledTree.create(directory, source, ValueCodec.UTF8, new JournaledTree.Options())
+        tree.add('i', tree.getRoot())
+        tree.close()
+        final segment = JournaledTree.segmentPath(directory, JournaledTree.listSegments(directory).last())
+        final size = Files.size(segment)
+        Files.write(segment, [0, 0, 0, 100, 1, 2] as byte[], StandardOpenOption.APPEND)
+
+        when:
+        final recovered = JournaledTree.open(directory, ValueCodec.UTF8, new JournaledTree.Options())
+        then:
+        recovered.toString() == "[h, d, a, b, c, e, g, f, i]"
+        Files.size(segment) == size
+
+        cleanup:
+        recovered?.close()
+    }
+
+    def "Compaction rolls the journal into a new snapshot"() {
+        given:
+        final directory = folder.newFolder().toPath()
+        def tree = JournaledTree.create(directory, source, ValueCodec.UTF8,
+                new JournaledTree.Options().compactionThreshold(0))
+        (1..100).each { tree.add("n$it" as String, tree.getRoot()) }
+
+        when:
+        final compaction = tree.compact()
+        tree.add('last', tree.getRoot())
+        compaction.get(10, TimeUnit.SECONDS)
+        tree.close()
+        final recovered = JournaledTree.open(directory, ValueCodec.UTF8, new JournaledTree.Options())
+        then:
+        JournaledTree.listSegments(directory).size() == 2
+        recovered.size() == 109
+        recovered.getChildren(recovered.getRoot()).last().getValue() == 'last'
+
+        cleanup:
+        recovered?.close()
+    }
+
+    def "Closed journal rejects modifications"() {
+        given:
+        def tree = JournaledTree.create(folder.newFolder().toPath(), source, ValueCodec.UTF8,
+                new JournaledTree.Options())
+        tree.close()
+
+        when:
+        tree.add('i', tree.getRoot())
+        then:
+        thrown(IllegalStateException)
+        tree.size() == 8
+    }
+
+    def "Root of a journaled tree can not be moved"() {
+        given:
+        def tree = JournaledTree.create(folder.newFolder().toPath(), source, ValueCodec.UTF8,
+                new JournaledTree.Options())
+
+        when:
+        tree.setParent(tree.getRoot(), new GeneralTree<String>('x').getRoot())
+        then:
+        thrown(UnsupportedOperationException)
+
+        cleanup:
+        tree.close()
+    }
+}
@@ -0,0 +1,101 @@
+package com.globallogic.test.tree
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.*
+
+@Subject(MappedTree)
+class MappedTreeSpecification extends Specification {
+
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    GeneralTree<String> source
+
+    def setup() {
+        source = new GeneralTree<>('h')
+        TreeFixture.fill(source)
+    }
+
+    def "Reopened tree is traversed from the mapping"() {
+        given:
+        final file = folder.newFile().toPath()
+        MappedTree.create(file, source, ValueCodec.UTF8)
+
+        when:
+        final tree = MappedTree.open(file, ValueCodec.UTF8, strategy)
+        then:
+        tree.size() == 8
+        tree.toString() == result
+        tree.toString(tree.findChild('d', tree.getRoot())) == subResult
+
+        where:
+        strategy                               | result                     | subResult
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | "[h, d, a, b, c, e, g, f]" | "[d, a, b, c]"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | "[a, b, c, d, e, f, g, h]" | "[a, b, c, d]"
+        Tree.IterationStrategy.BREATH_FIRST     | "[h, d, e, g, a, b, c, f]" | "[d, a, b, c]"
+    }
+
+    def "Fixed width values are mapped"() {
+        given:
+        final numbers = new GeneralTree<Long>(0L)
+        (1L..100L).each { numbers.add(it, numbers.getRoot()) }
+        final tree = MappedTree.create(folder.newFile().toPath(), numbers, ValueCodec.LONG)
+
+        expect:
+        tree.parallelStream().mapToLong({ it }).sum() == 5050L
+        tree.getChildren(tree.getRoot()).size() == 100
+    }
+
+    def "Tree is streamed into the file from pre order numbers of children"() {
+        given:
+        def counts = [3, 3, 0, 0, 0, 0, 1, 0].iterator()
+        def values = ['h', 'd', 'a', 'b', 'c', 'e', 'g', 'f'].iterator()
+
+        when:
+        final tree = MappedTree.create(folder.newFile().toPath(), 8, { counts.next() }, { values.next() }, ValueCodec.UTF8)
+        then:
+        tree.size() == 8
+        tree.toString() == source.toString()
+        tree.toString(Tree.IterationStrategy.BREATH_FIRST) == source.toString(Tree.IterationStrategy.BREATH_FIRST)
+        tree.findChild('d', tree.getRoot()).size() == 4
+    }
+
+    def "Numbers of children must describe a single tree"() {
+        when:
+        def iterator = counts.iterator()
+        MappedTree.create(folder.newFile().toPath(), counts.size(), { iterator.next() }, { 0L }, ValueCodec.LONG)
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        counts << [[1], [0, 0], [-1], [2, 0]]
+    }
+
+    def "File must match the codec"() {
+        given:
+        final file = folder.newFile().toPath()
+        MappedTree.create(file, source, ValueCodec.UTF8)
+
+        when:
+        MappedTree.open(file, ValueCodec.LONG)
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Memory-mapped tree can not be modified"() {
+        given:
+        final tree = MappedTree.create(folder.newFile().toPath(), source, ValueCodec.UTF8)
+
+        when:
+        operation(tree)
+        then:
+        thrown(UnsupportedOperationException)
+
+        where:
+        operation << [
+                { it.add('x', it.getRoot()) },
+                { it.set('x', it.getRoot()) }
+        ]
+    }
+}
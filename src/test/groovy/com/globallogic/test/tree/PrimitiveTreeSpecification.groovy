@@ -0,0 +1,71 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+@Subject([LongTree, DoubleTree])
+class PrimitiveTreeSpecification extends Specification {
+
+    LongTree tree
+    LongTree.Node d, g
+
+    def setup() {
+
+//         Tree for testing
+//
+//                   8
+//                 / | \
+//                /  5  \
+//               4        7
+//             / | \      |
+//            /  |  \     6
+//           1   2   3
+
+        tree = new LongTree(8)
+        d = tree.add(4, tree.getRoot())
+        tree.add(1, d)
+        tree.add(2, d)
+        tree.add(3, d)
+        tree.add(5, tree.getRoot())
+        g = tree.add(7, tree.getRoot())
+        tree.add(6, g)
+    }
+
+    def "Long tree is traversed according to iteration strategy"() {
+        expect:
+        tree.toArray(tree."$item", strategy) as List == result
+
+        where:
+        strategy                               | item   | result
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | 'root' | [8, 4, 1, 2, 3, 5, 7, 6]
+        Tree.IterationStrategy.DEPTH_FIRST_POST | 'root' | [1, 2, 3, 4, 5, 6, 7, 8]
+        Tree.IterationStrategy.BREATH_FIRST     | 'root' | [8, 4, 5, 7, 1, 2, 3, 6]
+    }
+
+    def "Long tree operations"() {
+        expect:
+        tree.size() == 8
+        tree.contains(6)
+        !tree.contains(6, d)
+        tree.filter({ long it -> it % 2 == 0 } as java.util.function.LongPredicate) as List == [8, 4, 2, 6]
+        tree.stream().sum() == 36
+        tree.iterator(Tree.IterationStrategy.DEPTH_FIRST_POST, d).nextLong() == 1
+
+        when:
+        tree.remove(4, tree.getRoot())
+        tree.clear(g)
+        then:
+        tree.size() == 3
+        tree.toString() == "[8, 5, 7]"
+    }
+
+    def "Double tree finds NaN values"() {
+        given:
+        final doubles = new DoubleTree(0.5)
+        doubles.add(Double.NaN, doubles.add(1.5, doubles.getRoot()))
+
+        expect:
+        doubles.contains(Double.NaN)
+        doubles.toString() == "[0.5, 1.5, NaN]"
+        doubles.toArray(Tree.IterationStrategy.DEPTH_FIRST_POST)[2] == 0.5d
+    }
+}
@@ -0,0 +1,50 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+@Subject(TreeBuilder)
+class TreeBuilderSpecification extends Specification {
+
+    def "Tree is built from records in any order"() {
+        given:
+        TreeBuilder<Character> builder = new TreeBuilder<>()
+
+        when:
+        builder.add(70, 60, 'f' as Character)
+                .add(20, 10, 'a' as Character)
+                .add(60, 0, 'g' as Character)
+                .add(0, TreeBuilder.NO_PARENT, 'h' as Character)
+                .add(40, 10, 'c' as Character)
+                .add(50, 0, 'e' as Character)
+                .add(30, 10, 'b' as Character)
+                .add(10, 0, 'd' as Character)
+        final GeneralTree<Character> tree = builder.build(parallel)
+
+        then: "children are ordered by their ids"
+        tree.toString() == "[h, d, a, b, c, e, g, f]"
+        tree.size() == 8
+        tree.findChild('d' as Character, tree.getRoot()).size() == 4
+        builder.buildCompact().toString() == tree.toString()
+
+        where:
+        parallel << [false, true]
+    }
+
+    def "Records must describe a single tree"() {
+        when:
+        TreeBuilder<Integer> builder = new TreeBuilder<>()
+        records.each { builder.add(it[0], it[1], 0) }
+        builder.build()
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        records << [
+                [[1, TreeBuilder.NO_PARENT], [1, 1]],
+                [[1, TreeBuilder.NO_PARENT], [2, 3]],
+                [[1, TreeBuilder.NO_PARENT], [2, TreeBuilder.NO_PARENT]],
+                [[1, 2], [2, 1]]
+        ]
+    }
+}
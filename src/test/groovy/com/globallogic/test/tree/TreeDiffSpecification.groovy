@@ -0,0 +1,101 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+@Subject(TreeDiff)
+class TreeDiffSpecification extends Specification {
+
+    GeneralTree<String> tree
+
+    def setup() {
+        tree = new GeneralTree<>('h')
+        TreeFixture.fill(tree)
+    }
+
+    GeneralTree<String> copy() {
+        (GeneralTree<String>) tree.subTree(tree.getRoot())
+    }
+
+    def "Script of a modification is found and applied"() {
+        given:
+        final GeneralTree<String> target = copy()
+        final find = { String value -> target.findChild(value, target.getRoot()) }
+        modification(target, find)
+
+        when:
+        final script = TreeDiff.diff(tree, target)
+        then:
+        script*.toString() == expected
+
+        when:
+        TreeDiff.apply(tree, script)
+        then:
+        tree.toString() == target.toString()
+        tree.subtreeHash(tree.getRoot()) == target.subtreeHash(target.getRoot())
+        TreeDiff.diff(tree, target).isEmpty()
+
+        where:
+        modification                                                                | expected
+        { t, node -> t.set('x', node('b')) }                                        | ["RELABEL [0, 1] to x"]
+        { t, node -> t.add('x', node('g'), 0) }                                     | ["INSERT x to [2] at 0"]
+        { t, node -> t.clear(node('d')) }                                           | ["DELETE [0]"]
+        { t, node -> t.setParent(node('d'), node('g')) }                            | ["MOVE [0] to [2] at 1"]
+        { t, node -> t.setParent(node('e'), t.getRoot(), 0) }                       | ["MOVE [1] to [] at 0"]
+        { t, node -> t.setParent(node('b'), node('g'), 0); t.set('y', node('d')) }  | ["RELABEL [0] to y", "MOVE [0, 1] to [2] at 0"]
+        { t, node -> t.add('z', t.add('y', t.add('x', node('e')))) }               | ["INSERT x to [1] at 0", "INSERT y to [1, 0] at 0", "INSERT z to [1, 0, 0] at 0"]
+        { t, node -> t.set('x', t.getRoot()); t.clear(node('g')) }                  | ["DELETE [2]", "RELABEL [] to x"]
+    }
+
+    def "Equal trees have an empty script"() {
+        expect:
+        TreeDiff.diff(tree, copy()).isEmpty()
+        TreeDiff.diff(tree, CompactTree.of(tree)).isEmpty()
+        TreeDiff.diff(tree.snapshot(), tree).isEmpty()
+    }
+
+    def "Subtrees colliding in 32 bit hashes are diffed"() {
+        given: "children of the roots had equal 32 bit subtree hashes"
+        final GeneralTree<Integer> first = new GeneralTree<>(0)
+        first.add(5, first.add(100, first.getRoot()))
+        final GeneralTree<Integer> second = new GeneralTree<>(0)
+        second.add(7, second.add(733695640, second.getRoot()))
+
+        when:
+        final script = TreeDiff.diff(first, second)
+        TreeDiff.apply(first, script)
+        then:
+        script*.toString() == ["RELABEL [0] to 733695640", "RELABEL [0, 0] to 7"]
+        first == second
+        TreeDiff.diff(first, second).isEmpty()
+    }
+
+    def "Script creates and empties trees"() {
+        given:
+        final GeneralTree<String> empty = new GeneralTree<>()
+
+        when:
+        TreeDiff.apply(empty, TreeDiff.diff(new GeneralTree<String>(), tree))
+        then:
+        empty.toString() == tree.toString()
+
+        when:
+        TreeDiff.apply(empty, TreeDiff.diff(tree, new GeneralTree<String>()))
+        then:
+        empty.isEmpty()
+        empty == new GeneralTree<String>()
+    }
+
+    def "Edit that does not match the tree is rejected"() {
+        when:
+        TreeDiff.apply(tree, [edit])
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        edit << [TreeDiff.Edit.delete([3] as int[]),
+                 TreeDiff.Edit.relabel([0, 3] as int[], 'x'),
+                 TreeDiff.Edit.insert([2] as int[], 2, 'x'),
+                 TreeDiff.Edit.move([0] as int[], [0, 1] as int[], 0),
+                 TreeDiff.Edit.insert(null, 0, 'x')]
+    }
+}
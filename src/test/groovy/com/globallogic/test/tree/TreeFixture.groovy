@@ -0,0 +1,37 @@
+package com.globallogic.test.tree
+
+/**
+ * Tree shared by specifications
+ *
+ *                   h
+ *                 / | \
+ *                /  e  \
+ *               d        g
+ *             / | \      |
+ *            /  |  \     f
+ *           a   b   c
+ *
+ *          tree iteration:
+ *             - deep first pre order: hdabcegf
+ *             - deep first post order: abcdefgh
+ *             - breath first: hdegabcf
+ */
+class TreeFixture {
+
+    /**
+     * Adds nodes of the testing tree to supplied tree, whose root holds 'h'
+     * @param tree tree to fill
+     * @return nodes a, b, c, d, e, f, g, h
+     */
+    static List<Tree.Item> fill(Tree tree) {
+        final h = tree.getRoot()
+        final d = tree.add('d', h)
+        final a = tree.add('a', d)
+        final b = tree.add('b', d)
+        final c = tree.add('c', d)
+        final e = tree.add('e', h)
+        final g = tree.add('g', h)
+        final f = tree.add('f', g)
+        [a, b, c, d, e, f, g, h]
+    }
+}
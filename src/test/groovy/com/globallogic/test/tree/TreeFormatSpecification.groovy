@@ -0,0 +1,75 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+import java.nio.ByteBuffer
+
+@Subject([TreeFormat, ByteBufferTree])
+class TreeFormatSpecification extends Specification {
+
+    GeneralTree<String> source
+
+    def setup() {
+        source = new GeneralTree<>('h')
+        TreeFixture.fill(source)
+    }
+
+    byte[] write(Tree tree, ValueCodec codec) {
+        final out = new ByteArrayOutputStream()
+        TreeFormat.write(tree, out, codec)
+        out.toByteArray()
+    }
+
+    def "Tree is read back from a stream"() {
+        given:
+        final bytes = write(source, ValueCodec.UTF8)
+
+        when:
+        final tree = TreeFormat.read(new ByteArrayInputStream(bytes), ValueCodec.UTF8)
+        then:
+        tree == source
+        tree.size() == 8
+        tree.findChild('d', tree.getRoot()).size() == 4
+    }
+
+    def "Tree over a buffer is traversed according to iteration strategy"() {
+        given:
+        final tree = ByteBufferTree.wrap(ByteBuffer.wrap(write(source, ValueCodec.UTF8)), ValueCodec.UTF8, strategy)
+
+        expect:
+        tree.toString() == result
+
+        where:
+        strategy                               | result
+        Tree.IterationStrategy.DEPTH_FIRST_PRE  | "[h, d, a, b, c, e, g, f]"
+        Tree.IterationStrategy.DEPTH_FIRST_POST | "[a, b, c, d, e, f, g, h]"
+        Tree.IterationStrategy.BREATH_FIRST     | "[h, d, e, g, a, b, c, f]"
+    }
+
+    def "Fixed width values take a byte of structure per node"() {
+        given:
+        final numbers = new GeneralTree<Long>(0L)
+        (1L..100L).each { numbers.add(it, numbers.getRoot()) }
+        final bytes = write(numbers, ValueCodec.LONG)
+
+        expect:
+        bytes.length == 4 + 1 + 4 + 1 + 101 + 101 * 8
+        TreeFormat.wrap(ByteBuffer.wrap(bytes), ValueCodec.LONG).stream().mapToLong({ it }).sum() == 5050L
+    }
+
+    def "Truncated data is rejected"() {
+        given:
+        final bytes = write(source, ValueCodec.UTF8)
+        final truncated = Arrays.copyOf(bytes, bytes.length - 1)
+
+        when:
+        TreeFormat.read(new ByteArrayInputStream(truncated), ValueCodec.UTF8)
+        then:
+        thrown(IOException)
+
+        when:
+        TreeFormat.wrap(ByteBuffer.wrap(truncated), ValueCodec.UTF8)
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,65 @@
+package com.globallogic.test.tree
+
+import spock.lang.*
+
+import java.util.function.Function
+
+@Subject(TreeJson)
+class TreeJsonSpecification extends Specification {
+
+    GeneralTree<String> tree
+    Tree.Item<String> d
+
+    def setup() {
+        tree = new GeneralTree<>('h')
+        d = TreeFixture.fill(tree)[3]
+    }
+
+    String json(Closure<Void> write) {
+        final out = new StringWriter()
+        write(out)
+        out.toString()
+    }
+
+    def "Subtree is written as nested JSON"() {
+        expect:
+        json { TreeJson.write(tree, d, it, Function.identity()) } ==
+                '{"value":"d","children":[{"value":"a"},{"value":"b"},{"value":"c"}]}'
+    }
+
+    def "Tree is read back from nested JSON"() {
+        given:
+        String written = json { TreeJson.write(tree, it, Function.identity()) }
+
+        when:
+        final result = TreeJson.read(new StringReader(written), Function.identity())
+        then:
+        result == tree
+        result.size() == 8
+        result.findChild('d', result.getRoot()).size() == 4
+    }
+
+    def "Members are read in any order"() {
+        when:
+        final result = TreeJson.read(new StringReader(text), { Integer.valueOf(it) } as Function)
+        then:
+        result.toString() == expected
+
+        where:
+        text                                                               | expected
+        '{"children":[{"value":2},{"value":"3"}],"value":1}'               | "[1, 2, 3]"
+        ' { "value" : 1 , "extra" : {"a":[1,{"b":null}]} , "children":[] }' | "[1]"
+        '{"value":null}'                                                   | "[null]"
+        'null'                                                             | "[]"
+    }
+
+    def "Malformed JSON is rejected"() {
+        when:
+        TreeJson.read(new StringReader(text), Function.identity())
+        then:
+        thrown(IOException)
+
+        where:
+        text << ['', '{', '{"value":1,}', '{"value":[1]}', '{"children":[{]}', '{} x', '[1]']
+    }
+}